@@ -0,0 +1,93 @@
+package com.comphenix.xp;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.comphenix.xp.extra.FastRandom;
+import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
+import com.comphenix.xp.rewards.RewardProvider;
+import com.comphenix.xp.rewards.RewardTypes;
+import com.comphenix.xp.rewards.xp.CurrencyFactory;
+import com.comphenix.xp.rewards.xp.ExperienceFactory;
+
+/**
+ * Measures the allocations of a single mob kill reward, with and without reusable reward buffers.
+ * <p>
+ * Run with <code>mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test 
+ * -Dexec.mainClass=com.comphenix.xp.RewardBenchmark</code>, and compare the 
+ * <code>gc.alloc.rate.norm</code> (bytes per kill) of each benchmark.
+ * 
+ * @author Kristian
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RewardBenchmark {
+
+	private Action action;
+	private RewardProvider provider;
+	private Random random;
+	
+	private RewardBuffer generatedBuffer;
+	private RewardBuffer resultBuffer;
+	
+	@Setup
+	public void setup() {
+		action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		action.addReward(RewardTypes.VIRTUAL.name(), new ExperienceFactory(2));
+		action.addReward(RewardTypes.ECONOMY.name(), new CurrencyFactory(10));
+		
+		provider = new RewardProvider();
+		provider.register(new MockRewardable(RewardTypes.EXPERIENCE));
+		provider.register(new MockRewardable(RewardTypes.VIRTUAL));
+		provider.register(new MockRewardable(RewardTypes.ECONOMY));
+		
+		random = new FastRandom(42);
+		generatedBuffer = new RewardBuffer();
+		resultBuffer = new RewardBuffer();
+	}
+	
+	@Benchmark
+	public void allocating(Blackhole hole) {
+		List<ResourceHolder> generated = action.generateRewards(null, provider, random);
+		
+		if (action.canRewardPlayer(provider, null, generated)) {
+			Collection<ResourceHolder> result = action.rewardAnyone(provider, null, generated, null);
+			hole.consume(result);
+		}
+	}
+	
+	@Benchmark
+	public void buffered(Blackhole hole) {
+		RewardBuffer generated = action.generateRewards(null, provider, random, 1, generatedBuffer);
+		
+		if (action.canRewardPlayer(provider, null, generated)) {
+			Collection<ResourceHolder> result = action.rewardAnyone(provider, null, generated, null, resultBuffer);
+			hole.consume(result);
+		}
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().
+				include(RewardBenchmark.class.getSimpleName()).
+				addProfiler(GCProfiler.class).
+				forks(1).
+				build()).run();
+	}
+}
@@ -20,12 +20,14 @@ package com.comphenix.xp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -43,18 +45,40 @@ public class Action {
 
 	public static final Action Default = new Action();
 
+	// Every built-in reward type that refers to a real service
+	private static final Map<String, RewardTypes> builtInTypes = new HashMap<String, RewardTypes>();
+	
+	static {
+		for (RewardTypes type : RewardTypes.values()) {
+			if (!type.isSpecialMarker())
+				builtInTypes.put(type.name(), type);
+		}
+	}
+
 	private double inheritMultiplier;
 	private boolean inherit;
 	
 	private int id;
 	private List<Message> messages;
-	private Map<String, MessagedResource> rewards;
+	
+	// Rewards of the built-in types, indexed by ordinal
+	private MessagedResource[] builtIn;
+	
+	// Rewards of custom services, by normalized name
+	private Map<String, MessagedResource> custom;
 
+	// Named parameters used by every reward, or NULL if not yet computed
+	private volatile Set<String> variableNames;
+	
+	// Flattened rewards in slot order, or NULL if not yet computed
+	private volatile RewardSlots slots;
+	
 	private Debugger debugger;
 	
 	public Action() {
 		// Default constructor
-		rewards = new LinkedHashMap<String, MessagedResource>();;
+		builtIn = new MessagedResource[RewardTypes.values().length];
+		custom = new LinkedHashMap<String, MessagedResource>();
 		inheritMultiplier = 1;
 	}
 	
@@ -63,9 +87,11 @@ public class Action {
 		addReward(rewardType, reward);
 	}
 	
-	private Action(List<Message> messages, Map<String, MessagedResource> rewards, Debugger debugger, int id) {
+	private Action(List<Message> messages, MessagedResource[] builtIn, Map<String, MessagedResource> custom, 
+				   Debugger debugger, int id) {
 		this.messages = messages;
-		this.rewards = rewards;
+		this.builtIn = builtIn;
+		this.custom = custom;
 		this.debugger = debugger;
 		this.id = id;
 	}
@@ -77,6 +103,7 @@ public class Action {
 	 */
 	public void addReward(String rewardType, ResourceFactory factory) {
 		getEntry(rewardType, true).setResourceFactory(factory);
+		invalidate();
 	}
 	
 	/**
@@ -86,6 +113,7 @@ public class Action {
 	 */
 	public void addMessage(String rewardType, List<Message> messages) {
 		getEntry(rewardType, true).setMessages(messages);
+		invalidate();
 	}
 	
 	/**
@@ -94,11 +122,28 @@ public class Action {
 	 */
 	private MessagedResource getEntry(String rewardType, boolean createNew) {
 		String enumedReward = Utility.getEnumName(rewardType);
-		MessagedResource resource = rewards.get(enumedReward);
+		RewardTypes type = builtInTypes.get(enumedReward);
+		
+		// Built-in rewards are stored separately
+		if (type != null)
+			return getEntry(type, createNew);
+		
+		MessagedResource resource = custom.get(enumedReward);
 	
 		if (createNew && resource == null) {
 			resource = new MessagedResource();
-			rewards.put(enumedReward, resource);
+			custom.put(enumedReward, resource);
+		}
+		
+		return resource;
+	}
+	
+	private MessagedResource getEntry(RewardTypes type, boolean createNew) {
+		MessagedResource resource = builtIn[type.ordinal()];
+		
+		if (createNew && resource == null) {
+			resource = new MessagedResource();
+			builtIn[type.ordinal()] = resource;
 		}
 		
 		return resource;
@@ -109,7 +154,14 @@ public class Action {
 	 * @param rewardType - name of the reward to remove.
 	 */
 	public void removeReward(String rewardType) {
-		rewards.remove(Utility.getEnumName(rewardType));
+		String enumedReward = Utility.getEnumName(rewardType);
+		RewardTypes type = builtInTypes.get(enumedReward);
+		
+		if (type != null)
+			builtIn[type.ordinal()] = null;
+		else
+			custom.remove(enumedReward);
+		invalidate();
 	}
 	
 	/**
@@ -128,22 +180,86 @@ public class Action {
 	 * @return Factory that generates rewards of this type.
 	 */
 	public ResourceFactory getReward(RewardTypes type) {
-		return getReward(type.name());
+		// Markers are not stored by type
+		if (type.isSpecialMarker())
+			return getReward(type.name());
+		
+		MessagedResource resource = builtIn[type.ordinal()];
+		return resource != null ? resource.getResourceFactory() : null;
 	}
 	
 	/**
 	 * Retrieves a list of the name of every reward.
+	 * <p>
+	 * The list is a copy, and may be freely modified.
 	 * @return Names of every reward.
 	 */
 	public Collection<String> getRewardNames() {
-		return rewards.keySet();
+		return new ArrayList<String>(Arrays.asList(getSlots().names));
+	}
+	
+	/**
+	 * Retrieves the name of every reward slot, in the same order as the generated rewards.
+	 * <p>
+	 * The list cannot be modified, and is shared until the rewards of this action change.
+	 * @return Names of every reward slot.
+	 */
+	public List<String> getSlotNames() {
+		return getSlots().layout;
 	}
 	
 	/**
 	 * Removes all associated rewards.
 	 */
 	public void removeAll() {
-		rewards.clear();
+		Arrays.fill(builtIn, null);
+		custom.clear();
+		invalidate();
+	}
+	
+	// Called whenever the set of rewards has changed
+	private void invalidate() {
+		variableNames = null;
+		slots = null;
+	}
+	
+	/**
+	 * Retrieves every reward in slot order.
+	 * @return Flattened rewards.
+	 */
+	private RewardSlots getSlots() {
+		RewardSlots current = slots;
+		
+		if (current == null) {
+			current = new RewardSlots(builtIn, custom);
+			slots = current;
+		}
+		return current;
+	}
+	
+	/**
+	 * Retrieves the name of every named parameter that is used by any of the rewards.
+	 * <p>
+	 * Parameters that are not in this set don't have to be computed.
+	 * @return Set of parameter names.
+	 */
+	public Set<String> getVariableNames() {
+		Set<String> names = variableNames;
+		
+		if (names == null) {
+			names = new HashSet<String>();
+			
+			for (MessagedResource resource : getSlots().entries) {
+				ResourceFactory factory = resource.getResourceFactory();
+				
+				if (factory != null)
+					names.addAll(factory.getVariableNames());
+			}
+			
+			names = Collections.unmodifiableSet(names);
+			variableNames = names;
+		}
+		return names;
 	}
 	
 	/**
@@ -151,7 +267,7 @@ public class Action {
 	 * @return
 	 */
 	public boolean hasNothing(ChannelProvider provider) {
-		return rewards.isEmpty() && (messages == null || getChannels(provider, messages) == null);
+		return getSlots().size() == 0 && (messages == null || getChannels(provider, messages) == null);
 	}
 	
 	/**
@@ -176,21 +292,41 @@ public class Action {
 	 * @return A list of resources in a specific order.
 	 */
 	public List<ResourceHolder> generateRewards(Collection<NamedParameter> params, RewardProvider provider, Random rnd, int count) {
-		
-		List<ResourceHolder> result = new ArrayList<ResourceHolder>(rewards.size());
+		return generateRewards(params, provider, rnd, count, new RewardBuffer(getSlots().size()));
+	}
+	
+	/**
+	 * Generates resources into the given buffer, in the same order as each associated reward factory.
+	 * <p>
+	 * The buffer is cleared first. Slots without a reward factory are set to NULL.
+	 * @param params - parameters to use when calculating the reward.
+	 * @param provider - provider of reward services.
+	 * @param rnd - random number generator.
+	 * @param count - number of times to reward this action.
+	 * @param buffer - the buffer to fill.
+	 * @return The given buffer.
+	 */
+	public RewardBuffer generateRewards(Collection<NamedParameter> params, RewardProvider provider, 
+										Random rnd, int count, RewardBuffer buffer) {
 		
 		// Save some time
 		if (count == 0) {
-			return result;
+			buffer.reset(0);
+			return buffer;
 		}
 		
+		RewardSlots current = getSlots();
+		buffer.reset(current.size());
+		
 		// Generate every reward in "insertion" order
-		for (MessagedResource factory : rewards.values()) {
-			ResourceFactory generator = factory.getResourceFactory();
-			result.add(generator != null ? generator.getResource(params, rnd, count) : null);
+		for (int i = 0; i < current.size(); i++) {
+			ResourceFactory generator = current.entries[i].getResourceFactory();
+			
+			if (generator != null)
+				buffer.set(i, generator.getResource(params, rnd, count));
 		}
 		
-		return result;
+		return buffer;
 	}
 
 	/**
@@ -203,20 +339,21 @@ public class Action {
 	public boolean canRewardPlayer(RewardProvider provider, Player player, List<ResourceHolder> generatedRewards) {
 
 		// This is why the order is important
-		int index = 0;
+		RewardSlots current = getSlots();
+		int count = Math.min(current.size(), generatedRewards.size());
 		
 		// Enumerate the list of rewards
-		for (String key : rewards.keySet()) {
+		for (int i = 0; i < count; i++) {
+			ResourceHolder resource = generatedRewards.get(i);
 			
-			// Quit if we've exhausted the list
-			if (index >= generatedRewards.size())
-				break;
+			// Don't look up services for empty slots
+			if (resource == null)
+				continue;
 			
-			RewardService manager = provider.getByName(key);
-			ResourceHolder resource = generatedRewards.get(index++);
+			RewardService manager = provider.getByName(current.names[i]);
 			
 			// See if the manager allows this 
-			if (manager != null && resource != null) {
+			if (manager != null) {
 				if (!manager.canReward(player, resource)) {
 					return false;
 				}
@@ -239,29 +376,44 @@ public class Action {
 	 * @return Combined amount of resources given.
 	 */
 	public Collection<ResourceHolder> rewardPlayer(RewardProvider provider, Player player, List<ResourceHolder> generatedRewards) {
+		return rewardPlayer(provider, player, generatedRewards, new RewardBuffer(getSlots().size()));
+	}
+	
+	/**
+	 * Rewards or penalizes a player with the given amount of resources.
+	 * <p>
+	 * The given buffer is cleared first, and then filled with the combined resources.
+	 * 
+	 * @param provider - reward provider that determines specifically how to reward players.
+	 * @param player - the player to reward.
+	 * @param generatedRewards - the list of rewards to use.
+	 * @param result - the buffer to fill.
+	 * @return The given buffer.
+	 */
+	public RewardBuffer rewardPlayer(RewardProvider provider, Player player, List<ResourceHolder> generatedRewards, 
+									 RewardBuffer result) {
 		
-		Map<String, ResourceHolder> result = new HashMap<String, ResourceHolder>();
+		RewardSlots current = getSlots();
+		int count = Math.min(current.size(), generatedRewards.size());
 		
-		// Like above
-		int index = 0;
+		result.reset(0);
 		
 		// Give every reward
-		for (String key : rewards.keySet()) {
+		for (int i = 0; i < count; i++) {
+			ResourceHolder resource = generatedRewards.get(i);
 			
-			// Quit if we've exhausted the list
-			if (index >= generatedRewards.size())
-				break;
+			if (resource == null)
+				continue;
 			
-			RewardService manager = provider.getByName(key);
-			ResourceHolder resource = generatedRewards.get(index++);
+			RewardService manager = provider.getByName(current.names[i]);
 			
-			if (manager != null && resource != null) {
+			if (manager != null) {
 				manager.reward(player, resource);
 				addResource(result, resource);
 			}
 		}
 		
-		return result.values();
+		return result;
 	}
 	
 	/**
@@ -278,27 +430,45 @@ public class Action {
 	 */
 	public Collection<ResourceHolder> rewardPlayer(RewardProvider provider, Player player, 
 												   List<ResourceHolder> generatedRewards, Location point) {
+		return rewardPlayer(provider, player, generatedRewards, point, new RewardBuffer(getSlots().size()));
+	}
+	
+	/**
+	 * Rewards or penalizes a given player with resources at a given location.
+	 * <p>
+	 * The given buffer is cleared first, and then filled with the combined resources.
+	 * 
+	 * @param provider - reward provider that determines specifically how to reward players.
+	 * @param player - the player to reward.
+	 * @param generatedRewards - the list of rewards to use.
+	 * @param point - the location to place the reward, if relevant.
+	 * @param result - the buffer to fill.
+	 * @return The given buffer.
+	 */
+	public RewardBuffer rewardPlayer(RewardProvider provider, Player player, 
+									 List<ResourceHolder> generatedRewards, Location point, RewardBuffer result) {
+		
+		RewardSlots current = getSlots();
+		int count = Math.min(current.size(), generatedRewards.size());
 		
-		Map<String, ResourceHolder> result = new HashMap<String, ResourceHolder>();
-		int index = 0;
+		result.reset(0);
 		
 		// Give every reward
-		for (String key : rewards.keySet()) {
+		for (int i = 0; i < count; i++) {
+			ResourceHolder resource = generatedRewards.get(i);
 			
-			// Quit if we've exhausted the list
-			if (index >= generatedRewards.size())
-				break;
+			if (resource == null)
+				continue;
 			
-			RewardService manager = provider.getByName(key);
-			ResourceHolder resource = generatedRewards.get(index++);
+			RewardService manager = provider.getByName(current.names[i]);
 			
-			if (manager != null && resource != null) {
+			if (manager != null) {
 				manager.reward(player, point, resource);
 				addResource(result, resource);
 			}
 		}
 		
-		return result.values();
+		return result;
 	}
 	
 	/**
@@ -315,38 +485,64 @@ public class Action {
 	 */
 	public Collection<ResourceHolder> rewardAnyone(RewardProvider provider, World world, 
 												   List<ResourceHolder> generatedRewards, Location point) {
+		return rewardAnyone(provider, world, generatedRewards, point, new RewardBuffer(getSlots().size()));
+	}
+	
+	/**
+	 * Spawns resources at the given location.
+	 * <p>
+	 * The given buffer is cleared first, and then filled with the combined resources.
+	 * 
+	 * @param provider - reward provider that determines specifically how to award resources.
+	 * @param world - the world where the resources should be spawned.
+	 * @param generatedRewards - the list of rewards to use.
+	 * @param point - the location to place the reward.
+	 * @param result - the buffer to fill.
+	 * @return The given buffer.
+	 */
+	public RewardBuffer rewardAnyone(RewardProvider provider, World world, 
+									 List<ResourceHolder> generatedRewards, Location point, RewardBuffer result) {
 		
-		Map<String, ResourceHolder> result = new HashMap<String, ResourceHolder>();
-		int index = 0;
+		RewardSlots current = getSlots();
+		int count = Math.min(current.size(), generatedRewards.size());
+		
+		result.reset(0);
 		
 		// Give every reward
-		for (String key : rewards.keySet()) {
+		for (int i = 0; i < count; i++) {
+			ResourceHolder resource = generatedRewards.get(i);
 			
-			// Quit if we've exhausted the list
-			if (index >= generatedRewards.size())
-				break;
+			if (resource == null)
+				continue;
 			
-			RewardService manager = provider.getByName(key);
-			ResourceHolder resource = generatedRewards.get(index++);
+			RewardService manager = provider.getByName(current.names[i]);
 			
-			if (manager != null && resource != null) {
+			if (manager != null) {
 				manager.reward(world, point, resource);
 				addResource(result, resource);
 			}
 		}
 		
-		return result.values();
+		return result;
 	}
 	
-	private void addResource(Map<String, ResourceHolder> result, ResourceHolder resource) {
+	private void addResource(List<ResourceHolder> result, ResourceHolder resource) {
 		
-		if (result.containsKey(resource.getName())) {
-			// Add the previous value
-			resource = result.get(resource.getName()).add(resource);
+		String name = resource.getName();
+		
+		// There are only a handful of reward types, so a linear search is faster than hashing
+		for (int i = 0; i < result.size(); i++) {
+			ResourceHolder previous = result.get(i);
+			
+			if (previous.getName().equals(name)) {
+				// Add the previous value
+				result.set(i, previous.add(resource));
+				return;
+			}
 		}
 		
 		// Save value
-		result.put(resource.getName(), resource);
+		result.add(resource);
 	}
 	
 	/**
@@ -355,8 +551,18 @@ public class Action {
 	 * @param formatter - message formatter, complete with all the parameter information.
 	 */
 	public void announceMessages(ChannelProvider provider, MessageFormatter formatter) {
+		announceMessages(provider, formatter, debugger);
+	}
+	
+	/**
+	 * Sends a general message informing anyone listening of the resources awarded.
+	 * @param provider - channel provider to use.
+	 * @param formatter - message formatter, complete with all the parameter information.
+	 * @param debugger - debugger that reports missing channels, or NULL to use the debugger of this action.
+	 */
+	public void announceMessages(ChannelProvider provider, MessageFormatter formatter, Debugger debugger) {
 		// Emote from no one
-		emoteMessages(provider, formatter, null);
+		emoteMessages(provider, formatter, null, debugger);
 	}
 	
 	/**
@@ -367,28 +573,42 @@ public class Action {
 	 * @param player - the sender.
 	 */
 	public void emoteMessages(ChannelProvider provider, MessageFormatter formatter, Player player) {
+		emoteMessages(provider, formatter, player, debugger);
+	}
+	
+	/**
+	 * Sends a message from the given player informing anyone listening of 
+	 * the action performed and the resources awarded.
+	 * <p>
+	 * The action itself is not modified, so this may be called on actions shared by an {@link com.comphenix.xp.lookup.ActionTree}.
+	 * @param provider - channel provider to use.
+	 * @param formatter - message formatter, complete with all the parameter information.
+	 * @param player - the sender.
+	 * @param debugger - debugger that reports missing channels, or NULL to use the debugger of this action.
+	 */
+	public void emoteMessages(ChannelProvider provider, MessageFormatter formatter, Player player, Debugger debugger) {
 	
 		List<ResourceHolder> generated = formatter.getGenerated();
-		Iterator<String> rewardKeys = rewards.keySet().iterator();
+		RewardSlots current = getSlots();
 
 		// Dispatch every listed message
 		if (messages != null) {
 			for (Message message : messages) {
-				dispatchMessages(provider, formatter, message, player);
+				dispatchMessages(provider, formatter, message, player, debugger);
 			}
 		}
 		
 		// Handle reward specific messages
-		for (int i = 0; i < generated.size() && rewardKeys.hasNext(); i++) {
+		for (int i = 0; i < generated.size() && i < current.size(); i++) {
 			ResourceHolder element = generated.get(i);
-			List<ResourceHolder> elements = Arrays.asList(generated.get(i));
-			
-			List<Message> current = getMessages(rewardKeys.next());
+			List<Message> messages = current.entries[i].getMessages();
 			
 			// Print the messages (and ensure that the amount is greater than zero)
-			if (current != null && element.getAmount() > 0) {
-				for (Message message : current) {
-					dispatchMessages(provider, formatter.createView(elements, null), message, player);
+			if (messages != null && element != null && element.getAmount() > 0) {
+				List<ResourceHolder> elements = Arrays.asList(element);
+				
+				for (Message message : messages) {
+					dispatchMessages(provider, formatter.createView(elements, null), message, player, debugger);
 				}
 			}
 		}
@@ -400,24 +620,33 @@ public class Action {
 	 * @param formatter - message formatter, complete with all the parameter information.
 	 * @param currentMessage - the message to transmit.
 	 * @param player - the sender, or NULL to simply announce the message.
+	 * @param debugger - debugger that reports missing channels, or NULL to use the debugger of this action.
 	 */
-	private void dispatchMessages(ChannelProvider provider, MessageFormatter formatter, Message currentMessage, Player player) {
+	private void dispatchMessages(ChannelProvider provider, MessageFormatter formatter, Message currentMessage, 
+								  Player player, Debugger debugger) {
+		
+		if (debugger == null)
+			debugger = this.debugger;
 		
 		List<String> channels = getChannels(provider, currentMessage);
 		List<String> failures = new ArrayList<String>();
-		ChannelService service = provider.getDefaultService();
+		ChannelService service = provider.getDispatchService();
 		
 		if (channels != null &&  service != null) {
+			// Format the message once, when it is needed
+			String text = null;
+			
 			// Like above, only without the player
 			for (String channel : channels) {
-				String text = currentMessage.getText();
-				
 				try {
 					if (service.hasChannel(channel)) {
+						if (text == null)
+							text = formatter.formatMessage(currentMessage.getTemplate());
+						
 						if (player == null)
-							service.announce(channel, formatter.formatMessage(text));
+							service.announce(channel, text);
 						else
-							service.emote(channel, formatter.formatMessage(text), player);
+							service.emote(channel, text, player);
 					} else {
 						failures.add(channel);
 					}
@@ -506,16 +735,21 @@ public class Action {
 	
 	public Action multiply(double multiply) {
 
-		Map<String, MessagedResource> copy = new HashMap<String, MessagedResource>();
+		MessagedResource[] builtInCopy = new MessagedResource[builtIn.length];
+		Map<String, MessagedResource> customCopy = new LinkedHashMap<String, MessagedResource>();
 		
 		// Multiply everything
-		for (Map.Entry<String, MessagedResource> entry : rewards.entrySet()) {
+		for (int i = 0; i < builtIn.length; i++) {
+			if (builtIn[i] != null)
+				builtInCopy[i] = builtIn[i].multiply(multiply);
+		}
+		for (Map.Entry<String, MessagedResource> entry : custom.entrySet()) {
 			MessagedResource old = entry.getValue();	
-			copy.put(entry.getKey(), old.multiply(multiply));
+			customCopy.put(entry.getKey(), old.multiply(multiply));
 		}
 		
 		// Copy everything
-		Action action = new Action(messages, copy, debugger, id);
+		Action action = new Action(messages, builtInCopy, customCopy, debugger, id);
 		action.setInheritMultiplier(inheritMultiplier);
 		action.setInheritance(inherit);
 		return action;
@@ -601,7 +835,8 @@ public class Action {
         Action other = (Action) obj;
         return new EqualsBuilder().
             append(messages, other.messages).
-            append(rewards, other.rewards).
+            append(builtIn, other.builtIn).
+            append(custom, other.custom).
             append(inherit, other.inherit).
             append(inheritMultiplier, other.inheritMultiplier).
             append(id, other.id).
@@ -613,12 +848,11 @@ public class Action {
 		
 		List<String> textRewards = new ArrayList<String>();
 		
+		RewardSlots current = getSlots();
+		
 		// Build list of rewards
-		for (Map.Entry<String, MessagedResource> entry : rewards.entrySet()) {
-			String key = entry.getKey();
-			MessagedResource value = entry.getValue();
-			
-			textRewards.add(String.format("%s: %s", key, value));
+		for (int i = 0; i < current.size(); i++) {
+			textRewards.add(String.format("%s: %s", current.names[i], current.entries[i]));
 		}
 		
 		return String.format("%s %s (%d)", 
@@ -715,4 +949,48 @@ public class Action {
 				return String.format("%s [%s]", resourceFactory, StringUtils.join(messages, ", "));
 		}
 	}
+
+	/**
+	 * Represents an immutable snapshot of the rewards of an action, in slot order.
+	 * 
+	 * @author Kristian
+	 */
+	private static class RewardSlots {
+		
+		private final String[] names;
+		private final MessagedResource[] entries;
+		private final List<String> layout;
+		
+		public RewardSlots(MessagedResource[] builtIn, Map<String, MessagedResource> custom) {
+			int count = custom.size();
+			int index = 0;
+			
+			for (MessagedResource resource : builtIn) {
+				if (resource != null)
+					count++;
+			}
+			
+			names = new String[count];
+			entries = new MessagedResource[count];
+			
+			// Built-in rewards first, in the order of their type
+			for (RewardTypes type : RewardTypes.values()) {
+				if (builtIn[type.ordinal()] != null) {
+					names[index] = type.name();
+					entries[index++] = builtIn[type.ordinal()];
+				}
+			}
+			
+			for (Map.Entry<String, MessagedResource> entry : custom.entrySet()) {
+				names[index] = entry.getKey();
+				entries[index++] = entry.getValue();
+			}
+			
+			layout = Collections.unmodifiableList(Arrays.asList(names));
+		}
+		
+		public int size() {
+			return names.length;
+		}
+	}
 }
@@ -160,6 +160,7 @@ public class Configuration implements PlayerCleanupListener, Multipliable<Config
 		this.playerRewards = other.playerRewards.withMultiplier(newMultiplier);
 		this.levelingRate = other.levelingRate;
 		this.checkRewards();
+		this.precompileActions();
 	}
 		
 	public Configuration(Debugger debugger, RewardProvider provider, ChannelProvider channels) {
@@ -402,6 +403,7 @@ public class Configuration implements PlayerCleanupListener, Multipliable<Config
 		// Reload providers
 		initializeReferences();
 		checkRewards();
+		precompileActions();
 	}
 	
 	private void loadRate(ConfigurationSection config) {
@@ -479,6 +481,25 @@ public class Configuration implements PlayerCleanupListener, Multipliable<Config
 		}
 	}
 
+	// Scale every action up front, instead of during the first event
+	private void precompileActions() {
+		
+		for (ItemTree tree : actionRewards.values()) {
+			tree.precompile();
+			tree.getItemPresence();
+		}
+		for (PotionTree tree : complexRewards.values()) {
+			tree.precompile();
+		}
+		
+		experienceDrop.precompile();
+		experienceDrop.getTypePresence();
+		playerDeathDrop.precompile();
+		
+		if (levelingRate != null)
+			levelingRate.precompile();
+	}
+	
 	private boolean hasEconomyReward(Collection<Action> values) {
 		
 		// See if we have an economy reward set
@@ -589,6 +610,34 @@ public class Configuration implements PlayerCleanupListener, Multipliable<Config
 		return actionRewards.put(actionID, tree);
 	}
 	
+	/**
+	 * Retrieves every item ID that could be rewarded by the given action or trigger.
+	 * @param actionID - unique ID for the given action.
+	 * @return Presence mask of every rewarded item ID.
+	 */
+	public PresenceMask getActionPresence(Integer actionID) {
+		ItemTree tree = getActionReward(actionID);
+		
+		return tree != null ? tree.getItemPresence() : PresenceMask.EMPTY;
+	}
+	
+	/**
+	 * Retrieves every item ID that could be rewarded by the given action or trigger.
+	 * @param action - name for the given action.
+	 * @return Presence mask of every rewarded item ID.
+	 */
+	public PresenceMask getActionPresence(String action) {
+		return getActionPresence(actionTypes.getType(action));
+	}
+	
+	/**
+	 * Retrieves every entity type ID that could be rewarded when a mob is killed.
+	 * @return Presence mask of every rewarded entity type ID.
+	 */
+	public PresenceMask getMobPresence() {
+		return experienceDrop != null ? experienceDrop.getTypePresence() : PresenceMask.EMPTY;
+	}
+	
 	/**
 	 * Retrieves the complex potion rewards for the given action or trigger.
 	 * @param actionID - unique ID for the given action.
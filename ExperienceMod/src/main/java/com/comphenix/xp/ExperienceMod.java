@@ -50,10 +50,12 @@ import com.comphenix.xp.expressions.StandardPlayerService;
 import com.comphenix.xp.extra.Service;
 import com.comphenix.xp.extra.ServiceProvider;
 import com.comphenix.xp.extra.PermissionSystem.CustomPermission;
+import com.comphenix.xp.history.ChunkHistoryService;
 import com.comphenix.xp.history.HawkeyeService;
 import com.comphenix.xp.history.HistoryProviders;
 import com.comphenix.xp.history.LogBlockService;
 import com.comphenix.xp.history.MemoryService;
+import com.comphenix.xp.history.PlacedBlockFilter;
 import com.comphenix.xp.listeners.*;
 import com.comphenix.xp.lookup.*;
 import com.comphenix.xp.messages.ChannelChatService;
@@ -80,6 +82,9 @@ import com.google.common.collect.Lists;
 public class ExperienceMod extends JavaPlugin implements Debugger {
 	private static final int DEFAULT_BUFFER_SIZE = 1024 * 4;
 	
+	// Saved filter of placed blocks
+	private static final String HISTORY_FILTER_FILE = "history.filter";
+	
 	private Logger currentLogger;
 	private PluginManager manager;
 	
@@ -114,6 +119,7 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 	private ChannelProvider channelProvider;
 	private CustomBlockProviders customProvider;
 	private HistoryProviders historyProviders;
+	private ChunkHistoryService chunkHistory;
 	private ParameterProviderSet parameterProviders;
 	private StandardPlayerService standardPlayerService;
 	private RewardEconomy rewardEconomy;
@@ -327,6 +333,20 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 					globalSettings.getMaxBlocksInHistory(), 
 					globalSettings.getMaxAgeInHistory()
 			));
+			
+			// Persistent history of placed blocks
+			if (globalSettings.isUseChunkHistory()) {
+				if (chunkHistory == null) {
+					chunkHistory = new ChunkHistoryService(new File(getDataFolder(), "history"), this);
+					manager.registerEvents(chunkHistory, this);
+				}
+				historyProviders.register(chunkHistory);
+			}
+			
+			// Filter of placed blocks in front of the slow history services
+			if (globalSettings.isUseHistoryFilter()) {
+				loadHistoryFilter();
+			}
 		
 			registerHistoryServices();
 			
@@ -421,6 +441,48 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 			
 		if (itemListener != null)
 			itemListener.cleanupItems();
+		if (channelProvider != null)
+			channelProvider.setCoalesceWindow(0);
+		if (historyProviders != null) {
+			saveHistoryFilter();
+			historyProviders.shutdown();
+		}
+		if (chunkHistory != null) {
+			chunkHistory.close();
+			chunkHistory = null;
+		}
+	}
+	
+	private void loadHistoryFilter() {
+		File file = new File(getDataFolder(), HISTORY_FILTER_FILE);
+		
+		try {
+			historyProviders.setPlacedFilter(PlacedBlockFilter.open(file));
+		} catch (IOException e) {
+			printWarning(this, "Cannot load placed block filter: %s", e.getMessage());
+			
+			// Don't trust a partial filter
+			historyProviders.setPlacedFilter(null);
+		}
+	}
+	
+	private void saveHistoryFilter() {
+		PlacedBlockFilter filter = historyProviders.getPlacedFilter();
+		
+		if (filter != null) {
+			if (filter.getJournalError() != null) {
+				printWarning(this, "Cannot record placed blocks: %s", filter.getJournalError().getMessage());
+			}
+			
+			try {
+				filter.close();
+			} catch (IOException e) {
+				printWarning(this, "Cannot save placed block filter: %s", e.getMessage());
+			}
+			
+			printDebug(this, "Placed block filter: fill ratio %.3f, hit rate %.3f.", 
+					filter.getFillRatio(), filter.getHitRate());
+		}
 	}
 	
 	public YamlConfiguration loadConfig(String name, String createMessage) throws IOException {
@@ -518,6 +580,9 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 			disableServices(rewardProvider, globalSettings.getDisabledServices());
 			disableServices(customProvider, globalSettings.getDisabledServices());
 			
+			// Merge channel messages before the presets copy the channel provider
+			channelProvider.setCoalesceWindow((long) (globalSettings.getMessageCoalesceWindow() * 1000));
+			
 			// Load parts of the configuration
 			YamlConfiguration presetList = loadConfig("presets.yml", "Creating default preset list.");
 			loadConfig("config.yml", "Creating default configuration.");
@@ -527,6 +592,10 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 						 		  this, getChat());
 			setPresets(presets);
 			
+			// Block history
+			xpBlockListener.setHistoryTimeout(globalSettings.getDeferredHistoryTimeout());
+			xpBlockListener.setAssumePlacedOnTimeout(globalSettings.isAssumePlacedOnTimeout());
+			
 			// Vault is required here
 			if (chat == null && presets.usesPresetParameters()) {
 				printWarning(this, "Cannot use presets. VAULT plugin was not found");
@@ -549,6 +618,10 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 			if (presets != null)
 				presets.onTick();
 			
+			// Send merged channel messages
+			if (channelProvider != null)
+				channelProvider.onTick();
+			
 		} catch (Exception e) {
 			report.reportError(this, this, e, presets);
 		}
@@ -838,7 +911,7 @@ public class ExperienceMod extends JavaPlugin implements Debugger {
 		// Create a new listener if necessary
 		if (xpBlockListener == null || xpItemListener == null || xpMobListener == null) {
 			xpItemListener = new ExperienceItemListener(this, playerScheduler, customProvider, presets);
-			xpBlockListener = new ExperienceBlockListener(this, presets, historyProviders);
+			xpBlockListener = new ExperienceBlockListener(this, this, presets, historyProviders);
 			xpMobListener = new ExperienceMobListener(this, playerGroups, presets);
 			xpEnchancer = new ExperienceEnhancementsListener(this, presets, 
 					xpReflectionModifier != null ? xpReflectionModifier : xpProtocolModifier);
@@ -17,12 +17,22 @@ public class GlobalSettings {
 	public static final String USE_PERMISSIONS = "use permissions";
 	public static final String USE_METRICS = "use metrics";
 	public static final String DISABLED_SERVICES = "disabled services";
+	public static final String DEFERRED_HISTORY_TIMEOUT = "deferred history timeout";
+	public static final String ASSUME_PLACED_ON_TIMEOUT = "assume placed on timeout";
+	public static final String USE_HISTORY_FILTER = "use history filter";
+	public static final String USE_CHUNK_HISTORY = "use chunk history";
+	public static final String MESSAGE_COALESCE_WINDOW = "message coalesce window";
 	
 	private static final int DEFAULT_MAX_BLOCKS_IN_HISTORY = 5000;
 	private static final int DEFAULT_MAX_AGE_IN_HISTORY = 600; // 10 minutes
 	private static final int DEFAULT_PRESET_CACHE_TIMEOUT = 10; // Seconds
 	private static final boolean DEFAULT_USE_PERMISSIONS = true;
 	private static final boolean DEFAULT_USE_METRICS = true;
+	private static final int DEFAULT_DEFERRED_HISTORY_TIMEOUT = 0; // Disabled
+	private static final boolean DEFAULT_ASSUME_PLACED_ON_TIMEOUT = false;
+	private static final boolean DEFAULT_USE_HISTORY_FILTER = false;
+	private static final boolean DEFAULT_USE_CHUNK_HISTORY = false;
+	private static final double DEFAULT_MESSAGE_COALESCE_WINDOW = 0; // Disabled
 	
 	// Configuration file
 	private FileConfiguration currentConfig;
@@ -38,6 +48,15 @@ public class GlobalSettings {
 	private boolean usePermissions;
 	private List<String> disabledServices;
 	
+	// Asynchronous block history
+	private int deferredHistoryTimeout;
+	private boolean assumePlacedOnTimeout;
+	private boolean useHistoryFilter;
+	private boolean useChunkHistory;
+	
+	// Channel message buffering
+	private double messageCoalesceWindow;
+	
 	// Parsers
 	private StringListParser listParser = new StringListParser();
 	
@@ -64,6 +83,15 @@ public class GlobalSettings {
 		setDisabledServices(listParser.parseSafe(config, DISABLED_SERVICES));
 		setUsePermissions(config.getBoolean(USE_PERMISSIONS, DEFAULT_USE_PERMISSIONS));
 		
+		// Block history
+		deferredHistoryTimeout = config.getInt(DEFERRED_HISTORY_TIMEOUT, DEFAULT_DEFERRED_HISTORY_TIMEOUT);
+		assumePlacedOnTimeout = config.getBoolean(ASSUME_PLACED_ON_TIMEOUT, DEFAULT_ASSUME_PLACED_ON_TIMEOUT);
+		useHistoryFilter = config.getBoolean(USE_HISTORY_FILTER, DEFAULT_USE_HISTORY_FILTER);
+		useChunkHistory = config.getBoolean(USE_CHUNK_HISTORY, DEFAULT_USE_CHUNK_HISTORY);
+		
+		// Message coalescing
+		messageCoalesceWindow = config.getDouble(MESSAGE_COALESCE_WINDOW, DEFAULT_MESSAGE_COALESCE_WINDOW);
+		
 		// Handle errors
 		if (disabledServices == null) {
 			debugger.printDebug(this, "No disabled service setting found.");
@@ -81,6 +109,14 @@ public class GlobalSettings {
 			debugger.printWarning(this, "Preset cache cannot be negative: %s", presetCacheTimeout);
 			presetCacheTimeout = 0;
 		}
+		if (deferredHistoryTimeout < 0) {
+			debugger.printWarning(this, "Deferred history timeout cannot be negative: %s", deferredHistoryTimeout);
+			deferredHistoryTimeout = 0;
+		}
+		if (messageCoalesceWindow < 0) {
+			debugger.printWarning(this, "Message coalesce window cannot be negative: %s", messageCoalesceWindow);
+			messageCoalesceWindow = 0;
+		}
 		
 		// Save it
 		this.currentConfig = config;
@@ -112,6 +148,11 @@ public class GlobalSettings {
 			currentConfig.set(USE_METRICS, useMetrics);
 			currentConfig.set(USE_PERMISSIONS, usePermissions);
 			currentConfig.set(DISABLED_SERVICES, disabledServices);
+			currentConfig.set(DEFERRED_HISTORY_TIMEOUT, deferredHistoryTimeout);
+			currentConfig.set(ASSUME_PLACED_ON_TIMEOUT, assumePlacedOnTimeout);
+			currentConfig.set(USE_HISTORY_FILTER, useHistoryFilter);
+			currentConfig.set(USE_CHUNK_HISTORY, useChunkHistory);
+			currentConfig.set(MESSAGE_COALESCE_WINDOW, messageCoalesceWindow);
 		}
 		
 		return currentConfig;
@@ -185,4 +226,79 @@ public class GlobalSettings {
 		
 		this.disabledServices = disabledServices;
 	}
+	
+	/**
+	 * Retrieves the number of ticks to wait for slow history services before a deferred block reward is granted.
+	 * <p>
+	 * Zero indicates that block history is looked up synchronously. Slow history services, such as 
+	 * LogBlock, can only batch lookups from multiple blocks into a single query if this is enabled.
+	 * @return Timeout in ticks, or zero if disabled.
+	 */
+	public int getDeferredHistoryTimeout() {
+		return deferredHistoryTimeout;
+	}
+
+	/**
+	 * Sets the number of ticks to wait for slow history services before a deferred block reward is granted.
+	 * @param deferredHistoryTimeout - timeout in ticks, or zero to look up block history synchronously.
+	 */
+	public void setDeferredHistoryTimeout(int deferredHistoryTimeout) {
+		if (deferredHistoryTimeout < 0)
+			throw new IllegalArgumentException("Deferred history timeout cannot be negative.");
+		
+		this.deferredHistoryTimeout = deferredHistoryTimeout;
+	}
+
+	/**
+	 * Whether or not blocks are considered placed by a player when the history lookup times out.
+	 * @return TRUE if they are, FALSE otherwise.
+	 */
+	public boolean isAssumePlacedOnTimeout() {
+		return assumePlacedOnTimeout;
+	}
+
+	public void setAssumePlacedOnTimeout(boolean assumePlacedOnTimeout) {
+		this.assumePlacedOnTimeout = assumePlacedOnTimeout;
+	}
+
+	/**
+	 * Whether or not slow history services are only queried for blocks that may have been placed by a player.
+	 * <p>
+	 * Blocks placed before the filter was enabled will be considered naturally generated.
+	 * @return TRUE if the placed block filter is used, FALSE otherwise.
+	 */
+	public boolean isUseHistoryFilter() {
+		return useHistoryFilter;
+	}
+
+	public void setUseHistoryFilter(boolean useHistoryFilter) {
+		this.useHistoryFilter = useHistoryFilter;
+	}
+
+	/**
+	 * Whether or not every block placed by a player is recorded in region files on the disk.
+	 * @return TRUE if the chunk history is used, FALSE otherwise.
+	 */
+	public boolean isUseChunkHistory() {
+		return useChunkHistory;
+	}
+
+	public void setUseChunkHistory(boolean useChunkHistory) {
+		this.useChunkHistory = useChunkHistory;
+	}
+
+	/**
+	 * Retrieves the number of seconds channel messages are buffered, so that identical lines can be merged.
+	 * @return Coalescing window in seconds, or zero if disabled.
+	 */
+	public double getMessageCoalesceWindow() {
+		return messageCoalesceWindow;
+	}
+
+	public void setMessageCoalesceWindow(double messageCoalesceWindow) {
+		if (messageCoalesceWindow < 0)
+			throw new IllegalArgumentException("Message coalesce window cannot be negative.");
+		
+		this.messageCoalesceWindow = messageCoalesceWindow;
+	}
 }
@@ -1,28 +1,48 @@
 package com.comphenix.xp;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
 import org.apache.commons.lang.NullArgumentException;
-import org.apache.commons.lang.ObjectUtils;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitScheduler;
 
 import com.comphenix.xp.listeners.PlayerCleanupListener;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
 
 /**
  * Schedules actions for different players.
+ * <p>
+ * Every task is executed by a single repeating task that drains one bucket per tick, so scheduling 
+ * a task doesn't involve the Bukkit scheduler at all.
  * 
  * @author Kristian
  */
 public class PlayerScheduler implements PlayerCleanupListener {
 
-	private SetMultimap<String, PlayerRunnable> tasks = Multimaps.synchronizedSetMultimap(createMap());
-
+	// Must be a power of two
+	private static final int BUCKET_COUNT = 64;
+	
+	// Tasks by the tick they're due, modulo the number of buckets
+	@SuppressWarnings("unchecked")
+	private List<PlayerRunnable>[] buckets = new List[BUCKET_COUNT];
+	
+	// Tasks by player name and tag
+	private Map<String, Map<String, Set<PlayerRunnable>>> tasks = new HashMap<String, Map<String, Set<PlayerRunnable>>>();
+	
+	// Number of scheduled tasks
+	private int taskCount;
+	private int nextTaskID;
+	
+	// The repeating task
+	private int tickTask = -1;
+	private long currentTick;
+	
 	private int defaultTicks;
 	private BukkitScheduler scheduler;
 	private Plugin plugin;
@@ -30,11 +50,10 @@ public class PlayerScheduler implements PlayerCleanupListener {
 	public PlayerScheduler(BukkitScheduler scheduler, Plugin plugin) {
 		this.scheduler = scheduler;
 		this.plugin = plugin;
-	}
-
-	// Creates our multimap
-	private static SetMultimap<String, PlayerRunnable> createMap() {
-		return HashMultimap.create();
+		
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new ArrayList<PlayerRunnable>();
+		}
 	}
 	
 	/**
@@ -42,7 +61,7 @@ public class PlayerScheduler implements PlayerCleanupListener {
 	 * @param player - player to execute on behalf of.
 	 * @param tag - unique tag or task name.
 	 */
-	public void scheduleSync(Player player, String tag, Runnable runnable) {
+	public synchronized void scheduleSync(Player player, String tag, Runnable runnable) {
 
 		if (runnable == null)
 			throw new NullArgumentException("runnable");
@@ -52,40 +71,144 @@ public class PlayerScheduler implements PlayerCleanupListener {
 			throw new NullArgumentException("tag");
 		
 		PlayerRunnable playerTask = new PlayerRunnable(player.getName(), tag, runnable);
-		Integer taskID = scheduler.scheduleSyncDelayedTask(plugin, playerTask, defaultTicks);
 		
-		// Now, update the task ID
-		playerTask.setTaskID(taskID);
-		tasks.put(player.getName(), playerTask);
+		// A delay of zero still means the next tick
+		playerTask.dueTick = currentTick + Math.max(1, defaultTicks);
+		playerTask.setTaskID(nextTaskID++);
+		
+		buckets[(int) (playerTask.dueTick & (BUCKET_COUNT - 1))].add(playerTask);
+		getTagged(player.getName(), tag, true).add(playerTask);
+		taskCount++;
+		
+		// Make sure we're running
+		if (tickTask < 0) {
+			tickTask = scheduler.scheduleSyncRepeatingTask(plugin, new Runnable() {
+				@Override
+				public void run() {
+					onTick();
+				}
+			}, 1, 1);
+		}
 	}
-
-	private Set<PlayerRunnable> getTasks(Player player) {
-		return tasks.get(player.getName());
+	
+	/**
+	 * Executes every task that is due in the current tick.
+	 */
+	private void onTick() {
+		List<PlayerRunnable> due = null;
+		
+		synchronized (this) {
+			List<PlayerRunnable> bucket = buckets[(int) (++currentTick & (BUCKET_COUNT - 1))];
+			
+			// Later rounds stay in the bucket
+			for (int i = 0; i < bucket.size(); i++) {
+				PlayerRunnable task = bucket.get(i);
+				
+				if (task.dueTick <= currentTick) {
+					if (due == null)
+						due = new ArrayList<PlayerRunnable>();
+					due.add(task);
+					
+					// Swap with the last element
+					bucket.set(i--, bucket.get(bucket.size() - 1));
+					bucket.remove(bucket.size() - 1);
+				}
+			}
+		}
+		
+		// Execute outside the lock, as tasks may schedule new tasks
+		if (due != null) {
+			for (PlayerRunnable task : due) {
+				try {
+					if (!task.cancelled)
+						task.run();
+				} catch (RuntimeException e) {
+					// Don't prevent the remaining tasks from running
+					plugin.getLogger().log(Level.SEVERE, "Task " + task.getTag() + " for " + task.getName() + " failed.", e);
+				}
+			}
+		}
+		
+		synchronized (this) {
+			// Don't keep an idle task around
+			if (taskCount == 0 && tickTask >= 0) {
+				scheduler.cancelTask(tickTask);
+				tickTask = -1;
+			}
+		}
 	}
 	
-	public Set<PlayerRunnable> getTasks(Player player, String tag) {
+	// Retrieve the tasks of a player with a given tag
+	private Set<PlayerRunnable> getTagged(String name, String tag, boolean createNew) {
+		Map<String, Set<PlayerRunnable>> tags = tasks.get(name);
+		
+		if (tags == null) {
+			if (!createNew)
+				return null;
+			tags = new HashMap<String, Set<PlayerRunnable>>();
+			tasks.put(name, tags);
+		}
 		
-		Set<PlayerRunnable> copy = new HashSet<PlayerRunnable>();
+		Set<PlayerRunnable> tagged = tags.get(tag);
 		
-		// Filter out runnables with different tags
-		for (PlayerRunnable runnable : getTasks(player)) {
-			if (ObjectUtils.equals(runnable.getTag(), tag)) {
-				copy.add(runnable);
+		if (tagged == null && createNew) {
+			tagged = new HashSet<PlayerRunnable>();
+			tags.put(tag, tagged);
+		}
+		return tagged;
+	}
+	
+	// Remove a task that has been executed
+	private synchronized void remove(PlayerRunnable task) {
+		Map<String, Set<PlayerRunnable>> tags = tasks.get(task.getName());
+		Set<PlayerRunnable> tagged = tags != null ? tags.get(task.getTag()) : null;
+		
+		if (tagged != null && tagged.remove(task)) {
+			taskCount--;
+			
+			// Clean up empty entries
+			if (tagged.isEmpty()) {
+				tags.remove(task.getTag());
+				
+				if (tags.isEmpty())
+					tasks.remove(task.getName());
 			}
 		}
-		return copy;
+	}
+	
+	/**
+	 * Determines if any tasks with the given tag are scheduled for the given player.
+	 * @param player - the player to check.
+	 * @param tag - the tag of the tasks.
+	 * @return TRUE if there are, FALSE otherwise.
+	 */
+	public synchronized boolean hasTasks(Player player, String tag) {
+		Set<PlayerRunnable> tagged = getTagged(player.getName(), tag, false);
+		return tagged != null && !tagged.isEmpty();
+	}
+	
+	public synchronized Set<PlayerRunnable> getTasks(Player player, String tag) {
+		Set<PlayerRunnable> tagged = getTagged(player.getName(), tag, false);
+		
+		if (tagged != null)
+			return new HashSet<PlayerRunnable>(tagged);
+		else
+			return new HashSet<PlayerRunnable>();
 	}
 
 	@Override
-	public void removePlayerCache(Player player) {
+	public synchronized void removePlayerCache(Player player) {
+		Map<String, Set<PlayerRunnable>> tags = tasks.remove(player.getName());
 		
 		// Stop all associated tasks
-		for (PlayerRunnable runnable : getTasks(player)) {
-			scheduler.cancelTask(runnable.getTaskID());
+		if (tags != null) {
+			for (Set<PlayerRunnable> tagged : tags.values()) {
+				for (PlayerRunnable runnable : tagged) {
+					runnable.cancelled = true;
+					taskCount--;
+				}
+			}
 		}
-		
-		// Then remove them
-		tasks.removeAll(player.getName());
 	}
 	
 	public BukkitScheduler getScheduler() {
@@ -123,6 +246,10 @@ public class PlayerScheduler implements PlayerCleanupListener {
 		// The task to execute
 		private Runnable task;
 		
+		// Scheduling state
+		private long dueTick;
+		private boolean cancelled;
+		
 		public PlayerRunnable(String name, String tag, Runnable task) {
 			this.name = name;
 			this.tag = tag;
@@ -131,10 +258,12 @@ public class PlayerScheduler implements PlayerCleanupListener {
 		
 		@Override
 		public void run() {
-			task.run();
-			
-			// Clean up after ourself
-			tasks.remove(name, this);
+			try {
+				task.run();
+			} finally {
+				// Clean up after ourself
+				remove(this);
+			}
 		}
 		
 		public String getName() {
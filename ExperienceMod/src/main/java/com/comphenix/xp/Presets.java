@@ -20,6 +20,8 @@ package com.comphenix.xp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import net.milkbowl.vault.chat.Chat;
@@ -29,6 +31,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
 import com.comphenix.xp.listeners.PlayerCleanupListener;
+import com.comphenix.xp.lookup.PresenceMask;
 import com.comphenix.xp.lookup.PresetQuery;
 import com.comphenix.xp.lookup.PresetTree;
 import com.comphenix.xp.parser.ParsingException;
@@ -72,6 +75,11 @@ public class Presets implements PlayerCleanupListener {
 	// Chat
 	private Chat chat;
 	
+	// Rules present in any configuration
+	private ConcurrentMap<String, PresenceMask> actionPresence = new ConcurrentHashMap<String, PresenceMask>();
+	private volatile PresenceMask mobPresence;
+	private volatile Boolean multipliers;
+	
 	public Presets(ConfigurationSection config, ConfigurationLoader loader, 
 				   int cacheTimeout, Debugger logger, Chat chat) {
 		
@@ -297,6 +305,64 @@ public class Presets implements PlayerCleanupListener {
 	public Collection<Configuration> getConfigurations() {
 		return presets.getValues();
 	}
+	
+	/**
+	 * Retrieves every item ID that could be rewarded by the given action in any configuration.
+	 * <p>
+	 * Events with an item ID outside this mask can be discarded without looking up the configuration.
+	 * @param action - name of the action or trigger.
+	 * @return Presence mask of every rewarded item ID.
+	 */
+	public PresenceMask getActionPresence(String action) {
+		PresenceMask result = actionPresence.get(action);
+		
+		if (result == null) {
+			result = PresenceMask.EMPTY;
+			
+			for (Configuration config : getConfigurations()) {
+				result = PresenceMask.union(result, config.getActionPresence(action));
+			}
+			actionPresence.put(action, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Retrieves every entity type ID that could be rewarded in any configuration.
+	 * @return Presence mask of every rewarded entity type ID.
+	 */
+	public PresenceMask getMobPresence() {
+		PresenceMask result = mobPresence;
+		
+		if (result == null) {
+			result = PresenceMask.EMPTY;
+			
+			for (Configuration config : getConfigurations()) {
+				result = PresenceMask.union(result, config.getMobPresence());
+			}
+			mobPresence = result;
+		}
+		return result;
+	}
+	
+	/**
+	 * Determines if any configuration changes the vanilla experience drops with a multiplier.
+	 * @return TRUE if any configuration has a multiplier, FALSE otherwise.
+	 */
+	public boolean hasMultipliers() {
+		Boolean result = multipliers;
+		
+		if (result == null) {
+			result = false;
+			
+			for (Configuration config : getConfigurations()) {
+				if (config.getMultiplier() != 1)
+					result = true;
+			}
+			multipliers = result;
+		}
+		return result;
+	}
 		
 	public void onTick() {
 		
@@ -59,6 +59,21 @@ public class SampleRange {
 	}
 	
 	public double sampleDouble(Random rnd) {
+		return sampleDouble(rnd, start, end);
+	}
+	
+	/**
+	 * Samples a number from the range [start, end] without constructing a range.
+	 * @param rnd - random number generator.
+	 * @param start - the start value.
+	 * @param end - the end value.
+	 * @return The sampled number.
+	 * @throws IllegalArgumentException If the end value is less than the start value.
+	 */
+	public static double sampleDouble(Random rnd, double start, double end) {
+		if (end < start)
+			throw new IllegalArgumentException("Illegal range. The first value must be less than the last.");
+		
 		if (start == end)
 			return start;
 		else
@@ -74,7 +89,21 @@ public class SampleRange {
 	}
 	
 	public int sampleInt(Random rnd) {
-
+		return sampleInt(rnd, start, end);
+	}
+	
+	/**
+	 * Samples an integer from the range [start, end] without constructing a range.
+	 * @param rnd - random number generator.
+	 * @param start - the start value.
+	 * @param end - the end value.
+	 * @return The sampled integer.
+	 * @throws IllegalArgumentException If the end value is less than the start value.
+	 */
+	public static int sampleInt(Random rnd, double start, double end) {
+		if (end < start)
+			throw new IllegalArgumentException("Illegal range. The first value must be less than the last.");
+		
 		/*
 		 * Imagine our range is 0.7 - 5.3:
 		 *
@@ -105,7 +134,7 @@ public class SampleRange {
 		
 		// Special case
 		if ((int)start == (int)end) {
-			return sampleIntReduced(rnd);
+			return sampleIntReduced(rnd, start, end);
 		}
 		
 		// The decimal leftover
@@ -128,8 +157,8 @@ public class SampleRange {
 		return value;
 	}
 	
-	private int sampleIntReduced(Random rnd) {
-		double value = sampleDouble(rnd);
+	private static int sampleIntReduced(Random rnd, double start, double end) {
+		double value = sampleDouble(rnd, start, end);
 		
 		// Probability of adding the fraction
 		double fraction = value - Math.floor(value);
@@ -1,16 +1,21 @@
 package com.comphenix.xp.expressions;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import com.comphenix.xp.SampleRange;
 import com.comphenix.xp.parser.ParsingException;
+import com.comphenix.xp.rewards.items.RandomSampling;
 
 import de.congrace.exp4j.Calculable;
+import de.congrace.exp4j.EvaluationContext;
 import de.congrace.exp4j.ExpressionBuilder;
 import de.congrace.exp4j.InvalidCustomFunctionException;
 import de.congrace.exp4j.UnknownFunctionException;
@@ -25,15 +30,24 @@ public class MathExpression extends VariableFunction {
 	protected RandomFunctions dunif;
 	protected RandomFunctions iunif;
 	
-	// Variables we will calculate
-	protected Map<String, Boolean> variablesPresent;
+	// Context slot of every variable that is present
+	protected Map<String, Integer> variableSlots;
 	
 	// The function to use
 	protected Calculable function;
 	
+	// Evaluation state of each thread
+	protected ThreadLocal<EvaluationContext> contexts;
+	
 	// The multiplication factor
 	protected double multiplier;
 	
+	// Simplified forms of the expression
+	protected boolean isConstant;
+	protected double constant;
+	protected SampleRange range;
+	protected boolean rangeInteger;
+	
 	public MathExpression(String expression, String[] parameters) throws ParsingException {
 		
 		// Parse the expression
@@ -46,18 +60,27 @@ public class MathExpression extends VariableFunction {
 					withCustomFunction(dunif).
 					withCustomFunction(iunif).
 					withVariableNames(parameters).
-					build();
+					compile();
 
 			// Default value
 			multiplier = 1;
-			variablesPresent = new HashMap<String, Boolean>();
+			variableSlots = new HashMap<String, Integer>();
 			
 			// Add parameters that are present
 			for (String param : parameters) {
-				variablesPresent.put(param, function.containsVariable(param));
-				function.setVariable(param, VARIABLE_NOT_FOUND);
+				if (function.containsVariable(param))
+					variableSlots.put(param, function.getVariableIndex(param));
 			}
 			
+			contexts = new ThreadLocal<EvaluationContext>() {
+				@Override
+				protected EvaluationContext initialValue() {
+					return createContext();
+				}
+			};
+			
+			simplify();
+			
 		} catch (UnknownFunctionException e) {
 			throw new ParsingException(e.getMessage(), e);
 		} catch (UnparsableExpressionException e) {
@@ -72,30 +95,102 @@ public class MathExpression extends VariableFunction {
 		this.dunif = copy.dunif;
 		this.iunif = copy.iunif;
 		this.function = copy.function;
-		this.variablesPresent = copy.variablesPresent;
+		this.variableSlots = copy.variableSlots;
+		this.contexts = copy.contexts;
+		this.isConstant = copy.isConstant;
+		this.constant = copy.constant;
+		this.range = copy.range;
+		this.rangeInteger = copy.rangeInteger;
 		this.multiplier = multiplier;
 	}
 	
+	/**
+	 * Determine if the compiled expression can be replaced by a constant or a simple range.
+	 */
+	private void simplify() {
+		double[] arguments = null;
+		
+		if (function.getMinimum() == function.getMaximum()) {
+			constant = function.getMinimum();
+			isConstant = true;
+		} else if ((arguments = function.getConstantArguments(iunif)) != null) {
+			range = toRange(arguments);
+			rangeInteger = true;
+		} else if ((arguments = function.getConstantArguments(dunif)) != null) {
+			range = toRange(arguments);
+		}
+	}
+	
+	private SampleRange toRange(double[] arguments) {
+		// Invalid ranges must be reported when they're sampled
+		if (arguments[0] <= arguments[1])
+			return new SampleRange(arguments[0], arguments[1]);
+		else
+			return null;
+	}
+	
 	@Override
 	public double apply(Random random, Collection<NamedParameter> params) throws Exception {
-
+		return apply(contexts.get(), random, params);
+	}
+	
+	/**
+	 * Calculates a double using the given evaluation context, random number generator and named parameters.
+	 * <p>
+	 * This method may be called concurrently, as long as each thread uses a different context.
+	 * @param context - evaluation context created by {@link #createContext()}.
+	 * @param random - random number generator.
+	 * @param params - named parameters.
+	 * @return The calculated value.
+	 * @throws Exception A runtime error occurred.
+	 */
+	public double apply(EvaluationContext context, Random random, Collection<NamedParameter> params) throws Exception {
+		
+		// Skip the expression entirely if we can
+		if (isConstant) {
+			return constant * multiplier;
+		} else if (range != null) {
+			Random rnd = random != null ? random : RandomSampling.getThreadRandom();
+			
+			if (rangeInteger)
+				return range.sampleInt(rnd) * multiplier;
+			else
+				return range.sampleDouble(rnd) * multiplier;
+		}
+		
 		// Don't forget to use the random number generator we got
-		dunif.setRandom(random);
-		iunif.setRandom(random);
+		context.setRandom(random);
+		
+		for (int i = 0; i < context.getVariableCount(); i++) {
+			context.setVariable(i, VARIABLE_NOT_FOUND);
+		}
 		
 		// Apply all the parameters that exists
 		if (params != null) {
 			for (NamedParameter param : params) {
-				if (variablesPresent.get(param.getName())) {
-					function.setVariable(param.getName(), param.call());
-				} else {
-					function.setVariable(param.getName(), VARIABLE_NOT_FOUND);
+				Integer slot = variableSlots.get(param.getName());
+				
+				if (slot != null) {
+					context.setVariable(slot, param.call());
 				}
 			}
 		}
 		
 		// Right, do our thing
-		return function.calculate() * multiplier;
+		return function.calculate(context) * multiplier;
+	}
+	
+	/**
+	 * Creates a new evaluation context for this expression.
+	 * @return The new context.
+	 */
+	public EvaluationContext createContext() {
+		return function.createContext();
+	}
+
+	@Override
+	public Set<String> getVariableNames() {
+		return Collections.unmodifiableSet(variableSlots.keySet());
 	}
 
 	@Override
@@ -108,6 +203,42 @@ public class MathExpression extends VariableFunction {
 		return multiplier;
 	}
 	
+	@Override
+	public double getMinimum() {
+		if (multiplier == 0)
+			return 0;
+		else if (multiplier > 0)
+			return function.getMinimum() * multiplier;
+		else
+			return function.getMaximum() * multiplier;
+	}
+
+	@Override
+	public double getMaximum() {
+		if (multiplier == 0)
+			return 0;
+		else if (multiplier > 0)
+			return function.getMaximum() * multiplier;
+		else
+			return function.getMinimum() * multiplier;
+	}
+	
+	/**
+	 * Determines if this expression always returns the same value.
+	 * @return TRUE if it does, FALSE otherwise.
+	 */
+	public boolean isConstant() {
+		return isConstant;
+	}
+	
+	/**
+	 * Retrieves the range this expression samples from, if it is a single call to dunif or iunif with constant arguments.
+	 * @return The range, or NULL if this expression is anything else.
+	 */
+	public SampleRange getRange() {
+		return range;
+	}
+	
 	/**
 	 * Retrieves the expression that was used to create this instance, or NULL.
 	 * @return Expression, or NULl if not found.
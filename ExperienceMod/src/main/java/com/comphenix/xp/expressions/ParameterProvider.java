@@ -3,6 +3,8 @@ package com.comphenix.xp.expressions;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 import com.comphenix.xp.Action;
 import com.comphenix.xp.extra.ServiceProvider;
@@ -14,27 +16,55 @@ public class ParameterProvider<TTarget> extends ServiceProvider<ParameterService
 	}
 
 	/**
-	 * Retrieves every registered parameter.
-	 * @param action - the triggering action.
+	 * Retrieves every registered parameter that is used by the given action.
+	 * <p>
+	 * Services that provide none of the parameters the action uses are skipped entirely.
+	 * @param action - the triggering action, or NULL to retrieve every parameter.
 	 * @param target - whatever is the target of this action.
-	 * @return Every registered named parameter.
+	 * @return Every used named parameter.
 	 */
 	public Collection<NamedParameter> getParameters(Action action, TTarget target) {
 		
+		Set<String> used = action != null ? action.getVariableNames() : null;
+		
+		// The common case - plain ranges
+		if (used != null && used.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
 		Collection<NamedParameter> result = new ArrayList<NamedParameter>();
 		
 		// Retrieve the named parameters in every registered service
 		for (ParameterService<TTarget> service : getRegisteredServices()) {
+			if (used != null && !isUsed(service, used))
+				continue;
+			
 			Collection<NamedParameter> sublist = service.getParameters(action, target);
 			
 			if (sublist != null && !sublist.isEmpty()) {
-				result.addAll(sublist);
+				for (NamedParameter parameter : sublist) {
+					if (used == null || used.contains(parameter.getName()))
+						result.add(parameter);
+				}
 			}
 		}
 		
 		return result;
 	}
 	
+	// Determine if the given service provides any of the used parameters
+	private boolean isUsed(ParameterService<TTarget> service, Set<String> used) {
+		String[] names = service.getParameterNames();
+		
+		if (names != null) {
+			for (String name : names) {
+				if (used.contains(name))
+					return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Retrieves the name of every registered parameter.
 	 * @return The name of every registered parameter.
@@ -27,7 +27,7 @@ public class ParameterProviderSet {
 	 * Retrieves every registered parameter for a player.
 	 * @param action - the triggering action.
 	 * @param player - player that is the target if this action (like being killed).
-	 * @return Every registered named parameter.
+	 * @return Every registered named parameter used by the action.
 	 */
 	public Collection<NamedParameter> getParameters(Action action, Player player) {
 		return playerParameters.getParameters(action, player);
@@ -37,7 +37,7 @@ public class ParameterProviderSet {
 	 * Retrieves every registered parameter for an entity.
 	 * @param action - the triggering action.
 	 * @param entity - entity that is the target if this action (like being killed).
-	 * @return Every registered named parameter.
+	 * @return Every registered named parameter used by the action.
 	 */
 	public Collection<NamedParameter> getParameters(Action action, Entity entity) {
 		return entityParameters.getParameters(action, entity);
@@ -47,7 +47,7 @@ public class ParameterProviderSet {
 	 * Retrieves every registered parameter for a block.
 	 * @param action - the triggering action.
 	 * @param block - block that is the target if this action (like being destroyed).
-	 * @return Every registered named parameter.
+	 * @return Every registered named parameter used by the action.
 	 */
 	public Collection<NamedParameter> getParameters(Action action, Block block) {
 		return blockParameters.getParameters(action, block);
@@ -57,7 +57,7 @@ public class ParameterProviderSet {
 	 * Retrieves every registered parameter for an item.
 	 * @param action - the triggering action.
 	 * @param item - the item that is the target if this action (like being crafted).
-	 * @return Every registered named parameter.
+	 * @return Every registered named parameter used by the action.
 	 */
 	public Collection<NamedParameter> getParameters(Action action, ItemStack item) {
 		return itemParameters.getParameters(action, item);
@@ -6,6 +6,7 @@ import com.comphenix.xp.SampleRange;
 import com.comphenix.xp.rewards.items.RandomSampling;
 
 import de.congrace.exp4j.CustomFunction;
+import de.congrace.exp4j.EvaluationContext;
 import de.congrace.exp4j.InvalidCustomFunctionException;
 
 public class RandomFunctions extends CustomFunction {
@@ -60,38 +61,50 @@ public class RandomFunctions extends CustomFunction {
 	
 	@Override
 	public double applyFunction(double... args) {
+		return sample(random, args);
+	}
+	
+	@Override
+	public double applyFunction(EvaluationContext context, double... args) {
+		// Never touch the shared generator
+		return sample(context.getRandom(), args);
+	}
+	
+	private double sample(Random rnd, double[] args) {
 
-		boolean etheral = false;
-		double result = Double.NaN;
-		
-		if (random == null) {
+		if (rnd == null) {
 			// Damn. Well, we better get a RNG quick
-			random = RandomSampling.getThreadRandom();
-			etheral = true;
+			rnd = RandomSampling.getThreadRandom();
 		}
 		
 		switch (function) {
 		case IUNIF:
 		case DUNIF:
 			
-			SampleRange range = new SampleRange(args[0], args[1]);
-			
 			// Handle the double and the int versions
 			if (function == SubFunction.DUNIF)
-				result = range.sampleDouble(random);
+				return SampleRange.sampleDouble(rnd, args[0], args[1]);
 			else
-				result = range.sampleInt(random);
-			break;
+				return SampleRange.sampleInt(rnd, args[0], args[1]);
 			
 		default:
 			throw new IllegalStateException("Illegal random function detected.");
 		}
+	}
+
+	@Override
+	public boolean isDeterministic() {
+		return false;
+	}
+	
+	@Override
+	public double[] getBounds(double[] minimum, double[] maximum) {
 		
-		// Revert back to normal
-		if (etheral) {
-			random = null;
-		}
-		return result;
+		// Every sample is within the range
+		if (function == SubFunction.DUNIF)
+			return new double[] { minimum[0], maximum[1] };
+		else
+			return new double[] { Math.floor(minimum[0]), Math.ceil(maximum[1]) };
 	}
 
 	/**
@@ -7,15 +7,22 @@ import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import com.comphenix.xp.SampleRange;
+import com.comphenix.xp.extra.ConstantRandom;
 
 public class RangeExpression extends VariableFunction {
 
 	protected SampleRange range;
 	protected double multiplier;
 	
+	// The range with the multiplier applied
+	private final SampleRange scaled;
+	
 	public RangeExpression(SampleRange range, double multiplier) {
 		this.range = range;
 		this.multiplier = multiplier;
+		
+		// A negative multiplier yields an invalid range, so let it fail when it is used
+		this.scaled = multiplier >= 0 ? range.multiply(multiplier) : null;
 	}
 	
 	/**
@@ -37,9 +44,24 @@ public class RangeExpression extends VariableFunction {
 
 	@Override
 	public double apply(Random rnd, Collection<NamedParameter> params) throws Exception {
-		return range.multiply(multiplier).sampleInt(rnd);
+		return getScaled().sampleInt(rnd);
 	}
 
+	@Override
+	public double getMinimum() {
+		// Round inwards, just like sampling with the constant generators
+		return getScaled().sampleInt(ConstantRandom.MINIMUM);
+	}
+	
+	@Override
+	public double getMaximum() {
+		return getScaled().sampleInt(ConstantRandom.MAXIMUM);
+	}
+	
+	private SampleRange getScaled() {
+		return scaled != null ? scaled : range.multiply(multiplier);
+	}
+	
 	@Override
 	public VariableFunction withMultiplier(double newMultiplier) {
 		return new RangeExpression(range, newMultiplier);
@@ -52,7 +74,7 @@ public class RangeExpression extends VariableFunction {
 	
 	@Override
 	public String toString() {
-		return range.multiply(multiplier).toString();
+		return getScaled().toString();
 	}
 	
 	@Override
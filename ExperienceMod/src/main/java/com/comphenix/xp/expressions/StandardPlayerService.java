@@ -2,6 +2,9 @@ package com.comphenix.xp.expressions;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import com.comphenix.xp.Action;
@@ -59,46 +62,26 @@ public class StandardPlayerService implements ParameterService<Player> {
 	@Override
 	public Collection<NamedParameter> getParameters(final Action action, final Player player) {
 
-		final Collection<NamedParameter> standard = new ArrayList<NamedParameter>(PARAM_NAMES.length);
-		final ExperienceManager manager = new ExperienceManager(player);
-		
-		// Retrieve th
-		final LevelingRate rate = getRate(action);
+		Set<String> used = action != null ? action.getVariableNames() : null;
+		Collection<NamedParameter> standard = null;
+		PlayerState state = null;
 		
-		// Create short-lived named parameters
+		// Only create the parameters that are actually referenced
 		for (PlayerParameters parameter : PlayerParameters.values()) {
-			final PlayerParameters current = parameter;
+			if (used != null && !used.contains(parameter.toString()))
+				continue;
 			
-			standard.add(new NamedParameter(parameter.toString()) {
-				@Override
-				public Double call() throws Exception {
-				
-					// This is an approximation. We can't "undo" the leveling amount correctly.
-					double rateFactor = rate != null ? RewardVirtual.getLevelingFactor(rate, player, manager) : 1;
-					
-					if (debugger.isDebugEnabled())
-						debugger.printDebug(this, "Rate factor: %s for parameter %s", rateFactor, current);
-					
-					// Use a good ol' switch to execute the different functions
-					switch (current) {
-					case EXPERIENCE:
-					case TOTAL_EXPERIENCE:
-						return (double) manager.getCurrentExp() / rateFactor;
-					case LEVEL_EXPERIENCE:
-						return (double) (player.getExp() * manager.getXpNeededToLevelUp(player.getLevel()) / rateFactor);
-					case CURRENCY:
-						if (economy != null) 
-							return economy.getBalance(player);
-						else
-							return 0.0; // Default
-					default:
-						throw new IllegalArgumentException("Unknown player parameter attribute detected.");
-					}
-				}
-			});
+			if (standard == null) {
+				standard = new ArrayList<NamedParameter>(PARAM_NAMES.length);
+				state = new PlayerState(getRate(action), player);
+			}
+			standard.add(new PlayerParameter(parameter, state));
 		}
 		
-		return standard;
+		if (standard != null)
+			return standard;
+		else
+			return Collections.emptyList();
 	}
 	
 	/**
@@ -107,7 +90,7 @@ public class StandardPlayerService implements ParameterService<Player> {
 	 * @return The current leveling rate, or NULL if none were found.
 	 */
 	private LevelingRate getRate(Action action) {
-		RewardVirtual virtual = (RewardVirtual) action.getReward(RewardTypes.VIRTUAL);
+		RewardVirtual virtual = action != null ? (RewardVirtual) action.getReward(RewardTypes.VIRTUAL) : null;
 
 		if (virtual != null) {
 			return virtual.getLevelingRate();
@@ -115,4 +98,70 @@ public class StandardPlayerService implements ParameterService<Player> {
 			return null;
 		}
 	}
+	
+	/**
+	 * Values shared by every parameter of the same player and action.
+	 * 
+	 * @author Kristian
+	 */
+	private class PlayerState {
+		private final LevelingRate rate;
+		private final Player player;
+		
+		// Computed on demand
+		private double rateFactor = Double.NaN;
+		
+		public PlayerState(LevelingRate rate, Player player) {
+			this.rate = rate;
+			this.player = player;
+		}
+		
+		public double getRateFactor() {
+			if (Double.isNaN(rateFactor)) {
+				// This is an approximation. We can't "undo" the leveling amount correctly.
+				rateFactor = rate != null ? RewardVirtual.getLevelingFactor(rate, player) : 1;
+				
+				if (debugger.isDebugEnabled())
+					debugger.printDebug(this, "Rate factor: %s", rateFactor);
+			}
+			return rateFactor;
+		}
+	}
+	
+	/**
+	 * A short-lived named parameter of a player.
+	 * 
+	 * @author Kristian
+	 */
+	private class PlayerParameter extends NamedParameter {
+		private final PlayerParameters parameter;
+		private final PlayerState state;
+		
+		public PlayerParameter(PlayerParameters parameter, PlayerState state) {
+			super(parameter.toString());
+			this.parameter = parameter;
+			this.state = state;
+		}
+		
+		@Override
+		public Double call() throws Exception {
+			Player player = state.player;
+			
+			// Use a good ol' switch to execute the different functions
+			switch (parameter) {
+			case EXPERIENCE:
+			case TOTAL_EXPERIENCE:
+				return (double) ExperienceManager.getCurrentExp(player) / state.getRateFactor();
+			case LEVEL_EXPERIENCE:
+				return (double) (player.getExp() * ExperienceManager.getXpNeededToLevelUp(player.getLevel()) / state.getRateFactor());
+			case CURRENCY:
+				if (economy != null) 
+					return economy.getBalance(player);
+				else
+					return 0.0; // Default
+			default:
+				throw new IllegalArgumentException("Unknown player parameter attribute detected.");
+			}
+		}
+	}
 }
@@ -1,7 +1,9 @@
 package com.comphenix.xp.expressions;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Random;
+import java.util.Set;
 
 import com.comphenix.xp.SampleRange;
 import com.comphenix.xp.lookup.Multipliable;
@@ -52,4 +54,30 @@ public abstract class VariableFunction implements Multipliable<VariableFunction>
 	 * @throws Exception A runtime error occurred.
 	 */
 	public abstract double apply(Random rnd, Collection<NamedParameter> params) throws Exception;
+	
+	/**
+	 * Retrieves the name of every named parameter this function actually uses.
+	 * <p>
+	 * Any other parameter will be ignored by {@link #apply(Random, Collection)}.
+	 * @return Set of parameter names.
+	 */
+	public Set<String> getVariableNames() {
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * Retrieves the lowest value this function may return, for any random number generator and parameter.
+	 * @return The lowest value, or negative infinity if unknown.
+	 */
+	public double getMinimum() {
+		return Double.NEGATIVE_INFINITY;
+	}
+	
+	/**
+	 * Retrieves the highest value this function may return, for any random number generator and parameter.
+	 * @return The highest value, or positive infinity if unknown.
+	 */
+	public double getMaximum() {
+		return Double.POSITIVE_INFINITY;
+	}
 }
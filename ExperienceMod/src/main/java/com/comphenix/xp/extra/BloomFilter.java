@@ -0,0 +1,219 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+package com.comphenix.xp.extra;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter of primitive long keys.
+ * <p>
+ * Keys cannot be removed once they have been added. Note that this implementation is not thread safe.
+ *
+ * @author Kristian
+ */
+public class BloomFilter {
+	
+	private final long[] bits;
+	private final int bitCount;
+	private final int hashCount;
+	private final int capacity;
+	
+	// Statistics
+	private int setBits;
+	private int insertions;
+	
+	/**
+	 * Construct a Bloom filter sized for the given number of keys.
+	 * @param capacity - expected number of keys.
+	 * @param falsePositiveRate - desired false positive rate when the filter is at capacity.
+	 */
+	public BloomFilter(int capacity, double falsePositiveRate) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException("False positive rate must be between zero and one.");
+		
+		double ln2 = Math.log(2);
+		long optimal = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+		
+		if (optimal > Integer.MAX_VALUE - 64)
+			throw new IllegalArgumentException("Capacity is too large: " + capacity);
+		
+		this.capacity = capacity;
+		this.bitCount = Math.max(64, (int) optimal);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+		this.bits = new long[(bitCount + 63) / 64];
+	}
+	
+	private BloomFilter(int capacity, int bitCount, int hashCount) {
+		this.capacity = capacity;
+		this.bitCount = bitCount;
+		this.hashCount = hashCount;
+		this.bits = new long[(bitCount + 63) / 64];
+	}
+	
+	/**
+	 * Creates an independent copy of this filter.
+	 * @return The copy.
+	 */
+	public BloomFilter copy() {
+		BloomFilter copy = new BloomFilter(capacity, bitCount, hashCount);
+		
+		System.arraycopy(bits, 0, copy.bits, 0, bits.length);
+		copy.setBits = setBits;
+		copy.insertions = insertions;
+		return copy;
+	}
+	
+	/**
+	 * Adds the given key to the filter.
+	 * @param key - the key to add.
+	 */
+	public void add(long key) {
+		long hash = mix(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		
+		for (int i = 0; i < hashCount; i++) {
+			int index = getIndex(h1 + i * h2);
+			long mask = 1L << index;
+			
+			if ((bits[index >>> 6] & mask) == 0) {
+				bits[index >>> 6] |= mask;
+				setBits++;
+			}
+		}
+		insertions++;
+	}
+	
+	/**
+	 * Determines if the given key may have been added to the filter.
+	 * @param key - the key to test.
+	 * @return FALSE if the key has definitely not been added, TRUE otherwise.
+	 */
+	public boolean mightContain(long key) {
+		long hash = mix(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		
+		for (int i = 0; i < hashCount; i++) {
+			int index = getIndex(h1 + i * h2);
+			
+			if ((bits[index >>> 6] & (1L << index)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Retrieves the fraction of bits that have been set.
+	 * @return Fill ratio from zero to one.
+	 */
+	public double getFillRatio() {
+		return (double) setBits / bitCount;
+	}
+	
+	/**
+	 * Retrieves the expected false positive rate, given the current fill ratio.
+	 * @return Expected false positive rate.
+	 */
+	public double getExpectedFalsePositiveRate() {
+		return Math.pow(getFillRatio(), hashCount);
+	}
+	
+	/**
+	 * Retrieves the number of keys this filter was sized for.
+	 * @return Expected number of keys.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Retrieves the number of keys that have been added.
+	 * @return Number of keys.
+	 */
+	public int getInsertions() {
+		return insertions;
+	}
+	
+	/**
+	 * Determines if the number of keys has reached the capacity of the filter.
+	 * @return TRUE if it has, FALSE otherwise.
+	 */
+	public boolean isFull() {
+		return insertions >= capacity;
+	}
+	
+	/**
+	 * Writes the content of this filter to the given output.
+	 * @param output - the output to write to.
+	 * @throws IOException If the output could not be written to.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeInt(capacity);
+		output.writeInt(bitCount);
+		output.writeInt(hashCount);
+		output.writeInt(insertions);
+		
+		for (long word : bits) {
+			output.writeLong(word);
+		}
+	}
+	
+	/**
+	 * Reads a filter previously written by {@link #writeTo(DataOutput)}.
+	 * @param input - the input to read from.
+	 * @return The filter that was read.
+	 * @throws IOException If the input could not be read, or is corrupt.
+	 */
+	public static BloomFilter readFrom(DataInput input) throws IOException {
+		int capacity = input.readInt();
+		int bitCount = input.readInt();
+		int hashCount = input.readInt();
+		
+		if (capacity <= 0 || bitCount < 64 || bitCount > Integer.MAX_VALUE - 64 || hashCount <= 0)
+			throw new IOException("Corrupt Bloom filter header.");
+		
+		BloomFilter filter = new BloomFilter(capacity, bitCount, hashCount);
+		filter.insertions = input.readInt();
+		
+		for (int i = 0; i < filter.bits.length; i++) {
+			long word = input.readLong();
+			
+			filter.bits[i] = word;
+			filter.setBits += Long.bitCount(word);
+		}
+		return filter;
+	}
+	
+	private int getIndex(int hash) {
+		return (hash & Integer.MAX_VALUE) % bitCount;
+	}
+	
+	// Finalizer from MurmurHash3
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb53fe85a94d5L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
@@ -0,0 +1,101 @@
+package com.comphenix.xp.extra;
+
+import java.util.Random;
+
+/**
+ * Represents a fast, non-synchronized random number generator based on SplitMix64.
+ * <p>
+ * Unlike {@link Random}, this generator doesn't use any atomic operations, so it must never be
+ * shared between threads. Use {@link com.comphenix.xp.rewards.items.RandomSampling#getThreadRandom()}
+ * to retrieve a generator for the current thread.
+ *
+ * @author Kristian
+ */
+public class FastRandom extends Random {
+
+	/**
+	 * Generated by Eclipse.
+	 */
+	private static final long serialVersionUID = -4279283514235466395L;
+
+	// The odd constant used to advance the state
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// Current state
+	private long state;
+
+	/**
+	 * Constructs a generator with a seed that is unlikely to be used by any other generator.
+	 */
+	public FastRandom() {
+		this(mix(System.nanoTime() ^ System.identityHashCode(Thread.currentThread())));
+	}
+
+	/**
+	 * Constructs a generator with the given seed.
+	 * <p>
+	 * Generators with the same seed will produce the same sequence of numbers.
+	 * @param seed - the initial seed.
+	 */
+	public FastRandom(long seed) {
+		super(seed);
+		this.state = seed;
+	}
+
+	/**
+	 * Scramble the bits of the given value.
+	 * @param value - the value to scramble.
+	 * @return The scrambled value.
+	 */
+	public static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		// Also called by the constructor of Random
+		super.setSeed(seed);
+		this.state = seed;
+	}
+
+	@Override
+	public long nextLong() {
+		return mix(state += GOLDEN_GAMMA);
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) nextLong();
+	}
+
+	@Override
+	public int nextInt(int n) {
+		if (n <= 0)
+			throw new IllegalArgumentException("n must be positive");
+
+		// Multiply a 31-bit number by n, and keep the upper half
+		return (int) (((nextLong() >>> 33) * n) >>> 31);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+package com.comphenix.xp.extra;
+
+import java.util.Arrays;
+
+/**
+ * A simple hash map with primitive long keys, using open addressing and linear probing.
+ * <p>
+ * NULL values are not permitted. Note that this implementation is not thread safe.
+ * 
+ * @author Kristian
+ *
+ * @param <TValue> - type of the value to associate.
+ */
+public class LongHashMap<TValue> {
+
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	private long[] keys;
+	private Object[] values;
+	
+	private int size;
+	private int mask;
+	
+	public LongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructs a map that is able to hold the given number of elements without resizing.
+	 * @param expectedSize - the expected number of elements.
+	 */
+	public LongHashMap(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * Retrieves the value associated with the given key.
+	 * @param key - the key to find.
+	 * @return The associated value, or NULL if not found.
+	 */
+	@SuppressWarnings("unchecked")
+	public TValue get(long key) {
+		for (int i = indexFor(key); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return (TValue) values[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Determines if the given key has an associated value.
+	 * @param key - the key to find.
+	 * @return TRUE if it does, FALSE otherwise.
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * Associates a value with the given key.
+	 * @param key - the key.
+	 * @param value - the new non-null value.
+	 * @return The previously associated value, or NULL.
+	 */
+	@SuppressWarnings("unchecked")
+	public TValue put(long key, TValue value) {
+		if (value == null)
+			throw new IllegalArgumentException("Value cannot be NULL.");
+		
+		int i = indexFor(key);
+		
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				TValue old = (TValue) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		
+		keys[i] = key;
+		values[i] = value;
+		
+		// Keep the load factor at or below 50%
+		if (++size * 2 > values.length) {
+			resize(values.length * 2);
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes every key and value.
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(values, null);
+			size = 0;
+		}
+	}
+	
+	/**
+	 * Retrieves the number of keys in this map.
+	 * @return Number of keys.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		allocate(capacity);
+		
+		// Rehash every entry
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = indexFor(oldKeys[i]);
+				
+				while (values[j] != null)
+					j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+	
+	private int indexFor(long key) {
+		// Spread the bits (from MurmurHash3)
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+	
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = 2;
+		
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+		return capacity;
+	}
+}
@@ -0,0 +1,27 @@
+package com.comphenix.xp.history;
+
+import java.util.concurrent.Executor;
+
+import org.bukkit.Location;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Represents a history service that is able to answer queries without blocking the calling thread.
+ * 
+ * @author Kristian
+ */
+public interface AsyncHistoryService extends HistoryService {
+
+	/**
+	 * Asynchronously determines whether or not a block has been placed by a player.
+	 * <p>
+	 * This method is usually invoked on the main thread, so it must not perform any blocking I/O itself. 
+	 * The returned future may be completed on any thread.
+	 * @param blockLocation - location of the block in question.
+	 * @param blockID - the current type ID of the block, read on the main thread.
+	 * @param worker - executor that may be used to perform any blocking work.
+	 * @return Future yielding TRUE if the block was placed by a player, FALSE if it was placed naturally, NULL if unknown.
+	 */
+	public ListenableFuture<Boolean> hasPlayerHistoryAsync(Location blockLocation, int blockID, Executor worker);
+}
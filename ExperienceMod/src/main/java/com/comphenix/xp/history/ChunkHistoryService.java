@@ -0,0 +1,541 @@
+package com.comphenix.xp.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import com.comphenix.xp.Debugger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A persistent history service that records every block placed by a player.
+ * <p>
+ * Each chunk is stored as 16 bitsets of 4096 bits (one per 16x16x16 section), in region files of 
+ * 32x32 chunks. Chunks are read in the background when the world loads them, and written back 
+ * when they unload. Blocks in chunks that haven't been read yet are reported as unknown.
+ * <p>
+ * Blocks placed before this service was installed are not recorded, and blocks that are moved or 
+ * destroyed without being broken by a player keep their bit, so neither answer is certain.
+ * 
+ * @author Kristian
+ */
+public class ChunkHistoryService implements HistoryService, Listener {
+
+	public static final String NAME = "CHUNKS";
+	
+	// Number of sections in a chunk
+	private static final int SECTION_COUNT = PlacedBlockRegion.SECTION_COUNT;
+	
+	// Maximum time to wait for pending writes
+	private static final int SHUTDOWN_TIMEOUT = 10;
+	
+	private File folder;
+	private Debugger debugger;
+	
+	// Loaded worlds
+	private Map<String, WorldHistory> worlds = new HashMap<String, WorldHistory>();
+	
+	// Reads and writes region files
+	private ExecutorService flushWorker;
+	
+	/**
+	 * Constructs a new chunk history service.
+	 * @param folder - folder to store the region files.
+	 * @param debugger - debugger to report errors.
+	 */
+	public ChunkHistoryService(File folder, Debugger debugger) {
+		this.folder = folder;
+		this.debugger = debugger;
+		this.flushWorker = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ExperienceMod Chunk History").build());
+	}
+	
+	@Override
+	public String getServiceName() {
+		return NAME;
+	}
+	
+	@Override
+	public synchronized Boolean hasPlayerHistory(Location blockLocation) throws HistoryException {
+		
+		int y = blockLocation.getBlockY();
+		
+		// Outside the world
+		if (y < 0 || y >= SECTION_COUNT * 16)
+			return null;
+		
+		World world = blockLocation.getWorld();
+		WorldHistory history = getWorld(world);
+		
+		int chunkX = blockLocation.getBlockX() >> 4;
+		int chunkZ = blockLocation.getBlockZ() >> 4;
+		
+		PlacedChunk chunk = history.getLoadedChunk(chunkX, chunkZ);
+		
+		// Never read from the disk on the calling thread
+		if (chunk == null) {
+			if (world.isChunkLoaded(chunkX, chunkZ))
+				history.requestChunk(chunkX, chunkZ);
+			return null;
+		}
+		return chunk.get(blockLocation.getBlockX(), y, blockLocation.getBlockZ());
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockPlaceEvent(BlockPlaceEvent event) {
+		if (event.getPlayer() != null && event.getBlock() != null) {
+			setPlaced(event.getBlock(), true);
+		}
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockBreakEvent(BlockBreakEvent event) {
+		// Anything that replaces the air must be placed again
+		if (event.getBlock() != null) {
+			setPlaced(event.getBlock(), false);
+		}
+	}
+	
+	@EventHandler
+	public synchronized void onChunkLoadEvent(ChunkLoadEvent event) {
+		Chunk chunk = event.getChunk();
+		
+		getWorld(chunk.getWorld()).requestChunk(chunk.getX(), chunk.getZ());
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public synchronized void onChunkUnloadEvent(ChunkUnloadEvent event) {
+		Chunk chunk = event.getChunk();
+		WorldHistory history = worlds.get(chunk.getWorld().getName());
+		
+		if (history != null) {
+			history.unloadChunk(chunk.getX(), chunk.getZ(), true);
+		}
+	}
+	
+	@EventHandler
+	public synchronized void onWorldSaveEvent(WorldSaveEvent event) {
+		WorldHistory history = worlds.get(event.getWorld().getName());
+		
+		if (history != null) {
+			history.save();
+		}
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public synchronized void onWorldUnloadEvent(WorldUnloadEvent event) {
+		WorldHistory history = worlds.remove(event.getWorld().getName());
+		
+		if (history != null) {
+			history.unloadAll();
+		}
+	}
+	
+	/**
+	 * Write every loaded chunk to disk, and stop the background writer.
+	 */
+	public void close() {
+		
+		synchronized (this) {
+			for (WorldHistory history : worlds.values()) {
+				history.unloadAll();
+			}
+			worlds.clear();
+		}
+		
+		// Pending loads need the lock to finish
+		flushWorker.shutdown();
+		
+		try {
+			flushWorker.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private synchronized void setPlaced(Block block, boolean value) {
+		
+		int y = block.getY();
+		
+		if (y < 0 || y >= SECTION_COUNT * 16)
+			return;
+		
+		try {
+			getChunk(block.getWorld(), block.getX() >> 4, block.getZ() >> 4).set(block.getX(), y, block.getZ(), value);
+		} catch (IOException e) {
+			reportError(e);
+		}
+	}
+	
+	private PlacedChunk getChunk(World world, int chunkX, int chunkZ) throws IOException {
+		return getWorld(world).getChunk(chunkX, chunkZ);
+	}
+	
+	private WorldHistory getWorld(World world) {
+		WorldHistory history = worlds.get(world.getName());
+		
+		if (history == null) {
+			history = new WorldHistory(new File(folder, world.getName()));
+			worlds.put(world.getName(), history);
+		}
+		return history;
+	}
+	
+	private void reportError(Exception e) {
+		if (debugger != null)
+			debugger.printWarning(this, "Cannot access chunk history: %s", e.getMessage());
+	}
+	
+	// Write the region to disk in the background
+	private void scheduleFlush(final PlacedBlockRegion region) {
+		
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					region.force();
+				} catch (IOException e) {
+					reportError(e);
+				}
+			}
+		});
+	}
+	
+	// Write the region to disk and close it in the background
+	private void scheduleClose(final PlacedBlockRegion region) {
+		
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					region.force();
+					region.close();
+				} catch (IOException e) {
+					reportError(e);
+				}
+			}
+		});
+	}
+	
+	private void execute(Runnable task) {
+		try {
+			flushWorker.execute(task);
+		} catch (RuntimeException e) {
+			// We're shutting down
+			task.run();
+		}
+	}
+	
+	private static long getKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Every loaded chunk and region in a world.
+	 * <p>
+	 * Access is guarded by the service, except for the region file I/O of chunks loaded in the background.
+	 * 
+	 * @author Kristian
+	 */
+	private class WorldHistory {
+		
+		private final File folder;
+		
+		private final Map<Long, PlacedChunk> chunks = new HashMap<Long, PlacedChunk>();
+		private final Map<Long, PlacedBlockRegion> regions = new HashMap<Long, PlacedBlockRegion>();
+		
+		// Chunks that are being read in the background
+		private final Set<Long> loading = new HashSet<Long>();
+		
+		public WorldHistory(File folder) {
+			this.folder = folder;
+		}
+		
+		public PlacedChunk getLoadedChunk(int chunkX, int chunkZ) {
+			return chunks.get(getKey(chunkX, chunkZ));
+		}
+		
+		public PlacedChunk getChunk(int chunkX, int chunkZ) throws IOException {
+			
+			Long key = getKey(chunkX, chunkZ);
+			PlacedChunk chunk = chunks.get(key);
+			
+			// Load it from the region file
+			if (chunk == null) {
+				Long regionKey = getKey(chunkX >> 5, chunkZ >> 5);
+				PlacedBlockRegion region = regions.get(regionKey);
+				
+				// The background read is no longer needed
+				loading.remove(key);
+				
+				if (region == null) {
+					region = PlacedBlockRegion.open(getRegionFile(chunkX >> 5, chunkZ >> 5));
+					regions.put(regionKey, region);
+				}
+				
+				int index = PlacedBlockRegion.getChunkIndex(chunkX, chunkZ);
+				long[][] sections = null;
+				
+				region.addReference();
+				
+				try {
+					sections = region.readChunk(index);
+				} finally {
+					// Close the region again if no other chunk needs it
+					if (sections == null)
+						releaseRegion(regionKey, region);
+				}
+				
+				chunk = new PlacedChunk(region, index, sections);
+				chunks.put(key, chunk);
+			}
+			return chunk;
+		}
+		
+		/**
+		 * Read the given chunk in the background, unless it is already loaded.
+		 * @param chunkX - chunk x coordinate.
+		 * @param chunkZ - chunk z coordinate.
+		 */
+		public void requestChunk(final int chunkX, final int chunkZ) {
+			
+			final Long key = getKey(chunkX, chunkZ);
+			
+			if (!chunks.containsKey(key) && loading.add(key)) {
+				execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							loadChunk(key, chunkX, chunkZ);
+						} catch (IOException e) {
+							reportError(e);
+						}
+					}
+				});
+			}
+		}
+		
+		// Called by the background worker
+		private void loadChunk(Long key, int chunkX, int chunkZ) throws IOException {
+			
+			Long regionKey = getKey(chunkX >> 5, chunkZ >> 5);
+			PlacedBlockRegion region = null;
+			
+			synchronized (ChunkHistoryService.this) {
+				// Unloaded or loaded by the main thread in the mean time
+				if (!loading.contains(key)) 
+					return;
+				
+				region = regions.get(regionKey);
+				
+				if (region != null)
+					region.addReference();
+			}
+			
+			if (region == null) {
+				PlacedBlockRegion opened = null;
+				
+				try {
+					opened = PlacedBlockRegion.open(getRegionFile(chunkX >> 5, chunkZ >> 5));
+				} finally {
+					if (opened == null) {
+						synchronized (ChunkHistoryService.this) {
+							loading.remove(key);
+						}
+					}
+				}
+				
+				synchronized (ChunkHistoryService.this) {
+					region = regions.get(regionKey);
+					
+					// Someone else opened it first
+					if (region == null) {
+						region = opened;
+						regions.put(regionKey, region);
+					}
+					region.addReference();
+				}
+				
+				if (region != opened)
+					opened.close();
+			}
+			
+			int index = PlacedBlockRegion.getChunkIndex(chunkX, chunkZ);
+			long[][] sections = null;
+			
+			try {
+				sections = region.readChunk(index);
+			} finally {
+				synchronized (ChunkHistoryService.this) {
+					if (loading.remove(key) && sections != null) 
+						chunks.put(key, new PlacedChunk(region, index, sections));
+					else
+						releaseRegion(regionKey, region);
+				}
+			}
+		}
+		
+		public void unloadChunk(int chunkX, int chunkZ, boolean flush) {
+			
+			// Discard any pending background read
+			loading.remove(getKey(chunkX, chunkZ));
+			
+			PlacedChunk chunk = chunks.remove(getKey(chunkX, chunkZ));
+			
+			if (chunk != null) {
+				PlacedBlockRegion region = chunk.region;
+				boolean released = false;
+				
+				try {
+					if (chunk.dirty)
+						region.writeChunk(chunk.index, chunk.sections);
+				} catch (IOException e) {
+					reportError(e);
+				} finally {
+					released = releaseRegion(getKey(chunkX >> 5, chunkZ >> 5), region);
+				}
+				
+				// Closing the region writes it to disk anyway
+				if (!released && chunk.dirty && flush)
+					scheduleFlush(region);
+			}
+		}
+		
+		public void save() {
+			
+			for (PlacedChunk chunk : chunks.values()) {
+				if (chunk.dirty) {
+					try {
+						chunk.region.writeChunk(chunk.index, chunk.sections);
+						chunk.dirty = false;
+					} catch (IOException e) {
+						reportError(e);
+					}
+				}
+			}
+			
+			for (PlacedBlockRegion region : regions.values()) {
+				scheduleFlush(region);
+			}
+		}
+		
+		public void unloadAll() {
+			
+			loading.clear();
+			
+			// Every region is closed along with its last chunk
+			for (Long key : new ArrayList<Long>(chunks.keySet())) {
+				unloadChunk((int) (key >> 32), (int) (long) key, false);
+			}
+		}
+		
+		private File getRegionFile(int regionX, int regionZ) {
+			return new File(folder, String.format("r.%d.%d.dat", regionX, regionZ));
+		}
+		
+		// Close the region if it isn't in use
+		private boolean releaseRegion(Long regionKey, PlacedBlockRegion region) {
+			if (region.removeReference()) {
+				regions.remove(regionKey);
+				scheduleClose(region);
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * The placed blocks in a single chunk.
+	 * 
+	 * @author Kristian
+	 */
+	private static class PlacedChunk {
+		
+		private final PlacedBlockRegion region;
+		private final int index;
+		private final long[][] sections;
+		
+		// Whether or not the chunk must be saved
+		private boolean dirty;
+		
+		public PlacedChunk(PlacedBlockRegion region, int index, long[][] sections) {
+			this.region = region;
+			this.index = index;
+			this.sections = sections;
+		}
+		
+		public boolean get(int x, int y, int z) {
+			long[] section = sections[y >> 4];
+			
+			if (section != null) {
+				int bit = getBit(x, y, z);
+				return (section[bit >> 6] & (1L << bit)) != 0;
+			}
+			return false;
+		}
+		
+		public void set(int x, int y, int z, boolean value) {
+			long[] section = sections[y >> 4];
+			int bit = getBit(x, y, z);
+			
+			if (section == null) {
+				// Nothing to clear
+				if (!value)
+					return;
+				section = sections[y >> 4] = new long[PlacedBlockRegion.SECTION_WORDS];
+			}
+			
+			long before = section[bit >> 6];
+			
+			if (value)
+				section[bit >> 6] |= 1L << bit;
+			else
+				section[bit >> 6] &= ~(1L << bit);
+			
+			dirty |= before != section[bit >> 6];
+		}
+		
+		// Index of a block within its section
+		private static int getBit(int x, int y, int z) {
+			return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+		}
+	}
+	
+	@Override
+	public LookupSpeed getLookupSpeed() {
+		return LookupSpeed.FASTEST;
+	}
+
+	@Override
+	public boolean hasFalsePositives() {
+		// Blocks moved by pistons or destroyed by explosions, fire and so on are never cleared
+		return true;
+	}
+
+	@Override
+	public boolean hasFalseNegatives() {
+		// Blocks placed before the service was installed are missing
+		return true;
+	}
+}
@@ -1,33 +1,42 @@
 package com.comphenix.xp.history;
 
 import com.comphenix.xp.Debugger;
+import com.google.common.util.concurrent.SettableFuture;
 
 import uk.co.oliwali.HawkEye.callbacks.BaseCallback;
 import uk.co.oliwali.HawkEye.database.SearchQuery.SearchError;
+import uk.co.oliwali.HawkEye.entry.DataEntry;
 
 public class HawkeyeCallback extends BaseCallback {
 	
 	private Debugger debugger;
 	private HawkeyeService caller;
 	
-	public HawkeyeCallback(Debugger debugger, HawkeyeService caller) {
+	// The block we're looking for
+	private int blockID;
+	private SettableFuture<Boolean> result;
+	
+	public HawkeyeCallback(Debugger debugger, HawkeyeService caller, int blockID, SettableFuture<Boolean> result) {
 		this.debugger = debugger;
 		this.caller = caller;
+		this.blockID = blockID;
+		this.result = result;
 	}
 	
 	@Override
 	public void execute() {
 
+		DataEntry entry = null;
+		
 		// This should be the most recent change
-		if (results == null || results.size() == 0) {
-			caller.setSearchResult(null);
-		} else {
-			caller.setSearchResult(results.get(0));
+		if (results != null && results.size() > 0) {
+			entry = results.get(0);
 		}
 		
-		synchronized (caller.getLock()) {
-			caller.setSearching(false);
-			caller.getLock().notifyAll();
+		try {
+			result.set(caller.isPlacedEntry(entry, blockID));
+		} catch (HistoryException e) {
+			result.setException(e);
 		}
 	}
 	
@@ -36,5 +45,8 @@ public class HawkeyeCallback extends BaseCallback {
 		// Damn
 		if (debugger != null)
 			debugger.printWarning(caller, "Error: %s %s", arg0, arg1);
+		
+		// Don't leave anyone waiting
+		result.setException(HistoryException.fromFormat("Search failed: %s %s", arg0, arg1));
 	}
 }
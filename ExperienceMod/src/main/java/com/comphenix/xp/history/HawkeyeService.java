@@ -2,12 +2,21 @@ package com.comphenix.xp.history;
 
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.bukkit.Location;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 
 import com.comphenix.xp.Debugger;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import uk.co.oliwali.HawkEye.DataType;
 import uk.co.oliwali.HawkEye.SearchParser;
@@ -17,18 +26,23 @@ import uk.co.oliwali.HawkEye.entry.DataEntry;
 import uk.co.oliwali.HawkEye.util.BlockUtil;
 import uk.co.oliwali.HawkEye.util.HawkEyeAPI;
 
-public class HawkeyeService implements HistoryService {
+public class HawkeyeService implements AsyncHistoryService {
 
 	public static final String NAME = "HAWKEYE";
 	
-	private Debugger debugger;
-	private volatile boolean searching;
+	// Number of seconds to remember an answer
+	private static final int CACHE_TIMEOUT = 5;
+	
+	// Maximum number of remembered answers
+	private static final int CACHE_MAXIMUM_SIZE = 1000;
+	
+	// The private "to" field in BlockChangeEntry
+	private static volatile Field toField;
 	
-	// The result
-	private DataEntry searchResult;
+	private Debugger debugger;
 	
-	// Lock token
-	private final Object lock = new Object();
+	// Pending searches and recently placed blocks
+	private ConcurrentMap<String, ListenableFuture<Boolean>> searches;
 	
 	@Override
 	public String getServiceName() {
@@ -37,6 +51,15 @@ public class HawkeyeService implements HistoryService {
 	
 	public HawkeyeService(Debugger debugger) {
 		this.debugger = debugger;
+		this.searches = CacheBuilder.newBuilder()
+			.maximumSize(CACHE_MAXIMUM_SIZE)
+			.expireAfterWrite(CACHE_TIMEOUT, TimeUnit.SECONDS)
+			.build(new CacheLoader<String, ListenableFuture<Boolean>>() {
+				@Override
+				public ListenableFuture<Boolean> load(String key) throws Exception {
+					throw new RuntimeException("Impossible to load unknown value.");
+				}
+			}).asMap();
 	}
 	
 	/**
@@ -53,42 +76,80 @@ public class HawkeyeService implements HistoryService {
 
 		int blockID = blockLocation.getBlock().getTypeId();
 		
-		// Async lock
-		synchronized (lock) {
-			while (searching) {
-				try {
-					lock.wait();
-				} catch (InterruptedException e) {
-					throw new HistoryException("Waiting interrupted.", e);
-				}
-			}
+		// Wait for the search to complete
+		try {
+			return hasPlayerHistoryAsync(blockLocation, blockID, null).get();
 			
+		} catch (InterruptedException e) {
+			throw new HistoryException("Waiting interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof HistoryException)
+				throw (HistoryException) e.getCause();
+			else
+				throw new HistoryException("Search failed.", e.getCause());
+		}
+	}
+	
+	@Override
+	public ListenableFuture<Boolean> hasPlayerHistoryAsync(Location blockLocation, int blockID, Executor worker) {
+		
+		final String key = String.format("%s:%d:%d:%d:%d", blockLocation.getWorld().getName(), 
+				blockLocation.getBlockX(), blockLocation.getBlockY(), blockLocation.getBlockZ(), blockID);
+		
+		final SettableFuture<Boolean> result = SettableFuture.create();
+		ListenableFuture<Boolean> existing = searches.putIfAbsent(key, result);
+		
+		// Join a search in progress, or use a recent answer
+		if (existing != null)
+			return existing;
+		
+		// Only remember placed blocks - a natural block may be replaced by a player at any time
+		result.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (!isPlaced(result))
+					searches.remove(key, result);
+			}
+		}, MoreExecutors.sameThreadExecutor());
+		
+		try {
 			SearchParser searchParser = new SearchParser();
 			searchParser.loc = blockLocation.toVector();
 			searchParser.actions = Arrays.asList(DataType.BLOCK_PLACE, DataType.BLOCK_FORM);
 			searchParser.radius = 0;
 			searchParser.worlds = new String[] {blockLocation.getWorld().getName()};
-			searching = true;
 			
-			// Search synchronously 
-			// TODO: Make the HawkEye call async.
-			HawkEyeAPI.performSearch(new HawkeyeCallback(debugger, this), 
+			// HawkEye performs the search on its own thread
+			HawkEyeAPI.performSearch(new HawkeyeCallback(debugger, this, blockID, result), 
 					searchParser, SearchDir.DESC);
 			
-			// Wait for it to be done
-			while (searching) {
-				try {
-					lock.wait();
-				} catch (InterruptedException e) {
-					throw new HistoryException("Waiting interrupted.", e);
-				}
-			}
+		} catch (RuntimeException e) {
+			result.setException(e);
 		}
+		return result;
+	}
+	
+	private static boolean isPlaced(ListenableFuture<Boolean> future) {
+		try {
+			return Boolean.TRUE.equals(future.get());
+		} catch (Exception e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Determines if the given search result indicates that a block was placed by a player.
+	 * @param entry - the most recent search result, or NULL if no changes were found.
+	 * @param blockID - the current type ID of the block.
+	 * @return TRUE if the block was placed by a player, FALSE if not, or NULL if unknown.
+	 * @throws HistoryException If the search result cannot be read.
+	 */
+	Boolean isPlacedEntry(DataEntry entry, int blockID) throws HistoryException {
 		
 		// Make sure the ID corresponds
-		if (searchResult instanceof BlockChangeEntry) {
+		if (entry instanceof BlockChangeEntry) {
 		
-			BlockChangeEntry changeData = (BlockChangeEntry) searchResult;
+			BlockChangeEntry changeData = (BlockChangeEntry) entry;
 			int to = getToField(changeData);
 
 			debugger.printDebug(this, "To field: %s", to);
@@ -104,17 +165,10 @@ public class HawkeyeService implements HistoryService {
 	private int getToField(BlockChangeEntry changeData) throws HistoryException {
 		
 		try {
-			Field toField = changeData.getClass().getDeclaredField("to");
-			toField.setAccessible(true);
-			
-			String toValue = (String) toField.get(changeData);
+			String toValue = (String) getToField().get(changeData);
 			return BlockUtil.getIdFromString(toValue);
 			
 			// A ton of potential problems
-		} catch (SecurityException e1) {
-			throw new HistoryException("Security violation: Cannot access private member.");
-		} catch (NoSuchFieldException e1) {
-			throw new HistoryException("Hawkeye class structure has changed. No field 'to' exists.");
 		} catch (IllegalArgumentException e) {
 			throw new HistoryException("Illegal argument.");
 		} catch (IllegalAccessException e) {
@@ -122,24 +176,24 @@ public class HawkeyeService implements HistoryService {
 		}
 	}
 	
-	public boolean isSearching() {
-		return searching;
-	}
-
-	public void setSearching(boolean searching) {
-		this.searching = searching;
-	}
-
-	public DataEntry getSearchResult() {
-		return searchResult;
-	}
-
-	public void setSearchResult(DataEntry searchResult) {
-		this.searchResult = searchResult;
-	}
-
-	public Object getLock() {
-		return lock;
+	// Only look up the field once
+	private static Field getToField() throws HistoryException {
+		
+		Field field = toField;
+		
+		if (field == null) {
+			try {
+				field = BlockChangeEntry.class.getDeclaredField("to");
+				field.setAccessible(true);
+				toField = field;
+				
+			} catch (SecurityException e1) {
+				throw new HistoryException("Security violation: Cannot access private member.");
+			} catch (NoSuchFieldException e1) {
+				throw new HistoryException("Hawkeye class structure has changed. No field 'to' exists.");
+			}
+		}
+		return field;
 	}
 	
 	@Override
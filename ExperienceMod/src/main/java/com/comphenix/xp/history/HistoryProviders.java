@@ -1,13 +1,24 @@
 package com.comphenix.xp.history;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bukkit.Location;
 
 import com.comphenix.xp.Debugger;
 import com.comphenix.xp.extra.ServiceProvider;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Registry of history (block change logging) providers.
@@ -26,6 +37,17 @@ public class HistoryProviders extends ServiceProvider<HistoryService> {
 		}
 	});
 	
+	/**
+	 * Number of threads used to query slow history services.
+	 */
+	private static final int WORKER_THREAD_COUNT = 2;
+	
+	// Executes blocking history lookups
+	private transient ExecutorService workerPool;
+	
+	// Locations of every block placed by a player
+	private transient volatile PlacedBlockFilter placedFilter;
+	
 	public HistoryProviders() {
 		super(LogBlockService.NAME);
 	}
@@ -34,6 +56,36 @@ public class HistoryProviders extends ServiceProvider<HistoryService> {
 		return (MemoryService) getByName(MemoryService.NAME);
 	}
 	
+	/**
+	 * Retrieves the filter that is consulted before querying slow history services.
+	 * @return The filter of placed blocks, or NULL if slow services are always queried.
+	 */
+	public PlacedBlockFilter getPlacedFilter() {
+		return placedFilter;
+	}
+	
+	/**
+	 * Sets the filter that is consulted before querying slow history services.
+	 * <p>
+	 * Any block not in this filter is considered naturally generated, so it must contain every block that 
+	 * has been placed by a player.
+	 * @param placedFilter - the new filter of placed blocks, or NULL to always query slow services.
+	 */
+	public void setPlacedFilter(PlacedBlockFilter placedFilter) {
+		this.placedFilter = placedFilter;
+	}
+	
+	/**
+	 * Records that a block has been placed by a player.
+	 * @param block - the location of the placed block.
+	 */
+	public void onBlockPlaced(Location block) {
+		PlacedBlockFilter filter = placedFilter;
+		
+		if (filter != null)
+			filter.add(block);
+	}
+	
 	/**
 	 * Determines whether or not a block has been placed by a player, using the registered service providers
 	 * in order of lookup speed. 
@@ -70,11 +122,19 @@ public class HistoryProviders extends ServiceProvider<HistoryService> {
 	public Boolean hasPlayerHistory(Location block, boolean acceptGuesses, ErrorHandler<Exception> errorHandler) {
 	
 		Boolean current = null;
+		boolean filtered = false;
 		
 		for (HistoryService service : speedOrder) {
 			
 			Boolean answer = null;
 			
+			// Don't bother the slow services with blocks that have never been placed
+			if (!filtered && isEnabled(service) && isSlowService(service)) {
+				if (isNeverPlaced(block))
+					return false;
+				filtered = true;
+			}
+			
 			try {
 				if (isEnabled(service))
 					answer = service.hasPlayerHistory(block);
@@ -106,6 +166,69 @@ public class HistoryProviders extends ServiceProvider<HistoryService> {
 		}
 	}
 	
+	/**
+	 * Determines whether or not a block has been placed by a player, without blocking on slow services.
+	 * <p>
+	 * Services are queried in order of lookup speed, exactly as in {@link #hasPlayerHistory(Location, boolean, ErrorHandler)}. 
+	 * Fast services are queried on the calling thread, while slow services are either queried asynchronously 
+	 * (if they implement {@link AsyncHistoryService}) or on a separate worker thread.
+	 * <p>
+	 * This method must be called on the main thread. The returned future may be completed on any thread.
+	 * 
+	 * @param block - block to search for.
+	 * @param blockID - the current type ID of the block.
+	 * @param acceptGuesses - whether or not probabilistic answers are acceptable.
+	 * @param errorHandler - reports errors from individual history services.
+	 * @return Future yielding TRUE if the block was placed by a player, FALSE if it was generated naturally, or NULL if unknown.
+	 */
+	public ListenableFuture<Boolean> hasPlayerHistoryAsync(Location block, int blockID, 
+			boolean acceptGuesses, ErrorHandler<Exception> errorHandler) {
+		
+		AsyncLookup lookup = new AsyncLookup(new ArrayList<HistoryService>(speedOrder), 
+				block, blockID, acceptGuesses, errorHandler);
+		
+		lookup.next();
+		return lookup.result;
+	}
+	
+	/**
+	 * Determines if the given service should be queried outside the main thread.
+	 * @param service - the service to test.
+	 * @return TRUE if it should, FALSE otherwise.
+	 */
+	private boolean isSlowService(HistoryService service) {
+		return service.getLookupSpeed().compareTo(HistoryService.LookupSpeed.NORMAL) >= 0;
+	}
+	
+	/**
+	 * Determines if the placed block filter can prove that no block was ever placed at the given location.
+	 * @param block - the location to test.
+	 * @return TRUE if no block was placed by a player, FALSE if a block might have been placed.
+	 */
+	private boolean isNeverPlaced(Location block) {
+		PlacedBlockFilter filter = placedFilter;
+		
+		return filter != null && !filter.mightContain(block);
+	}
+	
+	private synchronized ExecutorService getWorkerPool() {
+		if (workerPool == null) {
+			workerPool = Executors.newFixedThreadPool(WORKER_THREAD_COUNT, 
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ExperienceMod History %d").build());
+		}
+		return workerPool;
+	}
+	
+	/**
+	 * Stops every worker thread used by asynchronous lookups.
+	 */
+	public synchronized void shutdown() {
+		if (workerPool != null) {
+			workerPool.shutdownNow();
+			workerPool = null;
+		}
+	}
+	
 	@Override
 	public HistoryService register(HistoryService service) {
 		HistoryService removed = super.register(service);
@@ -129,4 +252,142 @@ public class HistoryProviders extends ServiceProvider<HistoryService> {
 			speedOrder.remove(removed);
 		return removed;
 	}
+	
+	/**
+	 * Represents a history lookup that is processed one service at a time.
+	 * 
+	 * @author Kristian
+	 */
+	private class AsyncLookup implements FutureCallback<Boolean> {
+		
+		private final List<HistoryService> services;
+		private final Location block;
+		private final int blockID;
+		private final boolean acceptGuesses;
+		private final ErrorHandler<Exception> errorHandler;
+		
+		private final SettableFuture<Boolean> result = SettableFuture.create();
+		
+		// Current progress
+		private int index;
+		private HistoryService pending;
+		private Boolean current;
+		private boolean filtered;
+		
+		public AsyncLookup(List<HistoryService> services, Location block, int blockID, 
+						   boolean acceptGuesses, ErrorHandler<Exception> errorHandler) {
+			this.services = services;
+			this.block = block;
+			this.blockID = blockID;
+			this.acceptGuesses = acceptGuesses;
+			this.errorHandler = errorHandler;
+		}
+		
+		/**
+		 * Query every remaining service until we have an answer, or a service must be awaited.
+		 */
+		public void next() {
+			
+			while (index < services.size()) {
+				final HistoryService service = services.get(index++);
+				
+				if (!isEnabled(service))
+					continue;
+				
+				// Don't bother the slow services with blocks that have never been placed
+				if (!filtered && isSlowService(service)) {
+					if (isNeverPlaced(block)) {
+						result.set(false);
+						return;
+					}
+					filtered = true;
+				}
+				
+				// Hand the lookup over to a different thread
+				if (service instanceof AsyncHistoryService) {
+					pending = service;
+					
+					try {
+						Futures.addCallback(((AsyncHistoryService) service).
+								hasPlayerHistoryAsync(block, blockID, getWorkerPool()), this);
+					} catch (RuntimeException e) {
+						onFailure(e);
+					}
+					return;
+					
+				} else if (isSlowService(service)) {
+					ListenableFutureTask<Boolean> task = ListenableFutureTask.create(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws Exception {
+							return service.hasPlayerHistory(block);
+						}
+					});
+					
+					pending = service;
+					Futures.addCallback(task, this);
+					getWorkerPool().execute(task);
+					return;
+				}
+				
+				Boolean answer = null;
+				
+				try {
+					answer = service.hasPlayerHistory(block);
+				} catch (Exception e) {
+					reportError(e);
+				}
+				
+				if (handleAnswer(service, answer))
+					return;
+			}
+			
+			// If we're at this point, it must be because the last answer was probabilistic.
+			if (acceptGuesses && current != null) {
+				result.set(current);
+			} else {
+				result.set(null);
+			}
+		}
+		
+		@Override
+		public void onSuccess(Boolean answer) {
+			if (!handleAnswer(pending, answer))
+				next();
+		}
+
+		@Override
+		public void onFailure(Throwable error) {
+			if (error instanceof Exception)
+				reportError((Exception) error);
+			else
+				reportError(new HistoryException(error));
+			next();
+		}
+		
+		private void reportError(Exception error) {
+			if (errorHandler != null)
+				errorHandler.onError(error);
+		}
+		
+		// Returns TRUE if the result has been determined
+		private boolean handleAnswer(HistoryService service, Boolean answer) {
+			
+			// Skip if no answer was provided
+			if (answer != null) {
+				
+				// Record the last answer
+				current = answer;
+				
+				// Early answers!
+				if (current && !service.hasFalsePositives()) {
+					result.set(true);
+					return true;
+				} else if (!current && !service.hasFalseNegatives()) {
+					result.set(false);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
 }
@@ -1,8 +1,17 @@
 package com.comphenix.xp.history;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 
@@ -12,12 +21,36 @@ import de.diddiz.LogBlock.QueryParams;
 import de.diddiz.LogBlock.QueryParams.BlockChangeType;
 import de.diddiz.LogBlock.QueryParams.Order;
 
-public class LogBlockService implements HistoryService {
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class LogBlockService implements AsyncHistoryService {
 
 	public static final String NAME = "LOGBLOCK";
 	
+	/**
+	 * Maximum distance between the blocks in a single batched query.
+	 */
+	private static final int MAX_BATCH_SPAN = 16;
+	
+	/**
+	 * Maximum number of block changes to read in a single batched query.
+	 */
+	private static final int MAX_BATCH_CHANGES = 1000;
+	
 	private LogBlock logBlock;
 	
+	// Requests waiting for the database
+	private final Queue<PendingLookup> pending = new ConcurrentLinkedQueue<PendingLookup>();
+	private final AtomicBoolean draining = new AtomicBoolean();
+	
+	private final Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			drainPending();
+		}
+	};
+	
 	/**
 	 * Attempts to create a log block service. 
 	 * @param manager - local plugin manager.
@@ -52,9 +85,182 @@ public class LogBlockService implements HistoryService {
 		return NAME;
 	}
 
+	/**
+	 * Looks up the history of a single block on the calling thread.
+	 * <p>
+	 * This always sends one query per block. Only lookups through {@link #hasPlayerHistoryAsync(Location, int, Executor)}, 
+	 * which is used when deferred block rewards are enabled, are batched.
+	 */
 	@Override
 	public Boolean hasPlayerHistory(Location blockLocation) throws HistoryException {
-
+		return lookupHistory(blockLocation, blockLocation.getBlock().getTypeId());
+	}
+	
+	/**
+	 * Queues a lookup on the worker thread.
+	 * <p>
+	 * Lookups that arrive while a query is in progress, such as every block broken in the same tick, 
+	 * are grouped by world and area and answered by a single query.
+	 */
+	@Override
+	public ListenableFuture<Boolean> hasPlayerHistoryAsync(Location blockLocation, int blockID, Executor worker) {
+		
+		PendingLookup lookup = new PendingLookup(blockLocation, blockID);
+		pending.add(lookup);
+		
+		// Start a worker if no-one is processing the queue
+		if (draining.compareAndSet(false, true)) {
+			try {
+				worker.execute(drainTask);
+			} catch (RuntimeException e) {
+				draining.set(false);
+				throw e;
+			}
+		}
+		return lookup.result;
+	}
+	
+	private void drainPending() {
+		
+		do {
+			try {
+				for (List<PendingLookup> batch = pollPending(); !batch.isEmpty(); batch = pollPending()) {
+					processBatch(batch);
+				}
+			} finally {
+				// Even an error must not leave the queue without a worker
+				draining.set(false);
+			}
+			
+			// Handle lookups added after we checked the queue
+		} while (!pending.isEmpty() && draining.compareAndSet(false, true));
+	}
+				
+	private List<PendingLookup> pollPending() {
+		
+		List<PendingLookup> batch = new ArrayList<PendingLookup>();
+		
+		for (PendingLookup lookup = pending.poll(); lookup != null; lookup = pending.poll()) {
+			batch.add(lookup);
+		}
+		return batch;
+	}
+	
+	private void processBatch(List<PendingLookup> batch) {
+		
+		List<LookupGroup> groups = new ArrayList<LookupGroup>();
+		
+		// Group lookups that are close to each other
+		for (PendingLookup lookup : batch) {
+			LookupGroup target = null;
+			
+			for (LookupGroup group : groups) {
+				if (group.accepts(lookup)) {
+					target = group;
+					break;
+				}
+			}
+			
+			if (target == null) {
+				target = new LookupGroup(lookup.location.getWorld());
+				groups.add(target);
+			}
+			target.add(lookup);
+		}
+		
+		for (LookupGroup group : groups) {
+			try {
+				if (group.lookups.size() == 1) {
+					PendingLookup single = group.lookups.get(0);
+					single.result.set(lookupHistory(single.location, single.blockID));
+				} else {
+					lookupGroup(group);
+				}
+				
+			} catch (Exception e) {
+				for (PendingLookup lookup : group.lookups) {
+					lookup.result.setException(e);
+				}
+			}
+		}
+	}
+	
+	private void lookupGroup(LookupGroup group) throws HistoryException {
+		
+		QueryParams params = new QueryParams(logBlock);
+		
+		// The smallest cube that contains every block
+		int radius = Math.max(group.maxX - group.minX, 
+					 Math.max(group.maxY - group.minY, group.maxZ - group.minZ)) / 2 + 2;
+		
+		params.loc = new Location(group.world, 
+				(group.minX + group.maxX) / 2, (group.minY + group.maxY) / 2, (group.minZ + group.maxZ) / 2);
+		params.bct = BlockChangeType.CREATED;
+		params.limit = MAX_BATCH_CHANGES;
+		params.radius = radius;
+		params.world = group.world;
+		params.needType = true;
+		params.needCoords = true;
+		params.order = Order.DESC;
+		
+		Map<Long, List<PendingLookup>> remaining = new HashMap<Long, List<PendingLookup>>();
+		
+		for (PendingLookup lookup : group.lookups) {
+			Long key = getKey(lookup.location);
+			List<PendingLookup> list = remaining.get(key);
+			
+			// The same block may be requested more than once
+			if (list == null) {
+				list = new ArrayList<PendingLookup>(1);
+				remaining.put(key, list);
+			}
+			list.add(lookup);
+		}
+		
+		try {
+			int changes = 0;
+			
+			// The most recent change for each block is returned first
+			for (BlockChange bc : logBlock.getBlockChanges(params)) {
+				List<PendingLookup> list = remaining.remove(getKey(bc.loc));
+				changes++;
+				
+				if (list != null) {
+					// Make sure the ID corresponds
+					for (PendingLookup lookup : list) {
+						lookup.result.set(lookup.blockID == bc.type);
+					}
+					
+					if (remaining.isEmpty())
+						break;
+				}
+			}
+			
+			for (List<PendingLookup> list : remaining.values()) {
+				for (PendingLookup lookup : list) {
+					// The limit may have cut off older changes to these blocks
+					if (changes >= params.limit)
+						lookup.result.set(lookupHistory(lookup.location, lookup.blockID));
+					else
+						// No changes recorded, so we'll assume these blocks are natural
+						lookup.result.set(false);
+				}
+			}
+			
+		} catch (SQLException e) {
+			throw new HistoryException("Could not load player history.", e);
+		}
+	}
+	
+	// Packs block coordinates into a single key
+	private static long getKey(Location location) {
+		return ((long) location.getBlockX() & 0x3FFFFFF) << 38 | 
+			   ((long) location.getBlockY() & 0xFFF) << 26 | 
+			   ((long) location.getBlockZ() & 0x3FFFFFF);
+	}
+	
+	private Boolean lookupHistory(Location blockLocation, int blockID) throws HistoryException {
+		
 		QueryParams params = new QueryParams(logBlock);
 		
 		// Now, see if any players have modified this block 
@@ -70,11 +276,9 @@ public class LogBlockService implements HistoryService {
 		try {
 			// This should be the most recent change
 			for (BlockChange bc : logBlock.getBlockChanges(params)) {
-
-				int current = blockLocation.getBlock().getTypeId();
 				
 				// Make sure the ID corresponds
-				return (current == bc.type);
+				return (blockID == bc.type);
 			}
 			
 			// No changes recorded, so we'll assume this block is natural
@@ -102,4 +306,59 @@ public class LogBlockService implements HistoryService {
 		// we won't consider it a false negative.
 		return false;
 	}
+	
+	/**
+	 * Represents a lookup that is waiting for the database.
+	 * 
+	 * @author Kristian
+	 */
+	private static class PendingLookup {
+		private final Location location;
+		private final int blockID;
+		private final SettableFuture<Boolean> result = SettableFuture.create();
+		
+		public PendingLookup(Location location, int blockID) {
+			this.location = location;
+			this.blockID = blockID;
+		}
+	}
+	
+	/**
+	 * Represents lookups in the same world and area that can be answered by a single query.
+	 * 
+	 * @author Kristian
+	 */
+	private static class LookupGroup {
+		private final World world;
+		private final List<PendingLookup> lookups = new ArrayList<PendingLookup>();
+		
+		// Bounding box
+		private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+		private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+		
+		public LookupGroup(World world) {
+			this.world = world;
+		}
+		
+		public boolean accepts(PendingLookup lookup) {
+			Location loc = lookup.location;
+			
+			return world.equals(loc.getWorld()) && 
+				   Math.max(maxX, loc.getBlockX()) - Math.min(minX, loc.getBlockX()) <= MAX_BATCH_SPAN &&
+				   Math.max(maxY, loc.getBlockY()) - Math.min(minY, loc.getBlockY()) <= MAX_BATCH_SPAN &&
+				   Math.max(maxZ, loc.getBlockZ()) - Math.min(minZ, loc.getBlockZ()) <= MAX_BATCH_SPAN;
+		}
+		
+		public void add(PendingLookup lookup) {
+			Location loc = lookup.location;
+			
+			minX = Math.min(minX, loc.getBlockX());
+			minY = Math.min(minY, loc.getBlockY());
+			minZ = Math.min(minZ, loc.getBlockZ());
+			maxX = Math.max(maxX, loc.getBlockX());
+			maxY = Math.max(maxY, loc.getBlockY());
+			maxZ = Math.max(maxZ, loc.getBlockZ());
+			lookups.add(lookup);
+		}
+	}
 }
@@ -0,0 +1,475 @@
+package com.comphenix.xp.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+
+import com.comphenix.xp.extra.BloomFilter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A scalable Bloom filter of every block location placed by a player.
+ * <p>
+ * A location that is not in the filter has definitely not been placed since the filter was created,
+ * so slow history services don't need to be consulted. When a filter stage reaches its capacity,
+ * a larger stage with a tighter false positive rate is added.
+ * <p>
+ * A filter opened from a file appends every placement to a journal, so no placement is lost if
+ * the server is killed before the filter is closed. Whenever the journal grows too large, it is set
+ * aside and a snapshot of the filter is written on a background thread. The old journal is only
+ * deleted once the snapshot has been saved, so a complete filter can always be recovered from disk.
+ *
+ * @author Kristian
+ */
+public class PlacedBlockFilter {
+	
+	// Identifies the file format
+	private static final int FILE_MAGIC = 0x58504246;
+	private static final int FILE_VERSION = 2;
+	
+	/**
+	 * The default number of locations in the first filter stage.
+	 */
+	public static final int DEFAULT_CAPACITY = 65536;
+	
+	/**
+	 * The default false positive rate of the first filter stage.
+	 */
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+	
+	// Scaling of each subsequent stage
+	private static final int GROWTH_FACTOR = 2;
+	private static final double TIGHTENING_RATIO = 0.8;
+	
+	// Number of journal entries before they are compacted into the filter file
+	private static final int MAX_JOURNAL_ENTRIES = 65536;
+	
+	// Seconds to wait for a pending compaction on close
+	private static final int SHUTDOWN_TIMEOUT = 30;
+	
+	private final List<BloomFilter> stages = new ArrayList<BloomFilter>();
+	private final double falsePositiveRate;
+	
+	// The filter file and journal, or NULL if this filter is only stored in memory
+	private File file;
+	private FileOutputStream journal;
+	private int journalEntries;
+	private final byte[] journalBuffer = new byte[8];
+	
+	// Writes snapshots of the filter in the background
+	private ExecutorService compactionWorker;
+	private boolean compacting;
+	
+	// Prevents two snapshots from being written at the same time
+	private final Object fileLock = new Object();
+	
+	// Set if a placement could not be written to the journal
+	private IOException journalError;
+	
+	// Statistics
+	private long lookups;
+	private long hits;
+	
+	/**
+	 * Constructs an empty filter with the default capacity and false positive rate.
+	 */
+	public PlacedBlockFilter() {
+		this(DEFAULT_CAPACITY, DEFAULT_FALSE_POSITIVE_RATE);
+	}
+	
+	/**
+	 * Constructs an empty filter.
+	 * @param capacity - number of locations in the first filter stage.
+	 * @param falsePositiveRate - false positive rate of the first filter stage.
+	 */
+	public PlacedBlockFilter(int capacity, double falsePositiveRate) {
+		this.falsePositiveRate = falsePositiveRate;
+		this.stages.add(new BloomFilter(capacity, falsePositiveRate));
+	}
+	
+	private PlacedBlockFilter(List<BloomFilter> stages, double falsePositiveRate) {
+		this.falsePositiveRate = falsePositiveRate;
+		this.stages.addAll(stages);
+	}
+	
+	/**
+	 * Records that a player has placed a block at the given location.
+	 * <p>
+	 * If the placement cannot be written to the journal, the filter will no longer rule out any location.
+	 * @param location - location of the placed block.
+	 */
+	public synchronized void add(Location location) {
+		long key = getKey(location);
+		
+		addKey(key);
+		
+		if (journal != null) {
+			try {
+				writeJournal(key);
+				
+				if (journalEntries >= MAX_JOURNAL_ENTRIES && !compacting)
+					scheduleCompaction();
+				
+			} catch (IOException e) {
+				// Don't trust a filter that will be incomplete on the next start
+				journalError = e;
+				closeJournal();
+			}
+		}
+	}
+	
+	private void addKey(long key) {
+		BloomFilter current = stages.get(stages.size() - 1);
+		
+		// Add a new stage
+		if (current.isFull()) {
+			double rate = falsePositiveRate * Math.pow(TIGHTENING_RATIO, stages.size());
+			
+			current = new BloomFilter(current.getCapacity() * GROWTH_FACTOR, rate);
+			stages.add(current);
+		}
+		current.add(key);
+	}
+	
+	/**
+	 * Determines if a block may have been placed by a player at the given location.
+	 * @param location - location to test.
+	 * @return FALSE if no block has been placed at this location, TRUE if a block may have been placed.
+	 */
+	public synchronized boolean mightContain(Location location) {
+		long key = getKey(location);
+		
+		lookups++;
+		
+		// We may have missed a placement
+		if (journalError != null) {
+			hits++;
+			return true;
+		}
+		
+		for (BloomFilter stage : stages) {
+			if (stage.mightContain(key)) {
+				hits++;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Retrieves the fraction of set bits in the most recent filter stage.
+	 * @return Fill ratio from zero to one.
+	 */
+	public synchronized double getFillRatio() {
+		return stages.get(stages.size() - 1).getFillRatio();
+	}
+	
+	/**
+	 * Retrieves the fraction of lookups that may have been placed by a player, and so had to be
+	 * passed on to the slow history services.
+	 * @return Hit rate from zero to one, or zero if no lookups have been performed.
+	 */
+	public synchronized double getHitRate() {
+		return lookups > 0 ? (double) hits / lookups : 0;
+	}
+	
+	/**
+	 * Retrieves the number of stages in this filter.
+	 * @return Number of stages.
+	 */
+	public synchronized int getStageCount() {
+		return stages.size();
+	}
+	
+	/**
+	 * Retrieves the error that prevented a placement from being written to the journal.
+	 * @return The journal error, or NULL if every placement has been recorded.
+	 */
+	public synchronized IOException getJournalError() {
+		return journalError;
+	}
+	
+	/**
+	 * Opens the filter stored in the given file, along with every placement recorded in its journal.
+	 * <p>
+	 * An empty filter is created if the file doesn't exist. If the server was killed while the filter
+	 * file was being replaced, the complete temporary file is used instead. Subsequent placements are
+	 * written to the journal until the filter is closed.
+	 * @param file - the filter file.
+	 * @return The opened filter.
+	 * @throws IOException If the filter or journal could not be read, or is corrupt.
+	 */
+	public static PlacedBlockFilter open(File file) throws IOException {
+		File temporary = getTemporaryFile(file);
+		PlacedBlockFilter filter;
+		
+		// The temporary file is only complete if the filter file was deleted
+		if (file.exists())
+			filter = load(file);
+		else if (temporary.exists())
+			filter = load(temporary);
+		else
+			filter = new PlacedBlockFilter();
+		
+		// Recover placements made after the filter was last saved
+		filter.replayJournal(getOldJournalFile(file));
+		filter.replayJournal(getJournalFile(file));
+		
+		// Compact the journals
+		synchronized (filter) {
+			filter.file = file;
+			filter.compact();
+		}
+		return filter;
+	}
+	
+	private void replayJournal(File journalFile) throws IOException {
+		if (!journalFile.exists())
+			return;
+		
+		DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(journalFile)));
+		
+		try {
+			while (true) {
+				addKey(input.readLong());
+			}
+		} catch (EOFException e) {
+			// Ignore a partially written entry
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Saves the filter to its file, and stops writing to the journal.
+	 * <p>
+	 * This waits for any pending compaction to complete.
+	 * @throws IOException If the filter could not be written.
+	 */
+	public void close() throws IOException {
+		ExecutorService worker;
+		
+		synchronized (this) {
+			worker = compactionWorker;
+			compactionWorker = null;
+		}
+		
+		// The worker needs to lock the filter when it's done
+		if (worker != null) {
+			worker.shutdown();
+			
+			try {
+				worker.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		synchronized (this) {
+			if (file != null) {
+				compact();
+				closeJournal();
+				file = null;
+			}
+		}
+	}
+	
+	// Synchronously saves the filter and starts a new journal
+	private void compact() throws IOException {
+		writeFile(file, copyStages(), falsePositiveRate);
+		
+		// Every journal entry is now in the filter
+		closeJournal();
+		getOldJournalFile(file).delete();
+		journal = new FileOutputStream(getJournalFile(file), false);
+		journalEntries = 0;
+	}
+	
+	// Sets the current journal aside, and saves a snapshot of the filter in the background
+	private void scheduleCompaction() throws IOException {
+		final File target = file;
+		final File oldJournal = getOldJournalFile(file);
+		final List<BloomFilter> snapshot = copyStages();
+		
+		// If the last compaction failed, keep both journals until this one succeeds
+		if (!oldJournal.exists()) {
+			closeJournal();
+			
+			if (!getJournalFile(file).renameTo(oldJournal))
+				throw new IOException("Cannot rename journal to " + oldJournal);
+			journal = new FileOutputStream(getJournalFile(file), false);
+		}
+		
+		if (compactionWorker == null) {
+			compactionWorker = Executors.newSingleThreadExecutor(
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ExperienceMod Block Filter").build());
+		}
+		
+		compacting = true;
+		journalEntries = 0;
+		
+		compactionWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeFile(target, snapshot, falsePositiveRate);
+					
+					// The snapshot contains every entry in the old journal
+					synchronized (PlacedBlockFilter.this) {
+						oldJournal.delete();
+					}
+				} catch (IOException e) {
+					// The old journal is kept, so nothing is lost
+				} finally {
+					synchronized (PlacedBlockFilter.this) {
+						compacting = false;
+					}
+				}
+			}
+		});
+	}
+	
+	private List<BloomFilter> copyStages() {
+		List<BloomFilter> copy = new ArrayList<BloomFilter>(stages.size());
+		
+		for (BloomFilter stage : stages) {
+			copy.add(stage.copy());
+		}
+		return copy;
+	}
+	
+	private void writeJournal(long key) throws IOException {
+		for (int i = 0; i < 8; i++) {
+			journalBuffer[i] = (byte) (key >>> (56 - i * 8));
+		}
+		
+		// One write per placement, so that it survives if the server is killed
+		journal.write(journalBuffer);
+		journalEntries++;
+	}
+	
+	private void closeJournal() {
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				// Nothing more we can do
+			}
+			journal = null;
+		}
+	}
+	
+	/**
+	 * Saves the current filter to the given file.
+	 * @param file - the file to save to.
+	 * @throws IOException If the file could not be written.
+	 */
+	public synchronized void save(File file) throws IOException {
+		writeFile(file, stages, falsePositiveRate);
+	}
+	
+	private void writeFile(File file, List<BloomFilter> stages, double falsePositiveRate) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temporary = getTemporaryFile(file);
+		
+		if (directory != null && !directory.exists())
+			directory.mkdirs();
+		
+		synchronized (fileLock) {
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporary)));
+			
+			try {
+				output.writeInt(FILE_MAGIC);
+				output.writeInt(FILE_VERSION);
+				output.writeDouble(falsePositiveRate);
+				output.writeInt(stages.size());
+				
+				for (BloomFilter stage : stages) {
+					stage.writeTo(output);
+				}
+			} finally {
+				output.close();
+			}
+			
+			// The temporary file is complete, so open() can recover from it until it has been renamed
+			if (file.exists() && !file.delete())
+				throw new IOException("Cannot replace " + file);
+			if (!temporary.renameTo(file))
+				throw new IOException("Cannot rename " + temporary + " to " + file);
+		}
+	}
+	
+	/**
+	 * Loads a filter previously saved by {@link #save(File)}, without its journal.
+	 * @param file - the file to load.
+	 * @return The loaded filter.
+	 * @throws IOException If the file could not be read, or is corrupt.
+	 */
+	public static PlacedBlockFilter load(File file) throws IOException {
+		DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		
+		try {
+			if (input.readInt() != FILE_MAGIC)
+				throw new IOException("Not a block filter: " + file);
+			
+			int version = input.readInt();
+			
+			if (version != FILE_VERSION)
+				throw new IOException("Unsupported block filter version: " + version);
+			
+			double falsePositiveRate = input.readDouble();
+			int count = input.readInt();
+			
+			if (count <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1))
+				throw new IOException("Corrupt block filter: " + file);
+			
+			List<BloomFilter> stages = new ArrayList<BloomFilter>(count);
+			
+			for (int i = 0; i < count; i++) {
+				stages.add(BloomFilter.readFrom(input));
+			}
+			return new PlacedBlockFilter(stages, falsePositiveRate);
+			
+		} finally {
+			input.close();
+		}
+	}
+	
+	private static File getJournalFile(File file) {
+		return new File(file.getPath() + ".journal");
+	}
+	
+	private static File getOldJournalFile(File file) {
+		return new File(file.getPath() + ".journal.old");
+	}
+	
+	private static File getTemporaryFile(File file) {
+		return new File(file.getPath() + ".tmp");
+	}
+	
+	// Pack the world and coordinates into a single key
+	private static long getKey(Location location) {
+		long x = location.getBlockX() & 0x3FFFFFF;
+		long z = location.getBlockZ() & 0x3FFFFFF;
+		long y = location.getBlockY() & 0xFFF;
+		long world = location.getWorld() != null ? location.getWorld().getName().hashCode() : 0;
+		
+		return ((x << 38) | (z << 12) | y) ^ (world * 0x9E3779B97F4A7C15L);
+	}
+}
@@ -0,0 +1,258 @@
+package com.comphenix.xp.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Represents a file storing the placed blocks of a 32x32 region of chunks.
+ * <p>
+ * The file begins with a header containing the slot of every section in the region (zero if the
+ * section has never contained a placed block), followed by the slots themselves. Each slot stores
+ * a section as 4096 bits. Slots are appended as they are needed, so the file only grows with the
+ * number of sections that actually contain placed blocks.
+ *
+ * @author Kristian
+ */
+class PlacedBlockRegion {
+
+	/**
+	 * Number of chunks along each axis of a region.
+	 */
+	public static final int REGION_SIZE = 32;
+
+	/**
+	 * Number of 16x16x16 sections in each chunk.
+	 */
+	public static final int SECTION_COUNT = 16;
+
+	/**
+	 * Number of longs in each section.
+	 */
+	public static final int SECTION_WORDS = 4096 / 64;
+
+	private static final int CHUNK_COUNT = REGION_SIZE * REGION_SIZE;
+	private static final int HEADER_BYTES = CHUNK_COUNT * SECTION_COUNT * 4;
+	private static final int SECTION_BYTES = SECTION_WORDS * 8;
+
+	private final File file;
+	private final RandomAccessFile access;
+	private final FileChannel channel;
+
+	// The slot of every section, where zero is unallocated
+	private final int[] slots = new int[CHUNK_COUNT * SECTION_COUNT];
+	private int slotCount;
+
+	// Reused when reading and writing sections
+	private final ByteBuffer sectionBuffer = ByteBuffer.allocate(SECTION_BYTES);
+	private final ByteBuffer slotBuffer = ByteBuffer.allocate(4);
+
+	// Number of chunks currently loaded from this region
+	private int loadedChunks;
+
+	private PlacedBlockRegion(File file, RandomAccessFile access) {
+		this.file = file;
+		this.access = access;
+		this.channel = access.getChannel();
+	}
+
+	/**
+	 * Opens or creates the given region file.
+	 * @param file - the region file.
+	 * @return The opened region.
+	 * @throws IOException If the file cannot be created or read.
+	 */
+	public static PlacedBlockRegion open(File file) throws IOException {
+
+		File directory = file.getParentFile();
+
+		if (directory != null && !directory.exists() && !directory.mkdirs())
+			throw new IOException("Cannot create directory " + directory);
+
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+
+		try {
+			PlacedBlockRegion region = new PlacedBlockRegion(file, access);
+
+			region.readHeader();
+			return region;
+
+		} catch (IOException e) {
+			access.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Retrieves the index of a chunk within its region.
+	 * @param chunkX - chunk x coordinate.
+	 * @param chunkZ - chunk z coordinate.
+	 * @return The chunk index.
+	 */
+	public static int getChunkIndex(int chunkX, int chunkZ) {
+		return (chunkX & (REGION_SIZE - 1)) + (chunkZ & (REGION_SIZE - 1)) * REGION_SIZE;
+	}
+
+	private void readHeader() throws IOException {
+
+		// A new file has no header yet
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		readFully(header, 0);
+
+		long available = Math.max(0, channel.size() - HEADER_BYTES);
+
+		for (int i = 0; i < slots.length; i++) {
+			int slot = header.getInt(i * 4);
+
+			if (slot < 0 || (long) (slot - 1) * SECTION_BYTES >= available)
+				throw new IOException("Corrupt slot " + slot + " in " + file);
+
+			slots[i] = slot;
+			slotCount = Math.max(slotCount, slot);
+		}
+	}
+
+	/**
+	 * Reads every non-empty section of the given chunk.
+	 * @param index - index of the chunk in this region.
+	 * @return The sections of the chunk, where empty sections are NULL.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public synchronized long[][] readChunk(int index) throws IOException {
+
+		long[][] sections = new long[SECTION_COUNT][];
+
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			int slot = slots[index * SECTION_COUNT + i];
+
+			if (slot != 0) {
+				sectionBuffer.clear();
+				readFully(sectionBuffer, getSlotOffset(slot));
+
+				sections[i] = new long[SECTION_WORDS];
+
+				for (int j = 0; j < SECTION_WORDS; j++) {
+					sections[i][j] = sectionBuffer.getLong(j * 8);
+				}
+			}
+		}
+		return sections;
+	}
+
+	/**
+	 * Writes the given sections to the file, allocating new slots if necessary.
+	 * @param index - index of the chunk in this region.
+	 * @param sections - the sections of the chunk, where empty sections may be NULL.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public synchronized void writeChunk(int index, long[][] sections) throws IOException {
+
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			long[] section = sections[i];
+			int entry = index * SECTION_COUNT + i;
+			int slot = slots[entry];
+
+			boolean empty = section == null || isEmpty(section);
+
+			// Don't allocate space for empty sections
+			if (slot == 0 && empty)
+				continue;
+
+			sectionBuffer.clear();
+
+			for (int j = 0; j < SECTION_WORDS; j++) {
+				sectionBuffer.putLong(j * 8, empty ? 0 : section[j]);
+			}
+
+			if (slot == 0) {
+				slot = slotCount + 1;
+				writeFully(sectionBuffer, getSlotOffset(slot));
+
+				// Only reference the slot once it has been written
+				slotBuffer.clear();
+				slotBuffer.putInt(0, slot);
+				writeFully(slotBuffer, entry * 4);
+
+				slots[entry] = slot;
+				slotCount = slot;
+			} else {
+				writeFully(sectionBuffer, getSlotOffset(slot));
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the number of section slots allocated in this file.
+	 * @return Number of slots.
+	 */
+	public synchronized int getSlotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * Writes every change to the storage device.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Closes the underlying file.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void close() throws IOException {
+		access.close();
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+
+			// Anything beyond the end of the file is empty
+			if (read < 0) {
+				while (buffer.hasRemaining())
+					buffer.put((byte) 0);
+			}
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private static long getSlotOffset(int slot) {
+		return HEADER_BYTES + (long) (slot - 1) * SECTION_BYTES;
+	}
+
+	private static boolean isEmpty(long[] section) {
+		for (long word : section) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Increment the number of chunks loaded from this region.
+	 */
+	public void addReference() {
+		loadedChunks++;
+	}
+
+	/**
+	 * Decrement the number of chunks loaded from this region.
+	 * @return TRUE if there are no more chunks loaded from this region, FALSE otherwise.
+	 */
+	public boolean removeReference() {
+		return --loadedChunks <= 0;
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
@@ -20,8 +20,7 @@ package com.comphenix.xp.listeners;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Location;
@@ -33,32 +32,52 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
 
 import com.comphenix.xp.Action;
+import com.comphenix.xp.ActionTypes;
 import com.comphenix.xp.Configuration;
 import com.comphenix.xp.Debugger;
 import com.comphenix.xp.Presets;
 import com.comphenix.xp.SampleRange;
+import com.comphenix.xp.Server;
 import com.comphenix.xp.expressions.NamedParameter;
 import com.comphenix.xp.extra.PermissionSystem;
+import com.comphenix.xp.history.ErrorHandler;
 import com.comphenix.xp.history.HistoryProviders;
 import com.comphenix.xp.lookup.ItemQuery;
 import com.comphenix.xp.lookup.ItemTree;
+import com.comphenix.xp.lookup.ItemTree.PlayerCreatedResult;
 import com.comphenix.xp.messages.ChannelProvider;
-import com.comphenix.xp.parser.Utility;
 import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
 import com.comphenix.xp.rewards.RewardProvider;
+import com.comphenix.xp.rewards.items.RandomSampling;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class ExperienceBlockListener extends AbstractExperienceListener {
 	
+	private Plugin plugin;
 	private Debugger debugger;
 	private HistoryProviders historyProviders;
 
-	// Random source
-	private Random random = new Random();
+	// Deferred block history
+	private int historyTimeout;
+	private boolean assumePlacedOnTimeout;
+	
+	// The last deferred block reward, until its event has reached the monitor priority
+	private DeferredBreak unconfirmedBreak;
+	
 	private ErrorReporting report = ErrorReporting.DEFAULT;
 	
-	public ExperienceBlockListener(Debugger debugger, Presets presets, HistoryProviders historyProviders) {
+	// Reused by every reward on the main thread. The message queue copies them if it must.
+	private final RewardBuffer generatedBuffer = new RewardBuffer();
+	private final RewardBuffer resultBuffer = new RewardBuffer();
+	
+	public ExperienceBlockListener(Plugin plugin, Debugger debugger, Presets presets, HistoryProviders historyProviders) {
+		this.plugin = plugin;
 		this.debugger = debugger;
 		this.historyProviders = historyProviders;
 		setPresets(presets);
@@ -73,7 +92,7 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 			Player player = event.getPlayer();
 			
 			// See if this deserves more experience
-			if (block != null && player != null) { 
+			if (block != null && player != null && mayRewardBreak(event, block)) { 
 				handleBlockBreakEvent(event, block, player);
 			}
 			
@@ -82,6 +101,26 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 		}
 	}
 		
+	/**
+	 * Determines if breaking the given block could possibly be rewarded or modified by any configuration.
+	 * @param event - the block break event.
+	 * @param block - the broken block.
+	 * @return TRUE if it could, FALSE if the event can safely be ignored.
+	 */
+	private boolean mayRewardBreak(BlockBreakEvent event, Block block) {
+		int id = block.getTypeId();
+		
+		if (presets == null)
+			return true;
+		
+		// Vanilla experience may be multiplied
+		if (event.getExpToDrop() > 0 && presets.hasMultipliers())
+			return true;
+		
+		return presets.getActionPresence(ActionTypes.BLOCK).mayMatch(id) || 
+			   presets.getActionPresence(ActionTypes.BONUS).mayMatch(id);
+	}
+	
 	private void handleBlockBreakEvent(BlockBreakEvent event, Block block, Player player) {
 		
 		ItemStack toolItem = player.getItemInHand();
@@ -89,11 +128,42 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 		
 		boolean allowBlockReward = PermissionSystem.hasRewardBlock(player) && !hasSilkTouch(toolItem);
 		boolean allowBonusReward = PermissionSystem.hasRewardBonus(player);
+		
+		ItemQuery retrieveKey = ItemQuery.fromAny(block);
+		Boolean placedBefore = null;
+		
+		// See if we should wait for the block history
+		if (historyTimeout > 0 && (allowBlockReward || allowBonusReward)) {
+			config = getConfiguration(player);
+			
+			if (config != null && (
+				(allowBlockReward && requiresHistory(config.getSimpleBlockReward(), retrieveKey)) ||
+				(allowBonusReward && requiresHistory(config.getSimpleBonusReward(), retrieveKey)))) {
+				
+				ListenableFuture<Boolean> history = historyProviders.hasPlayerHistoryAsync(
+						block.getLocation(), block.getTypeId(), true, new ErrorHandler<Exception>() {
+					@Override
+					public void onError(Exception error) {
+						report.reportError(debugger, ExperienceBlockListener.this, error);
+					}
+				});
+				
+				// Fast history services may have answered already
+				if (history.isDone()) {
+					placedBefore = getPlacedBefore(history);
+				} else {
+					deferBlockBreak(event, history, config, block, retrieveKey, player, allowBlockReward, allowBonusReward);
+					return;
+				}
+			}
+		}
+		
 		double multiplier = 1;
 		
 		if (event.getExpToDrop() > 0) {
 			// Increase vanilla reward
-			config = getConfiguration(player);
+			if (config == null)
+				config = getConfiguration(player);
 			multiplier = config.getMultiplier(); 
 		}
 		
@@ -102,19 +172,21 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 			if (config == null)
 				config = getConfiguration(player);
 			
-			multiplier *= handleBlockReward(event, config, config.getSimpleBlockReward(), "mined");
+			multiplier *= handleBlockReward(event, player, block, retrieveKey, config, 
+					config.getSimpleBlockReward(), "mined", placedBefore);
 		}
 		
 		if (allowBonusReward) {
 			if (config == null)
 				config = getConfiguration(player);
 			
-			multiplier *= handleBlockReward(event, config, config.getSimpleBonusReward(), "destroyed");
+			multiplier *= handleBlockReward(event, player, block, retrieveKey, config, 
+					config.getSimpleBonusReward(), "destroyed", placedBefore);
 		}
 		
 		if (multiplier != 1) {
 			SampleRange increase = new SampleRange(event.getExpToDrop() * multiplier);
-			int expChanged = increase.sampleInt(random);
+			int expChanged = increase.sampleInt(RandomSampling.getThreadRandom());
 			
 			event.setExpToDrop(expChanged);
 			
@@ -127,11 +199,108 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 		// Done
 	}
 	
-	private double handleBlockReward(BlockBreakEvent event, Configuration config, ItemTree tree, String description) {
+	/**
+	 * Look up the block history asynchronously, and grant any block reward once it is known.
+	 * <p>
+	 * The vanilla experience is withheld until then, and the event can no longer be cancelled.
+	 */
+	private void deferBlockBreak(BlockBreakEvent event, ListenableFuture<Boolean> history, Configuration config, 
+								 Block block, ItemQuery retrieveKey, Player player, 
+								 boolean allowBlockReward, boolean allowBonusReward) {
 		
-		Player player = event.getPlayer();
-		Block block = event.getBlock();
-		ItemQuery retrieveKey = ItemQuery.fromAny(block);
+		// Generate the rewards before the block is gone
+		DeferredReward blockReward = allowBlockReward ? 
+				new DeferredReward(config, config.getSimpleBlockReward(), retrieveKey, block, "mined") : null;
+		DeferredReward bonusReward = allowBonusReward ? 
+				new DeferredReward(config, config.getSimpleBonusReward(), retrieveKey, block, "destroyed") : null;
+		
+		// Penalties must be enforced now, while the event can still be cancelled
+		if ((blockReward != null && !blockReward.canRewardPlayer(player)) || 
+			(bonusReward != null && !bonusReward.canRewardPlayer(player))) {
+			
+			if (hasDebugger())
+				debugger.printDebug(this, "Block mined by %s cancelled: Not enough resources for item %s",
+					player.getName(), retrieveKey);
+			
+			// Untouchables will simply not be rewarded
+			if (!PermissionSystem.hasUntouchable(player)) {
+				event.setCancelled(true);
+				return;
+			}
+		}
+		
+		final DeferredBreak deferred = new DeferredBreak(event, config, block, retrieveKey, player, blockReward, bonusReward);
+		
+		// We'll drop it ourselves
+		event.setExpToDrop(0);
+		unconfirmedBreak = deferred;
+		
+		// Handles the answer on the main thread
+		Futures.addCallback(history, deferred);
+		
+		// Don't wait forever
+		scheduleSync(new Runnable() {
+			@Override
+			public void run() {
+				deferred.complete(assumePlacedOnTimeout, true);
+			}
+		}, historyTimeout);
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onBlockBreakMonitor(BlockBreakEvent event) {
+		DeferredBreak deferred = unconfirmedBreak;
+		
+		// Another listener may have cancelled the event after we deferred it
+		if (deferred != null && deferred.event == event) {
+			unconfirmedBreak = null;
+			deferred.confirm(!event.isCancelled());
+		}
+	}
+	
+	private Boolean getPlacedBefore(ListenableFuture<Boolean> history) {
+		
+		Boolean placedBefore = null;
+		
+		try {
+			placedBefore = history.get();
+		} catch (Exception e) {
+			report.reportError(debugger, this, e);
+		}
+		
+		if (placedBefore != null)
+			return placedBefore;
+		else {
+			if (hasDebugger())
+				debugger.printDebug(this, "No block history found.");
+			
+			// Assume it hasn't. More likely than not.
+			return false;
+		}
+	}
+	
+	private void scheduleSync(Runnable task, long delay) {
+		if (plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, task, delay) < 0) {
+			// The plugin has most likely been disabled
+			if (hasDebugger())
+				debugger.printDebug(this, "Cannot schedule deferred block reward.");
+		}
+	}
+	
+	/**
+	 * Handle a block reward.
+	 * @param event - the block event, or NULL if the event has already been processed.
+	 * @param player - the player that broke the block.
+	 * @param block - the broken block.
+	 * @param retrieveKey - query describing the block before it was broken.
+	 * @param config - the current configuration.
+	 * @param tree - the reward tree to use.
+	 * @param description - description of the reward, for debugging.
+	 * @param placedBefore - whether or not the block was placed by a player, or NULL to look it up if needed.
+	 * @return Multiplier that will be applied to the vanilla reward.
+	 */
+	private double handleBlockReward(BlockBreakEvent event, Player player, Block block, ItemQuery retrieveKey, 
+									 Configuration config, ItemTree tree, String description, Boolean placedBefore) {
 		
 		// No configuration or default configuration found
 		if (config == null) {
@@ -141,70 +310,110 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 			return 1; // Vanilla reward
 			
 		} else {
-			Action action = getBlockBonusAction(tree, retrieveKey, block);
-			RewardProvider rewards = config.getRewardProvider();
-			ChannelProvider channels = config.getChannelProvider();
+			Action action = getBlockBonusAction(tree, retrieveKey, block, placedBefore);
 			
 			// Guard
 			if (action == null)
 				return 1; // Vanilla reward
 			
 			Collection<NamedParameter> params = config.getParameterProviders().getParameters(action, block);
-			List<ResourceHolder> generated = action.generateRewards(params, rewards, random);
-			
-			// Could this be an action without rewards?
-			if (generated.size() == 0) {
-				return action.getInheritMultiplier();
-			}
-			
-			if (!action.canRewardPlayer(rewards, player, generated)) {
-				if (hasDebugger())
-					debugger.printDebug(this, "Block " + description + " by %s cancelled: Not enough resources for item %s",
-						player.getName(), block.getType());
-				
-				if (!PermissionSystem.hasUntouchable(player))
-					event.setCancelled(true);
-				return 1;
-			}
-			
-			Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated, block.getLocation());
-			config.getMessageQueue().enqueue(player, action, channels.getFormatter(player, result, generated));
-
+			return rewardBlock(event, player, block, retrieveKey, config, action, params, description);
+		}
+	}
+	
+	/**
+	 * Grant the reward of a block action.
+	 * @param event - the block event, or NULL if the event has already been processed.
+	 * @param player - the player that broke the block.
+	 * @param block - the broken block.
+	 * @param retrieveKey - query describing the block before it was broken.
+	 * @param config - the current configuration.
+	 * @param action - the action to perform.
+	 * @param params - the named parameters of the block.
+	 * @param description - description of the reward, for debugging.
+	 * @return Multiplier that will be applied to the vanilla reward.
+	 */
+	private double rewardBlock(BlockBreakEvent event, Player player, Block block, ItemQuery retrieveKey, Configuration config, 
+							   Action action, Collection<NamedParameter> params, String description) {
+		
+		RewardBuffer generated = action.generateRewards(params, config.getRewardProvider(), 
+				RandomSampling.getThreadRandom(), 1, generatedBuffer);
+		
+		return grantBlockReward(event, player, block, retrieveKey, config, action, generated, description);
+	}
+	
+	/**
+	 * Grant the given rewards of a block action.
+	 * @param event - the block event, or NULL if the event has already been processed.
+	 * @param player - the player that broke the block.
+	 * @param block - the broken block.
+	 * @param retrieveKey - query describing the block before it was broken.
+	 * @param config - the current configuration.
+	 * @param action - the action to perform.
+	 * @param generated - the generated rewards of the action.
+	 * @param description - description of the reward, for debugging.
+	 * @return Multiplier that will be applied to the vanilla reward.
+	 */
+	private double grantBlockReward(BlockBreakEvent event, Player player, Block block, ItemQuery retrieveKey, Configuration config, 
+									Action action, List<ResourceHolder> generated, String description) {
+		
+		RewardProvider rewards = config.getRewardProvider();
+		ChannelProvider channels = config.getChannelProvider();
+		
+		// Could this be an action without rewards?
+		if (generated.size() == 0) {
+			return action.getInheritMultiplier();
+		}
+		
+		if (!action.canRewardPlayer(rewards, player, generated)) {
 			if (hasDebugger())
-				debugger.printDebug(this, "Block " + description + " by %s: Spawned %s for item %s.", 
-					player.getName(), StringUtils.join(result, ", "), block.getType());
+				debugger.printDebug(this, "Block " + description + " by %s cancelled: Not enough resources for item %s",
+					player.getName(), retrieveKey);
 			
-			// Disable vanilla reward
-			return 0;
+			// Deferred events were checked before they were deferred
+			if (event != null && !PermissionSystem.hasUntouchable(player))
+				event.setCancelled(true);
+			return 1;
 		}
+		
+		Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated, block.getLocation(), resultBuffer);
+		config.getMessageQueue().enqueue(player, action, channels.getFormatter(player, result, generated));
+
+		if (hasDebugger())
+			debugger.printDebug(this, "Block " + description + " by %s: Spawned %s for item %s.", 
+				player.getName(), StringUtils.join(result, ", "), retrieveKey);
+		
+		// Disable vanilla reward
+		return 0;
 	}
 
-	private Action getBlockBonusAction(ItemTree tree, ItemQuery key, Block block) {
+	/**
+	 * Determines if the matching reward depends on whether or not the block was placed by a player.
+	 * @param tree - the reward tree.
+	 * @param key - the block query.
+	 * @return TRUE if the block history is needed, FALSE otherwise.
+	 */
+	private boolean requiresHistory(ItemTree tree, ItemQuery key) {
+		return tree.getPlayerCreatedResult(key).isHistoryRequired();
+	}
+	
+	private Action getBlockBonusAction(ItemTree tree, ItemQuery key, Block block, Boolean placedBefore) {
 		
-		List<Integer> ids = tree.getAllRankedID(key);
-		Set<Integer> noCreation = tree.getPlayerCreated().getSingle(false);
-		Set<Integer> yesCreation = tree.getPlayerCreated().getSingle(true);
+		PlayerCreatedResult result = tree.getPlayerCreatedResult(key);
 		
-		for (Integer id : ids) {
-			// Do any of these IDs have a player-option?
-			if ((noCreation != null && noCreation.contains(id)) ||
-				(yesCreation != null && yesCreation.contains(id))) {
-				
-				// In that case, specify the player creation value
-				Boolean placedBefore = hasBeenPlacedBefore(block);
-				ItemQuery copy = new ItemQuery(
-						key.getItemID(), key.getDurability(), Utility.getElementList(placedBefore));
-				
-				if (hasDebugger())
-					debugger.printDebug(this, "New query: %s", copy);
-				
-				// Perform the search again with this additional information
-				return tree.get(copy);
-			}
+		// Only look up the block history if it changes the outcome
+		if (result.isHistoryRequired()) {
+			if (placedBefore == null)
+				placedBefore = hasBeenPlacedBefore(block);
+			
+			if (hasDebugger())
+				debugger.printDebug(this, "Block %s placed before: %s", key, placedBefore);
+			
+			return result.get(placedBefore);
 		}
 		
 		// No need for more details
-		return tree.get(key);
+		return result.getNatural();
 	}
 	
 	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -226,12 +435,18 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 	
 	public void handleBlockPlaceEvent(BlockPlaceEvent event, Block block, Player player) {
 		
-		boolean allowPlacingReward = PermissionSystem.hasRewardPlacing(player);
+		// Most blocks are never rewarded, so don't bother checking permissions
+		boolean allowPlacingReward = 
+				(presets == null || presets.getActionPresence(ActionTypes.PLACE).mayMatch(block.getTypeId())) && 
+				PermissionSystem.hasRewardPlacing(player);
 		
 		// Inform other listeners too
 		if (historyProviders != null && historyProviders.getMemoryService() != null) {
 			historyProviders.getMemoryService().onBlockPlaceEvent(event);
 		}
+		if (historyProviders != null) {
+			historyProviders.onBlockPlaced(block.getLocation());
+		}
 		
 		if (allowPlacingReward) {
 			Configuration config = getConfiguration(player);
@@ -251,7 +466,7 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 				ChannelProvider channels = config.getChannelProvider();
 				Collection<NamedParameter> params = config.getParameterProviders().getParameters(action, block);
 				
-				List<ResourceHolder> generated = action.generateRewards(params, rewards, random);
+				RewardBuffer generated = action.generateRewards(params, rewards, RandomSampling.getThreadRandom(), 1, generatedBuffer);
 
 				// Make sure the action is legal
 				if (!action.canRewardPlayer(rewards, player, generated)) {
@@ -265,7 +480,7 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 				}
 				
 				// Reward and print messages
-				Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated);
+				Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated, resultBuffer);
 				config.getMessageQueue().enqueue(player, action, channels.getFormatter(player, result, generated));
 				
 				if (hasDebugger())
@@ -311,7 +526,206 @@ public class ExperienceBlockListener extends AbstractExperienceListener {
 		return false;
 	}
 	
+	/**
+	 * Sets the number of ticks to wait for slow history services before granting a block reward.
+	 * @param historyTimeout - timeout in ticks, or zero to look up the history synchronously.
+	 */
+	public void setHistoryTimeout(int historyTimeout) {
+		this.historyTimeout = historyTimeout;
+	}
+	
+	public int getHistoryTimeout() {
+		return historyTimeout;
+	}
+	
+	/**
+	 * Sets whether or not blocks are considered placed by a player if the history lookup times out.
+	 * @param assumePlacedOnTimeout - TRUE to treat them as placed by a player, FALSE otherwise.
+	 */
+	public void setAssumePlacedOnTimeout(boolean assumePlacedOnTimeout) {
+		this.assumePlacedOnTimeout = assumePlacedOnTimeout;
+	}
+	
+	public boolean isAssumePlacedOnTimeout() {
+		return assumePlacedOnTimeout;
+	}
+	
 	private boolean hasDebugger() {
 		return debugger != null && debugger.isDebugEnabled();
 	}
+	
+	/**
+	 * Represents a block reward that is waiting for the block history.
+	 * 
+	 * @author Kristian
+	 */
+	private class DeferredBreak implements FutureCallback<Boolean> {
+		
+		private final Configuration config;
+		private final Block block;
+		private final ItemQuery retrieveKey;
+		private final Player player;
+		private final int vanillaExp;
+		
+		// Candidate rewards, or NULL if not permitted
+		private final DeferredReward blockReward;
+		private final DeferredReward bonusReward;
+		
+		private final AtomicBoolean completed = new AtomicBoolean();
+		
+		// The event that broke the block, until it has been confirmed
+		private BlockBreakEvent event;
+		private boolean confirmed;
+		
+		public DeferredBreak(BlockBreakEvent event, Configuration config, Block block, ItemQuery retrieveKey, Player player,
+							 DeferredReward blockReward, DeferredReward bonusReward) {
+			this.event = event;
+			this.config = config;
+			this.block = block;
+			this.retrieveKey = retrieveKey;
+			this.player = player;
+			this.vanillaExp = event.getExpToDrop();
+			this.blockReward = blockReward;
+			this.bonusReward = bonusReward;
+		}
+		
+		/**
+		 * Invoked when the break event has been processed by every other listener.
+		 * @param broken - TRUE if the block was actually broken, FALSE if the event was cancelled.
+		 */
+		public void confirm(boolean broken) {
+			this.event = null;
+			this.confirmed = broken;
+		}
+		
+		@Override
+		public void onSuccess(final Boolean placedBefore) {
+			scheduleSync(new Runnable() {
+				@Override
+				public void run() {
+					if (placedBefore == null && hasDebugger())
+						debugger.printDebug(ExperienceBlockListener.this, "No block history found.");
+					
+					complete(placedBefore != null ? placedBefore : false, false);
+				}
+			}, 0);
+		}
+
+		@Override
+		public void onFailure(Throwable error) {
+			report.reportError(debugger, ExperienceBlockListener.this, error);
+			onSuccess(null);
+		}
+		
+		/**
+		 * Grant the block rewards and the withheld experience, unless this has already been done.
+		 * <p>
+		 * This must be called on the main thread.
+		 * @param placedBefore - whether or not the block was placed by a player.
+		 * @param timeout - whether or not the history lookup timed out.
+		 */
+		public void complete(boolean placedBefore, boolean timeout) {
+			
+			if (!completed.compareAndSet(false, true))
+				return;
+			
+			if (timeout && hasDebugger())
+				debugger.printDebug(ExperienceBlockListener.this, "Block history timed out for %s.", block);
+			
+			// Protected blocks must not be rewarded
+			if (!confirmed) {
+				if (hasDebugger())
+					debugger.printDebug(ExperienceBlockListener.this, "Block break of %s was cancelled.", block);
+				return;
+			}
+			
+			double multiplier = vanillaExp > 0 ? config.getMultiplier() : 1;
+			
+			// The player may have left in the mean time
+			if (player.isOnline()) {
+				if (blockReward != null)
+					multiplier *= blockReward.reward(this, placedBefore);
+				if (bonusReward != null)
+					multiplier *= bonusReward.reward(this, placedBefore);
+			}
+			
+			int expChanged = SampleRange.sampleInt(RandomSampling.getThreadRandom(), vanillaExp * multiplier, vanillaExp * multiplier);
+			
+			// Drop the withheld experience
+			if (expChanged > 0) {
+				Server.spawnExperienceAtBlock(block, expChanged);
+			}
+			
+			if (hasDebugger() && multiplier != 1) {
+				debugger.printDebug(ExperienceBlockListener.this, 
+						"Block mined by %s: Set experience to %d.", player.getName(), expChanged);
+			}
+		}
+	}
+	
+	/**
+	 * Represents the candidate actions of a deferred block reward, along with their generated rewards.
+	 * 
+	 * @author Kristian
+	 */
+	private class DeferredReward {
+		
+		private final String description;
+		private final RewardProvider rewards;
+		
+		private final Action natural;
+		private final Action placed;
+		private final List<ResourceHolder> naturalRewards;
+		private final List<ResourceHolder> placedRewards;
+		
+		public DeferredReward(Configuration config, ItemTree tree, ItemQuery retrieveKey, Block block, String description) {
+			PlayerCreatedResult result = tree.getPlayerCreatedResult(retrieveKey);
+			
+			this.description = description;
+			this.rewards = config.getRewardProvider();
+			this.natural = result.getNatural();
+			this.placed = result.getPlaced();
+			this.naturalRewards = generateRewards(config, natural, block);
+			this.placedRewards = placed != natural ? generateRewards(config, placed, block) : naturalRewards;
+		}
+		
+		// These are kept until the history is known, so they cannot be in the shared buffer
+		private List<ResourceHolder> generateRewards(Configuration config, Action action, Block block) {
+			if (action == null)
+				return null;
+			
+			Collection<NamedParameter> params = config.getParameterProviders().getParameters(action, block);
+			return action.generateRewards(params, rewards, RandomSampling.getThreadRandom());
+		}
+		
+		/**
+		 * Determines if the player can afford both candidate rewards.
+		 * @param player - the player that broke the block.
+		 * @return TRUE if the player can be rewarded regardless of the block history, FALSE otherwise.
+		 */
+		public boolean canRewardPlayer(Player player) {
+			return (natural == null || natural.canRewardPlayer(rewards, player, naturalRewards)) && 
+				   (placed == null || placed.canRewardPlayer(rewards, player, placedRewards));
+		}
+		
+		/**
+		 * Grant the matching reward.
+		 * @param deferred - the deferred block break.
+		 * @param placedBefore - whether or not the block was placed by a player.
+		 * @return Multiplier that will be applied to the vanilla reward.
+		 */
+		public double reward(DeferredBreak deferred, boolean placedBefore) {
+			Action action = placedBefore ? placed : natural;
+			
+			if (hasDebugger())
+				debugger.printDebug(ExperienceBlockListener.this, "Block %s placed before: %s", deferred.retrieveKey, placedBefore);
+			
+			// Guard
+			if (action == null)
+				return 1; // Vanilla reward
+			
+			return grantBlockReward(null, deferred.player, deferred.block, deferred.retrieveKey, deferred.config, action, 
+					placedBefore ? placedRewards : naturalRewards, description);
+		}
+	}
 }
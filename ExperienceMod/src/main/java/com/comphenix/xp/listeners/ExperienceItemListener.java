@@ -19,7 +19,6 @@ package com.comphenix.xp.listeners;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Material;
@@ -53,7 +52,9 @@ import com.comphenix.xp.messages.MessagePlayerQueue;
 import com.comphenix.xp.mods.BlockResponse;
 import com.comphenix.xp.mods.CustomBlockProviders;
 import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
 import com.comphenix.xp.rewards.RewardProvider;
+import com.comphenix.xp.rewards.items.RandomSampling;
 import com.google.common.base.Objects;
 
 public class ExperienceItemListener extends AbstractExperienceListener {
@@ -65,12 +66,13 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 	// Task IDs
 	private static final String TASK_TAG = "item";
 	
-	// Random source
-	private Random random = new Random();
-	
 	// Error reporting
 	private ErrorReporting report = ErrorReporting.DEFAULT;
 	
+	// Reused by every reward on the main thread. The message queue copies them if it must.
+	private final RewardBuffer generatedBuffer = new RewardBuffer();
+	private final RewardBuffer resultBuffer = new RewardBuffer();
+	
 	public ExperienceItemListener(Debugger debugger, PlayerScheduler scheduler,
 							      CustomBlockProviders blockProvider, Presets presets) {
 		
@@ -82,6 +84,10 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 
 	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
 	public void onFurnaceExtract(FurnaceExtractEvent event) {
+		// Most items are never rewarded
+		if (presets != null && !presets.getActionPresence(ActionTypes.SMELTING).mayMatch(event.getItemType().getId()))
+			return;
+		
 		// Would this yield a reward for the current player?
 		Configuration config = getConfiguration(event.getPlayer());
 		
@@ -148,7 +154,7 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 			RewardProvider rewards = config.getRewardProvider();
 			Collection<NamedParameter> params = config.getParameterProviders().getParameters(action, player);
 			
-			List<ResourceHolder> generated = action.generateRewards(params, rewards, random);
+			RewardBuffer generated = action.generateRewards(params, rewards, RandomSampling.getThreadRandom(), 1, generatedBuffer);
 			
 			// Check and see if the player is broke
 			if (!action.canRewardPlayer(rewards, player, generated)) {
@@ -161,7 +167,7 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 				return;
 			}
 			
-			Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated);
+			Collection<ResourceHolder> result = action.rewardPlayer(rewards, player, generated, resultBuffer);
 			config.getMessageQueue().enqueue(player, action, channels.getFormatter(player, result, generated));
 			
 			if (hasDebugger())
@@ -252,6 +258,12 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 		ItemStack toCraft = response.getOverridableCurrentItem(event);
 		InventoryType type = response.getDefaultBehavior();
 		
+		// No configuration rewards this item
+		if (type != InventoryType.BREWING && ItemQuery.hasItems(toCraft) && presets != null && 
+			!presets.getActionPresence(response.getActionType()).mayMatch(toCraft.getTypeId())) {
+			return;
+		}
+		
 		// Do not proceed if the user isn't permitted
 		if (!player.hasPermission(response.getPermission())) {
 			if (hasDebugger())
@@ -340,7 +352,7 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 		if (event.isShiftClick() || response.isForceHack()) {
 			
 			// Don't waste resources if we're already waiting
-			if (scheduler.getTasks(player, TASK_TAG).size() > 0) {
+			if (scheduler.hasTasks(player, TASK_TAG)) {
 				if (hasDebugger())
 					debugger.printDebug(this, "Duplicated scheduled task aborted.");
 				return;
@@ -398,8 +410,7 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 				if (action == null) {
 					debugger.printDebug(this, "Action not found: %s", toCraft);
 					return;
-				} else
-					action.setDebugger(debugger);
+				}
 				
 				// Simple enough
 				if (rewardAction.canPerform(player, current, action, count)) {
@@ -462,7 +473,7 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 			
 			public void generateRewards(ItemStack stack, Action action, int count) {
 				Collection<NamedParameter> params = parameterProviders.getParameters(action, stack);
-				generated = action.generateRewards(params, rewardsProvider, random, count);
+				generated = action.generateRewards(params, rewardsProvider, RandomSampling.getThreadRandom(), count);
 			}
 			
 			@Override
@@ -560,8 +571,6 @@ public class ExperienceItemListener extends AbstractExperienceListener {
 					// Make sure we got a action
 					if (action == null)
 						return;
-					else
-						action.setDebugger(debugger);
 					
 					// See if the event must be cancelled
 					if (!rewardAction.canPerform(player, last, action, newItemsCount)) {
@@ -37,8 +37,6 @@ public class ExperienceLevelListener extends AbstractExperienceListener {
 		
 		Player player = event.getPlayer();
 		Configuration config = getConfiguration(player);
-		
-		ExperienceManager manager = new ExperienceManager(player);
 		LevelingRate rate = config.getLevelingRate();
 		
 		if (rate == null) {
@@ -49,7 +47,7 @@ public class ExperienceLevelListener extends AbstractExperienceListener {
 		
 		// Retrieve the desired amount of experience required to level up
 		Integer desiredLevelUp = rate.get(player.getLevel());
-		Integer defaultLevelUp = manager.getXpNeededToLevelUp(player.getLevel());
+		Integer defaultLevelUp = ExperienceManager.getXpNeededToLevelUp(player.getLevel());
 		
 		// See if we need to modify the experience gained
 		if (desiredLevelUp != null && !Objects.equal(desiredLevelUp, defaultLevelUp)) {
@@ -65,7 +63,7 @@ public class ExperienceLevelListener extends AbstractExperienceListener {
 			
 			// Give the last fraction
 			if (exact > newXP) {
-				manager.changeExp(exact - newXP);
+				ExperienceManager.changeExp(player, exact - newXP);
 			}
 			
 			if (hasDebugger())
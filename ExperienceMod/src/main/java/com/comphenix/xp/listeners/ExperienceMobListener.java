@@ -21,10 +21,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
@@ -48,6 +48,7 @@ import com.comphenix.xp.lookup.MobQuery;
 import com.comphenix.xp.lookup.PlayerQuery;
 import com.comphenix.xp.messages.ChannelProvider;
 import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
 import com.comphenix.xp.rewards.RewardProvider;
 import com.comphenix.xp.rewards.items.RandomSampling;
 import com.comphenix.xp.rewards.xp.CurrencyHolder;
@@ -78,12 +79,12 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 	// The resources to award
 	private Map<Integer, FutureReward> scheduledRewards = new HashMap<Integer, FutureReward>();
 	
-	// Random source
-	private Random random = new Random();
-	
 	// Error report creator
 	private ErrorReporting report = ErrorReporting.DEFAULT;
 	
+	// Reused by every death on the main thread. The message queue copies it if it must.
+	private final RewardBuffer resultBuffer = new RewardBuffer();
+	
 	// Economy for currency subtraction
 	private RewardEconomy economy;
 	
@@ -167,6 +168,11 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 	
 	private boolean onFutureKillEvent(LivingEntity entity, Player killer) {
 		
+		// Most mobs are never rewarded
+		if (!mayRewardMob(entity)) {
+			return true;
+		}
+		
 		Configuration config = getConfiguration(entity, killer);
 		Collection<NamedParameter> params = null;
 		
@@ -192,7 +198,7 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 		}
 			
 		// Generate some rewards
-		List<ResourceHolder> generated = action.generateRewards(params, rewards, random);
+		List<ResourceHolder> generated = action.generateRewards(params, rewards, RandomSampling.getThreadRandom());
 
 		FutureReward future = new FutureReward();
 		future.action = action;
@@ -297,10 +303,9 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 	private int revertLevelingRate(Player player, int experience) {
 		
 		Configuration config = getConfiguration(player);
-		ExperienceManager manager = new ExperienceManager(player);	
 		
 		LevelingRate rate = config != null ? config.getLevelingRate() : null;
-		double rateFactor = rate != null ? RewardVirtual.getLevelingFactor(rate, player, manager) : 1;
+		double rateFactor = rate != null ? RewardVirtual.getLevelingFactor(rate, player) : 1;
 		
 		SampleRange sampling = new SampleRange(experience / rateFactor);
 		return sampling.sampleInt(RandomSampling.getThreadRandom());
@@ -309,15 +314,14 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 	// Manually subtract experience
 	private void subtractExperience(PlayerDeathEvent event, Player player, int experience) {
 		
-		ExperienceManager manager = new ExperienceManager(player);		
-		int current = manager.getCurrentExp();
+		int current = ExperienceManager.getCurrentExp(player);
 		int after = Math.max(current - experience, 0);
-		int level = manager.getLevelForExp(after);
+		int level = ExperienceManager.getLevelForExp(after);
 		
 		// Calculate the correct amount of experience left
 		event.setKeepLevel(false);
 		event.setNewLevel(level);
-		event.setNewExp(after - manager.getXpForLevel(level));
+		event.setNewExp(after - ExperienceManager.getXpForLevel(level));
 		event.setNewTotalExp(Math.max(player.getTotalExperience() - experience, 0));
 	}
 	
@@ -334,6 +338,21 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 			return getConfiguration(entity.getWorld());
 	}
 	
+	/**
+	 * Determines if killing the given entity could possibly be rewarded by any configuration.
+	 * @param entity - the killed entity.
+	 * @return TRUE if it could, FALSE if no reward action exists.
+	 */
+	private boolean mayRewardMob(LivingEntity entity) {
+		EntityType type = entity.getType();
+		
+		// Player deaths are handled by a different tree
+		if (entity instanceof Player || type == null || presets == null)
+			return true;
+		
+		return presets.getMobPresence().mayMatch(type.getTypeId());
+	}
+	
 	private Action getAction(Configuration config, LivingEntity entity, Player killer) {
 				
 		if (entity instanceof Player) {
@@ -424,9 +443,9 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 			
 			// Reward the killer directly, or just drop it naturally
 			if (killer != null)
-				result = action.rewardPlayer(rewards, killer, generated, entity.getLocation());
+				result = action.rewardPlayer(rewards, killer, generated, entity.getLocation(), resultBuffer);
 			else
-				result = action.rewardAnyone(rewards, entity.getWorld(), generated, entity.getLocation());
+				result = action.rewardAnyone(rewards, entity.getWorld(), generated, entity.getLocation(), resultBuffer);
 			
 			// Print message
 			config.getMessageQueue().enqueue(killer, action, channels.getFormatter(killer, result, generated));
@@ -468,7 +487,7 @@ public class ExperienceMobListener extends AbstractExperienceListener {
 		// Alter the default experience drop too
 		if (multiplier != 1) {
 			SampleRange increase = new SampleRange(expDropped * multiplier);
-			int expChanged = increase.sampleInt(random);
+			int expChanged = increase.sampleInt(RandomSampling.getThreadRandom());
 			
 			event.setDroppedExp(expChanged);
 			
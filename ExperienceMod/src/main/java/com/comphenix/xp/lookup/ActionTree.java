@@ -19,7 +19,10 @@ package com.comphenix.xp.lookup;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.comphenix.xp.Action;
 
@@ -27,6 +30,12 @@ public abstract class ActionTree<TKey> extends SearchTree<TKey, Action>{
 
 	protected double multiplier;
 	
+	// Maximum number of resolved inheritance chains
+	private static final int MAX_CHAIN_COUNT = 1024;
+	
+	// Pre-resolved actions, or NULL if the tree has been modified since
+	private volatile CompiledTable compiled;
+	
 	public ActionTree(double multiplier) {
 		this.multiplier = multiplier;
 	}
@@ -34,55 +43,156 @@ public abstract class ActionTree<TKey> extends SearchTree<TKey, Action>{
 	public ActionTree(ActionTree<TKey> other, double multiplier) {
 		this.multiplier = multiplier;
 		this.flatten = other.flatten;
+		this.identifiers = other.identifiers;
 		this.currentID = other.currentID;
 	}
 	
 	@Override
-	public Action get(Integer id) {
-		return addMultiplier(super.get(id));
+	public Integer put(TKey element, Action value) {
+		Integer id = super.put(element, value);
+		
+		compiled = null;
+		return id;
 	}
 	
-	private Action addMultiplier(Action source) {
-		
-		// Automatically include the multiplier
-		if (source != null)
-			return source.multiply(multiplier);
+	@Override
+	public void putAll(SearchTree<TKey, Action> other) {
+		super.putAll(other);
+		compiled = null;
+	}
+	
+	/**
+	 * Retrieves the scaled action with the given ID.
+	 * <p>
+	 * The returned action is shared with every other caller, and must not be modified.
+	 * @param id - the ID of the action.
+	 * @return The scaled action, or NULL if not found.
+	 */
+	@Override
+	public Action get(Integer id) {
+		if (id != null)
+			return compile().scaled.get(id);
 		else
-			return source;
+			return null;
 	}
 	
+	/**
+	 * Retrieves the action that matches the given query, with its inheritance chain resolved.
+	 * <p>
+	 * The returned action is shared with every other caller, and must not be modified.
+	 * @param element - the query to use.
+	 * @return The resolved action, or NULL if no action matches.
+	 */
 	@Override
 	public Action get(TKey element) {
-		List<Integer> ids = getAllRankedID(element);
-		List<Action> train = new ArrayList<Action>();
-		Action result = null;
+		return resolve(getCandidates(element), null, null);
+	}
+	
+	/**
+	 * Retrieves the highest ranked candidate action, with its inheritance chain resolved.
+	 * <p>
+	 * Candidates that have specified the given parameter, but not with the given value, are skipped. 
+	 * The candidate set itself is not modified.
+	 * @param candidates - the candidates to search.
+	 * @param filter - an additional parameter to filter by, or NULL to accept every candidate.
+	 * @param value - the value of the additional parameter.
+	 * @return The resolved action, or NULL if no action matches.
+	 */
+	protected <TParam> Action resolve(CandidateSet candidates, Parameter<TParam> filter, TParam value) {
+		CompiledTable table = compile();
+		
+		Action first = null;
+		int firstID = -1;
+		List<Integer> chain = null;
 		
 		// Figure out how long the inheritance train is
-		for (int i = 0; i < ids.size(); i++) {
-			Action current = get(ids.get(i));
+		for (int id = candidates.last(); id >= 0; id = candidates.previous(id)) {
+			if (filter != null && filter.isSpecified(id) && !filter.contains(value, id))
+				continue;
+			
+			Action current = table.scaled.get(id);
 			
 			if (current != null) {
-				train.add(current);
+				if (first == null) {
+					first = current;
+					firstID = id;
+				} else {
+					// Only allocate the chain for inheriting actions
+					if (chain == null) {
+						chain = new ArrayList<Integer>(4);
+						chain.add(firstID);
+					}
+					chain.add(id);
+				}
 				
 				// That was the last in the chain
 				if (!current.hasInheritance())
 					break;
 			}
 		}
-
+		
+		// The common case - no inheritance
+		if (chain == null)
+			return first;
+		
+		Action result = table.chains.get(chain);
+		
+		if (result == null) {
+			result = resolveChain(table, chain);
+			
+			// Just start again if we have too many combinations
+			if (table.chains.size() >= MAX_CHAIN_COUNT)
+				table.chains.clear();
+			table.chains.put(chain, result);
+		}
+		return result;
+	}
+	
+	// Merges an inheritance chain, starting with the last inserted element
+	private Action resolveChain(CompiledTable table, List<Integer> chain) {
+		
+		Action result = null;
+		
 		// We'll process everything starting at the last inserted element
-		for (int i = train.size() - 1; i >= 0; i--) {
-			Action action = train.get(i);
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			Action action = table.scaled.get(chain.get(i));
 
 			if (result == null)
 				result = action;
 			else if (action.hasInheritance())
 				result = action.inheritAction(result);
 		}
-
+		
 		return result;
 	}
 	
+	/**
+	 * Scales every action in this tree by the current multiplier, if it hasn't already been done.
+	 * <p>
+	 * This is done automatically on the first lookup after the tree has been modified.
+	 */
+	public void precompile() {
+		compile();
+	}
+	
+	private CompiledTable compile() {
+		CompiledTable table = compiled;
+		
+		// Resolve every action again - note that clones share the flattened map
+		if (table == null || table.size != flatten.size()) {
+			table = new CompiledTable(flatten.size());
+			
+			for (Map.Entry<Integer, SearchEntry> entry : flatten.entrySet()) {
+				Action value = entry.getValue().value;
+				
+				if (value != null)
+					table.scaled.put(entry.getKey(), value.multiply(multiplier));
+			}
+			compiled = table;
+		}
+		return table;
+	}
+	
 	/**
 	 * Returns a list of every stored range (scaled by experience) in this search tree.
 	 * @return Every stored range.
@@ -103,4 +213,19 @@ public abstract class ActionTree<TKey> extends SearchTree<TKey, Action>{
 	public double getMultiplier() {
 		return multiplier;
 	}
+	
+	/**
+	 * Every scaled action and resolved inheritance chain in the tree.
+	 * 
+	 * @author Kristian
+	 */
+	private static class CompiledTable {
+		private final int size;
+		private final Map<Integer, Action> scaled = new HashMap<Integer, Action>();
+		private final Map<List<Integer>, Action> chains = new ConcurrentHashMap<List<Integer>, Action>();
+		
+		public CompiledTable(int size) {
+			this.size = size;
+		}
+	}
 }
@@ -0,0 +1,210 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+package com.comphenix.xp.lookup;
+
+import java.util.Arrays;
+
+/**
+ * Represents a growable set of non-negative integers, stored as a dense array of bits.
+ * <p>
+ * Used to record which rules (by ID) belong to a given parameter value.
+ * 
+ * @author Kristian
+ */
+public class BitMask {
+
+	// Number of bits in a word is 2^6 = 64
+	static final int ADDRESS_BITS_PER_WORD = 6;
+	static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+	
+	// The underlying bits
+	long[] words;
+	
+	public BitMask() {
+		this(BITS_PER_WORD);
+	}
+	
+	/**
+	 * Constructs a bit mask that is able to hold the given number of bits without resizing.
+	 * @param capacity - the initial number of bits.
+	 */
+	public BitMask(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Capacity cannot be negative.");
+		
+		this.words = new long[Math.max(1, wordIndex(capacity - 1) + 1)];
+	}
+	
+	/**
+	 * Retrieves the index of the word that contains the given bit.
+	 * @param bitIndex - index of the bit.
+	 * @return Index of the word.
+	 */
+	static int wordIndex(int bitIndex) {
+		return bitIndex >> ADDRESS_BITS_PER_WORD;
+	}
+	
+	/**
+	 * Retrieves the given word, or zero if it is out of bounds.
+	 * @param source - source words.
+	 * @param index - index of the word to retrieve.
+	 * @return The word at the given index, or zero.
+	 */
+	static long getWord(long[] source, int index) {
+		return index < source.length ? source[index] : 0;
+	}
+	
+	/**
+	 * Adds the given integer to the set.
+	 * @param bitIndex - the integer to add.
+	 */
+	public void set(int bitIndex) {
+		if (bitIndex < 0)
+			throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+		
+		int index = wordIndex(bitIndex);
+		
+		ensureCapacity(index + 1);
+		words[index] |= (1L << bitIndex);
+	}
+	
+	/**
+	 * Removes the given integer from the set.
+	 * @param bitIndex - the integer to remove.
+	 */
+	public void clear(int bitIndex) {
+		if (bitIndex < 0)
+			throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+		
+		int index = wordIndex(bitIndex);
+		
+		if (index < words.length)
+			words[index] &= ~(1L << bitIndex);
+	}
+	
+	/**
+	 * Determines if the given integer is in the set.
+	 * @param bitIndex - the integer to test.
+	 * @return TRUE if it is, FALSE otherwise.
+	 */
+	public boolean get(int bitIndex) {
+		if (bitIndex < 0)
+			return false;
+		
+		int index = wordIndex(bitIndex);
+		return index < words.length && (words[index] & (1L << bitIndex)) != 0;
+	}
+	
+	/**
+	 * Adds every integer in the given set, incremented by an offset, to the current set.
+	 * @param other - the set to add.
+	 * @param offset - the amount to increment every integer in the given set.
+	 */
+	public void or(BitMask other, int offset) {
+		
+		// Make sure we don't see our own changes
+		long[] source = other == this ? words.clone() : other.words;
+		
+		for (int i = 0; i < source.length; i++) {
+			long word = source[i];
+			
+			// Add every set bit
+			while (word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				
+				set((i << ADDRESS_BITS_PER_WORD) + bit + offset);
+				word &= word - 1;
+			}
+		}
+	}
+	
+	/**
+	 * Retrieves the index of the first set bit on or after the given index.
+	 * @param fromIndex - the index to start searching from (inclusive).
+	 * @return Index of the next set bit, or -1 if no such bit exists.
+	 */
+	public int nextSetBit(int fromIndex) {
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+		
+		int index = wordIndex(fromIndex);
+		
+		if (index >= words.length)
+			return -1;
+		
+		long word = words[index] & (-1L << fromIndex);
+		
+		while (true) {
+			if (word != 0)
+				return (index << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+			if (++index == words.length)
+				return -1;
+			word = words[index];
+		}
+	}
+	
+	/**
+	 * Retrieves the number of integers in this set.
+	 * @return Number of integers in the set.
+	 */
+	public int cardinality() {
+		int sum = 0;
+		
+		for (long word : words) {
+			sum += Long.bitCount(word);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Determines if this set contains no integers.
+	 * @return TRUE if it is empty, FALSE otherwise.
+	 */
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Retrieves the number of 64-bit words currently allocated by this set.
+	 * @return Number of words.
+	 */
+	public int getWordCount() {
+		return words.length;
+	}
+	
+	private void ensureCapacity(int wordsRequired) {
+		if (words.length < wordsRequired) {
+			words = Arrays.copyOf(words, Math.max(2 * words.length, wordsRequired));
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			if (builder.length() > 1)
+				builder.append(", ");
+			builder.append(i);
+		}
+		return builder.append("}").toString();
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+package com.comphenix.xp.lookup;
+
+import java.util.Arrays;
+
+/**
+ * Represents a reusable working set of candidate rule IDs during a search tree lookup.
+ * <p>
+ * Every operation is performed word by word on the underlying bits, and no memory is allocated 
+ * once the buffers have grown to the size of the search tree.
+ * 
+ * @author Kristian
+ */
+public class CandidateSet {
+
+	private static final long[] EMPTY = new long[0];
+	
+	// Current candidates and a temporary buffer for unions
+	private long[] words = EMPTY;
+	private long[] scratch = EMPTY;
+	
+	// Number of words in use
+	private int wordCount;
+	
+	/**
+	 * Resets the current candidate set to the given universe.
+	 * @param universe - every ID that may be returned.
+	 */
+	public void reset(BitMask universe) {
+		wordCount = universe.words.length;
+		
+		if (words.length < wordCount) {
+			words = new long[wordCount];
+			scratch = new long[wordCount];
+		}
+		System.arraycopy(universe.words, 0, words, 0, wordCount);
+	}
+	
+	/**
+	 * Removes every candidate that have specified a parameter value, but not any of the values 
+	 * in the given set. Candidates that have not specified this parameter are retained.
+	 * @param specified - every ID that has specified a value for the current parameter.
+	 * @param matching - every ID that has specified a matching value, or NULL if none did.
+	 */
+	void retain(BitMask specified, BitMask matching) {
+		long[] spec = specified.words;
+		long[] match = matching != null ? matching.words : EMPTY;
+		
+		for (int i = 0; i < wordCount; i++) {
+			words[i] &= ~BitMask.getWord(spec, i) | BitMask.getWord(match, i);
+		}
+	}
+	
+	/**
+	 * Clears the scratch buffer used to compute unions.
+	 */
+	void clearUnion() {
+		Arrays.fill(scratch, 0, wordCount, 0);
+	}
+	
+	/**
+	 * Adds the given IDs to the scratch buffer.
+	 * @param matching - IDs to add.
+	 */
+	void addUnion(BitMask matching) {
+		long[] match = matching.words;
+		int count = Math.min(wordCount, match.length);
+		
+		for (int i = 0; i < count; i++) {
+			scratch[i] |= match[i];
+		}
+	}
+	
+	/**
+	 * Same as {@link #retain(BitMask, BitMask)}, only using the union in the scratch buffer as the 
+	 * matching IDs.
+	 * @param specified - every ID that has specified a value for the current parameter.
+	 */
+	void retainUnion(BitMask specified) {
+		long[] spec = specified.words;
+		
+		for (int i = 0; i < wordCount; i++) {
+			words[i] &= ~BitMask.getWord(spec, i) | scratch[i];
+		}
+	}
+	
+	/**
+	 * Determines if the given ID is a candidate.
+	 * @param id - the ID to test.
+	 * @return TRUE if it is, FALSE otherwise.
+	 */
+	public boolean contains(int id) {
+		int index = BitMask.wordIndex(id);
+		return id >= 0 && index < wordCount && (words[index] & (1L << id)) != 0;
+	}
+	
+	/**
+	 * Determines if there are no candidates left.
+	 * @return TRUE if there are no candidates, FALSE otherwise.
+	 */
+	public boolean isEmpty() {
+		for (int i = 0; i < wordCount; i++) {
+			if (words[i] != 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Retrieves the number of candidates.
+	 * @return Number of candidates.
+	 */
+	public int size() {
+		int sum = 0;
+		
+		for (int i = 0; i < wordCount; i++) {
+			sum += Long.bitCount(words[i]);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Retrieves the highest candidate ID, which is also the most recently inserted rule.
+	 * @return The highest ID, or -1 if there are no candidates.
+	 */
+	public int last() {
+		return previous(wordCount << BitMask.ADDRESS_BITS_PER_WORD);
+	}
+	
+	/**
+	 * Retrieves the highest candidate ID that is lower than the given ID.
+	 * @param id - the exclusive upper bound.
+	 * @return The next ID in descending order, or -1 if there are no more candidates.
+	 */
+	public int previous(int id) {
+		if (id <= 0)
+			return -1;
+		
+		int index = BitMask.wordIndex(id - 1);
+		long word;
+		
+		if (index >= wordCount) {
+			index = wordCount - 1;
+			
+			if (index < 0)
+				return -1;
+			word = words[index];
+		} else {
+			// Only bits below the given ID
+			word = words[index] & (-1L >>> (BitMask.BITS_PER_WORD - 1 - ((id - 1) & 63)));
+		}
+		
+		while (true) {
+			if (word != 0)
+				return (index << BitMask.ADDRESS_BITS_PER_WORD) + 63 - Long.numberOfLeadingZeros(word);
+			if (--index < 0)
+				return -1;
+			word = words[index];
+		}
+	}
+}
@@ -17,10 +17,10 @@
 
 package com.comphenix.xp.lookup;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 import com.comphenix.xp.Action;
+import com.comphenix.xp.extra.LongHashMap;
 
 public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<ItemTree> {
 
@@ -28,6 +28,19 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 	protected Parameter<Integer> durability; 
 	protected Parameter<Boolean> playerCreated;
 	
+	// Results of exact queries, keyed by item ID, durability and player creation
+	private LongHashMap<Object> exactCache;
+	private int cachedRules;
+	
+	// Every item ID that may match a rule
+	private volatile PresenceMask presence;
+	
+	// Maximum number of cached queries
+	private static final int MAX_CACHE_SIZE = 4096;
+	
+	// Used to indicate that a query has no result
+	private static final Object NO_RESULT = new Object();
+	
 	// Only used by the hack in PotionTree.
 	ItemTree() {
 		super(1);
@@ -57,6 +70,149 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 		return new ItemTree(this, newMultiplier);
 	}
 	
+	@Override
+	public Integer put(ItemQuery element, Action value) {
+		Integer id = super.put(element, value);
+		
+		invalidateCache();
+		return id;
+	}
+	
+	@Override
+	public void putAll(SearchTree<ItemQuery, Action> other) {
+		super.putAll(other);
+		invalidateCache();
+	}
+	
+	@Override
+	public Action get(ItemQuery element) {
+		
+		long key = getExactKey(element);
+		
+		// Only exact queries are cached
+		if (key < 0)
+			return super.get(element);
+		
+		LongHashMap<Object> cache = getExactCache();
+		Object cached;
+		
+		synchronized (cache) {
+			// Clones share rules with the original tree
+			if (cachedRules != flatten.size()) {
+				cache.clear();
+				cachedRules = flatten.size();
+			}
+			cached = cache.get(key);
+		}
+		
+		if (cached == null) {
+			Action result = super.get(element);
+			
+			synchronized (cache) {
+				// Start afresh if the cache is full
+				if (cache.size() >= MAX_CACHE_SIZE)
+					cache.clear();
+				cache.put(key, result != null ? result : NO_RESULT);
+			}
+			return result;
+		}
+		
+		return cached != NO_RESULT ? (Action) cached : null;
+	}
+	
+	/**
+	 * Retrieves the actions matching a query, both for items created by a player and items that weren't.
+	 * <p>
+	 * This only requires a single search, and lets the caller determine if the player creation status 
+	 * must be looked up at all. Any player creation status in the query itself is still respected.
+	 * @param element - the query to use.
+	 * @return The matching actions.
+	 */
+	public PlayerCreatedResult getPlayerCreatedResult(ItemQuery element) {
+		
+		CandidateSet candidates = getCandidates(element);
+		boolean specified = false;
+		
+		// See if any candidate cares about the player creation status
+		for (int id = candidates.last(); id >= 0; id = candidates.previous(id)) {
+			if (playerCreated.isSpecified(id)) {
+				specified = true;
+				break;
+			}
+		}
+		
+		if (specified) {
+			Action natural = resolve(candidates, playerCreated, false);
+			Action placed = resolve(candidates, playerCreated, true);
+			
+			return new PlayerCreatedResult(natural, placed);
+			
+		} else {
+			Action result = resolve(candidates, null, null);
+			
+			return new PlayerCreatedResult(result, result);
+		}
+	}
+	
+	@Override
+	public boolean containsKey(ItemQuery element) {
+		if (getExactKey(element) < 0)
+			return super.containsKey(element);
+		else
+			return get(element) != null;
+	}
+	
+	private synchronized LongHashMap<Object> getExactCache() {
+		if (exactCache == null)
+			exactCache = new LongHashMap<Object>();
+		return exactCache;
+	}
+	
+	private void invalidateCache() {
+		LongHashMap<Object> cache = getExactCache();
+		
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+	
+	/**
+	 * Packs an exact query into a single non-negative key.
+	 * <p>
+	 * The item ID occupies the upper bits, followed by 16 bits of durability and 
+	 * two bits for the player creation status.
+	 * @param query - the query to pack.
+	 * @return The packed key, or -1 if the query cannot be cached.
+	 */
+	private static long getExactKey(ItemQuery query) {
+		
+		Integer id = getSingle(query.getItemID());
+		Integer data = getSingle(query.getDurability());
+		long state;
+		
+		if (id == null || id < 0 || data == null || data < Short.MIN_VALUE || data > Short.MAX_VALUE)
+			return -1;
+		
+		// Any, unspecified, not placed and placed by a player
+		if (!query.hasPlayerCreated())
+			state = 0;
+		else if (query.getPlayerCreated().size() != 1)
+			return -1;
+		else if (query.getPlayerCreated().get(0) == null)
+			state = 1;
+		else
+			state = query.getPlayerCreated().get(0) ? 3 : 2;
+		
+		return ((long) id << 18) | ((data & 0xFFFFL) << 2) | state;
+	}
+	
+	private static Integer getSingle(List<Integer> list) {
+		if (list != null && list.size() == 1)
+			return list.get(0);
+		else
+			return null;
+	}
+	
 	@Override
 	protected Integer putFromParameters(ItemQuery source, Integer id) {
 
@@ -78,11 +234,8 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 	}
 
 	@Override
-	protected Set<Integer> getFromParameters(ItemQuery source) {
+	protected void getFromParameters(ItemQuery source, CandidateSet candidates) {
 
-		// Begin with the item IDs this can correspond to
-		Set<Integer> candidates = new HashSet<Integer>(flatten.keySet());
-		
 		if (source.hasItemID())
 			itemID.retain(candidates, source.getItemID());
 		
@@ -93,9 +246,6 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 		// Remove items with conflicting player creation/placing status
 		if (source.hasPlayerCreated())
 			playerCreated.retain(candidates, source.getPlayerCreated());
-		
-		// Any remaining items will be sorted by specificity
-		return candidates;
 	}
 
 	@Override
@@ -105,7 +255,22 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 
 		itemID.putAll(tree.itemID, offset);
 		durability.putAll(tree.durability, offset);
-		playerCreated.putAll(playerCreated, offset);
+		playerCreated.putAll(tree.playerCreated, offset);
+	}
+
+	/**
+	 * Retrieves every item ID that could possibly be matched by this tree.
+	 * @return Presence mask of item IDs.
+	 */
+	public PresenceMask getItemPresence() {
+		PresenceMask current = presence;
+		
+		// Clones share rules with the original tree
+		if (current == null || current.getRuleCount() != flatten.size()) {
+			current = PresenceMask.fromParameter(itemID, identifiers, flatten.size());
+			presence = current;
+		}
+		return current;
 	}
 
 	public Parameter<Integer> getItemID() {
@@ -119,4 +284,52 @@ public class ItemTree extends ActionTree<ItemQuery> implements Multipliable<Item
 	public Parameter<Boolean> getPlayerCreated() {
 		return playerCreated;
 	}
+	
+	/**
+	 * Represents the matching actions for items created by a player, and items that weren't.
+	 * 
+	 * @author Kristian
+	 */
+	public static class PlayerCreatedResult {
+		private final Action natural;
+		private final Action placed;
+		
+		public PlayerCreatedResult(Action natural, Action placed) {
+			this.natural = natural;
+			this.placed = placed;
+		}
+		
+		/**
+		 * Retrieves the matching action for an item that wasn't created by a player.
+		 * @return The matching action, or NULL if not found.
+		 */
+		public Action getNatural() {
+			return natural;
+		}
+		
+		/**
+		 * Retrieves the matching action for an item created by a player.
+		 * @return The matching action, or NULL if not found.
+		 */
+		public Action getPlaced() {
+			return placed;
+		}
+		
+		/**
+		 * Retrieves the matching action given the player creation status.
+		 * @param playerCreated - whether or not the item was created by a player.
+		 * @return The matching action, or NULL if not found.
+		 */
+		public Action get(boolean playerCreated) {
+			return playerCreated ? placed : natural;
+		}
+		
+		/**
+		 * Determines if the matching action depends on whether or not the item was created by a player.
+		 * @return TRUE if it does, FALSE otherwise.
+		 */
+		public boolean isHistoryRequired() {
+			return natural != placed;
+		}
+	}
 }
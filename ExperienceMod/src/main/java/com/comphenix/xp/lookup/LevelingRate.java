@@ -1,22 +1,37 @@
 package com.comphenix.xp.lookup;
 
+import java.util.Set;
+
 import com.comphenix.xp.extra.IntervalTree;
 
 import de.congrace.exp4j.Calculable;
 
 /**
  * Allows users to modify the amount of experience that is needed to level up a level.
+ * <p>
+ * Every level from zero up to a certain maximum is precomputed into a table, which can be read from any thread.
  * 
  * @author Kristian
  */
 public class LevelingRate extends IntervalTree<Integer, Integer> {
 
+	/**
+	 * The highest level that will be stored in the precomputed table.
+	 */
+	public static final int MAX_TABLE_LEVEL = 1024;
+	
+	// Indicates that a level has no custom amount of experience
+	private static final int NO_VALUE = Integer.MIN_VALUE;
+	
 	// Store the expressions too
 	protected IntervalTree<Integer, Calculable> expressions = new IntervalTree<Integer, Calculable>() {
 		protected Integer decrementKey(Integer key) { return key - 1; }
 		protected Integer incrementKey(Integer key) { return key + 1; }
 	};
 	
+	// Precomputed experience, or NULL if the ranges have changed since
+	private volatile int[] table;
+	
 	/**
 	 * Associates a given interval of levels with a certain amount of experience. Any previous
 	 * association will be overwritten in the given range. 
@@ -28,8 +43,9 @@ public class LevelingRate extends IntervalTree<Integer, Integer> {
 	 * @param experience - the amount of experience.
 	 */
 	@Override
-	public void put(Integer lowerBound, Integer upperBound, Integer experience) {
+	public synchronized void put(Integer lowerBound, Integer upperBound, Integer experience) {
 		super.put(lowerBound, upperBound, experience);
+		table = null;
 	}
 
 	/**
@@ -42,12 +58,21 @@ public class LevelingRate extends IntervalTree<Integer, Integer> {
 	 * @param upperBound - the maximum level (inclusive).
 	 * @param experience - the amount of experience.
 	 */
-	public void put(Integer lowerBound, Integer upperBound, Calculable experience) {
-		// Clear the "integer" cache
+	public synchronized void put(Integer lowerBound, Integer upperBound, Calculable experience) {
+		// Clear the "integer" range
 		super.put(lowerBound, upperBound, null);
 		
 		// Insert it into the expression tree
 		expressions.put(lowerBound, upperBound, experience);
+		table = null;
+	}
+	
+	@Override
+	public synchronized Set<Entry> remove(Integer lowerBound, Integer upperBound, boolean preserveDifference) {
+		Set<Entry> removed = super.remove(lowerBound, upperBound, preserveDifference);
+		
+		table = null;
+		return removed;
 	}
 	
 	/**
@@ -58,42 +83,91 @@ public class LevelingRate extends IntervalTree<Integer, Integer> {
 	@Override
 	public Integer get(Integer level) {
 
-		// The integer cache first
-		Integer cached = super.get(level);
+		int[] current = getTable();
 		
-		if (cached == null) {
-			
-			Calculable computed = expressions.get(level);
-			
-			if (computed != null) {
-				
-				int value = (int) computed.calculate(level);
-				
-				// Cache this result and return
-				super.put(level, level, value);
-				return value;
-				
-			} else {
-				return null;
+		// The common case
+		if (level >= 0 && level < current.length) {
+			int value = current[level];
+			return value != NO_VALUE ? value : null;
+		}
+		
+		// Levels beyond the table
+		synchronized (this) {
+			int value = compute(level);
+			return value != NO_VALUE ? value : null;
+		}
+	}
+	
+	/**
+	 * Computes the table of precomputed levels, if it hasn't already been done.
+	 * <p>
+	 * This is done automatically on the first lookup after the tree has been modified.
+	 */
+	public void precompile() {
+		getTable();
+	}
+	
+	private int[] getTable() {
+		int[] current = table;
+		
+		if (current == null) {
+			synchronized (this) {
+				// Another thread may have computed it already
+				if (table == null)
+					table = computeTable();
+				current = table;
 			}
+		}
+		return current;
+	}
+	
+	// Evaluates every level from zero to the highest specified level
+	private int[] computeTable() {
+		
+		int highest = -1;
+		
+		for (Entry entry : super.entrySet()) {
+			highest = Math.max(highest, entry.getKey().upperEndpoint());
+		}
+		for (IntervalTree<Integer, Calculable>.Entry entry : expressions.entrySet()) {
+			highest = Math.max(highest, entry.getKey().upperEndpoint());
+		}
+		
+		int[] result = new int[Math.min(highest, MAX_TABLE_LEVEL) + 1];
+		
+		for (int level = 0; level < result.length; level++) {
+			result[level] = compute(level);
+		}
+		return result;
+	}
+	
+	// Retrieves the amount of experience directly from the ranges
+	private int compute(int level) {
+		
+		Integer value = super.get(level);
+		
+		if (value == null) {
+			Calculable computed = expressions.get(level);
 			
-		} else {
-			return cached;
+			if (computed == null)
+				return NO_VALUE;
+			return (int) computed.calculate(level);
 		}
+		return value;
 	}
 	
 	/**
 	 * Inserts every level range from the given tree into the current tree.
 	 * @param other - the levels to read from.
 	 */
-	public void putAll(LevelingRate other) {
+	public synchronized void putAll(LevelingRate other) {
 
 		// Copy the expressions first - be sure to use the overridden method
 		for (IntervalTree<Integer, Calculable>.Entry entry : other.expressions.entrySet()) {
 			put(entry.getKey().lowerEndpoint(), entry.getKey().upperEndpoint(), entry.getValue());
 		}
 		
-		// Then the cache
+		// Then the integer ranges
 		super.putAll(other);
 	}
 	
@@ -103,7 +177,7 @@ public class LevelingRate extends IntervalTree<Integer, Integer> {
 	 * @return TRUE if the given level has a custom amount of experience, FALSE otherwise.
 	 */
 	@Override
-	public boolean containsKey(Integer level) {
+	public synchronized boolean containsKey(Integer level) {
 		return expressions.containsKey(level) || super.containsKey(level);
 	}
 	
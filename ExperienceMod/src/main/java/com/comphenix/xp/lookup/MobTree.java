@@ -17,9 +17,6 @@
 
 package com.comphenix.xp.lookup;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.bukkit.entity.Skeleton.SkeletonType;
 import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
 
@@ -39,6 +36,9 @@ public class MobTree extends ActionTree<MobQuery> implements Multipliable<MobTre
 	protected Parameter<Boolean> playerKill;
 	protected Parameter<Boolean> villaged;
 	
+	// Every entity type ID that may match a rule
+	private volatile PresenceMask presence;
+	
 	// For cloning
 	protected MobTree(MobTree other, double newMultiplier) { 
 		super(other, newMultiplier);
@@ -122,10 +122,8 @@ public class MobTree extends ActionTree<MobQuery> implements Multipliable<MobTre
 	}
 
 	@Override
-	protected Set<Integer> getFromParameters(MobQuery source) {
+	protected void getFromParameters(MobQuery source, CandidateSet candidates) {
 
-		Set<Integer> candidates = new HashSet<Integer>(flatten.keySet());
-		
 		if (source.hasType()) {
 			type.retain(candidates, source.getType());
 		}
@@ -161,8 +159,6 @@ public class MobTree extends ActionTree<MobQuery> implements Multipliable<MobTre
 		if (source.hasVillaged()) {
 			villaged.retain(candidates, source.getVillaged());
 		}
-		
-		return candidates;
 	}
 
 	@Override
@@ -181,6 +177,21 @@ public class MobTree extends ActionTree<MobQuery> implements Multipliable<MobTre
 		villaged.putAll(tree.villaged, offset);
 	}
 
+	/**
+	 * Retrieves every entity type ID that could possibly be matched by this tree.
+	 * @return Presence mask of entity type IDs.
+	 */
+	public PresenceMask getTypePresence() {
+		PresenceMask current = presence;
+		
+		// Clones share rules with the original tree
+		if (current == null || current.getRuleCount() != flatten.size()) {
+			current = PresenceMask.fromParameter(type, identifiers, flatten.size());
+			presence = current;
+		}
+		return current;
+	}
+
 	public Parameter<Short> getType() {
 		return type;
 	}
@@ -24,10 +24,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Represents a single dimension of a search tree, such as the item ID or durability.
+ * <p>
+ * Rule membership is stored as a bit mask of rule IDs per parameter value, along with a mask 
+ * of every rule that has specified any value at all. Rules outside the latter don't care about 
+ * this parameter, and will match any query.
+ * 
+ * @author Kristian
+ */
 public class Parameter<TParam> {
 	
-	protected Map<TParam, Set<Integer>> reverseLookup = new HashMap<TParam, Set<Integer>>();
+	protected Map<TParam, BitMask> reverseLookup = new HashMap<TParam, BitMask>();
 
+	// Every rule that has specified at least one value
+	protected BitMask specified = new BitMask();
+	
 	public int size() {
 		return reverseLookup.size();
 	}
@@ -48,46 +60,52 @@ public class Parameter<TParam> {
 	public void putAll(Parameter<TParam> other, Integer offsetID) {
 		
 		// Associate every parameter
-		for (TParam param : other.reverseLookup.keySet()) {
-			
-			Set<Integer> list = reverseLookup.get(param);
-			
-			// Initialize the list
-			if (list == null) {
-				list = new HashSet<Integer>();
-				reverseLookup.put(param, list);
-			}
-			
-			// Add every ID
-			for (Integer id : other.reverseLookup.get(param)) {
-				list.add(offsetID + id);
-			}
+		for (Map.Entry<TParam, BitMask> entry : other.reverseLookup.entrySet()) {
+			getOrCreate(entry.getKey()).or(entry.getValue(), offsetID);
 		}
+		
+		specified.or(other.specified, offsetID);
 	}
 
 	private void putSingle(TParam param, Integer id) {
 		
-		Set<Integer> list = reverseLookup.get(param);
+		BitMask list = getOrCreate(param);
+		
+		// Store the direct and reverse lookup
+		if (list.get(id))
+			throw new IllegalArgumentException(
+					String.format("Duplicate parameter %s at index %s", id, param));
+		
+		list.set(id);
+		specified.set(id);
+	}
+	
+	private BitMask getOrCreate(TParam param) {
+		
+		BitMask list = reverseLookup.get(param);
 		
 		// Initialize the list
 		if (list == null) {
-			list = new HashSet<Integer>();
+			list = new BitMask();
 			reverseLookup.put(param, list);
 		}
-		
-		// Store the direct and reverse lookup
-		if (!list.add(id))
-			throw new IllegalArgumentException(
-					String.format("Duplicate parameter %s at index %s", id, param));
+		return list;
 	}
 	
 	/**
 	 * Indexes of queries with the given parameter.
+	 * <p>
+	 * Note that this is a copy. Use {@link #contains(Object, int)} when possible.
 	 * @param param - parameter to search for.
 	 * @return Every query that is listed under the given parameter, or NULL if nothing was found.
 	 */
 	public Set<Integer> getSingle(TParam param) {
-		return reverseLookup.get(param);
+		BitMask list = reverseLookup.get(param);
+		
+		if (list != null)
+			return toSet(list, new HashSet<Integer>());
+		else
+			return null;
 	}
 	
 	public Set<Integer> getCopy(List<TParam> params) {
@@ -96,61 +114,71 @@ public class Parameter<TParam> {
 		
 		// Union of all parameter sets
 		for (TParam param : params) {
-			Set<Integer> result = reverseLookup.get(param);
+			BitMask result = reverseLookup.get(param);
 			
 			if (result != null)
-				copy.addAll(result);
+				toSet(result, copy);
 		}
 		
 		return copy;
 	}
 	
-	public void retain(Set<Integer> current, List<TParam> params) {
+	private Set<Integer> toSet(BitMask list, Set<Integer> destination) {
+		for (int i = list.nextSetBit(0); i >= 0; i = list.nextSetBit(i + 1)) {
+			destination.add(i);
+		}
+		return destination;
+	}
+	
+	/**
+	 * Determines if the given query is listed under the given parameter.
+	 * @param param - parameter to search for.
+	 * @param id - ID of the query.
+	 * @return TRUE if it is, FALSE otherwise.
+	 */
+	public boolean contains(TParam param, int id) {
+		BitMask list = reverseLookup.get(param);
+		return list != null && list.get(id);
+	}
+	
+	/**
+	 * Determines if the given query has specified any value for this parameter.
+	 * @param id - ID of the query.
+	 * @return TRUE if it has, FALSE if it matches every value.
+	 */
+	public boolean isSpecified(int id) {
+		return specified.get(id);
+	}
+	
+	/**
+	 * Removes every candidate that have specified this parameter, but not with any of the given values.
+	 * @param current - the current candidates.
+	 * @param params - the values to match.
+	 */
+	public void retain(CandidateSet current, List<TParam> params) {
 		
 		// Save some time
-		if (current.size() == 0)
+		if (current.isEmpty())
 			return;
 		
-		// Set subtraction
-		Set<TParam> blacklist = new HashSet<TParam>(reverseLookup.keySet());
-		blacklist.removeAll(params);
-		
-		// Queries WITH this parameter will not be removed in this phase
-		Set<Integer> whitelist = getWhitelist(current, params);
-		
-		// Remove everything but the items with the given parameter
-		for (TParam key : blacklist) {
-			current.removeAll(reverseLookup.get(key));
-
-			if (current.size() == 0) {
-				break;
-			}
+		// The most common case - a single value
+		if (params.size() == 1) {
+			current.retain(specified, reverseLookup.get(params.get(0)));
+			return;
 		}
 		
-		// Add back the whitelist
-		if (whitelist.size() > 0) {
-			current.addAll(whitelist);
-		}
-			
-		// Optimize idea: Store the negative (all elements NOT in the given lookup), 
-		//                instead of a loop.
-	}
-	
-	private Set<Integer> getWhitelist(Set<Integer> current, List<TParam> params) {
-		
-		Set<Integer> whitelist = new HashSet<Integer>();
+		// Queries WITH this parameter will not be removed in this phase
+		current.clearUnion();
 		
-		// Add every query that qualify
-		for (TParam param : params) {
-			Set<Integer> result = reverseLookup.get(param);
+		for (int i = 0; i < params.size(); i++) {
+			BitMask result = reverseLookup.get(params.get(i));
 			
 			if (result != null)
-				whitelist.addAll(result);
+				current.addUnion(result);
 		}
 		
-		// But remove those previously eliminated
-		whitelist.retainAll(current);
-		return whitelist;
+		// Remove everything but the items with the given parameter
+		current.retainUnion(specified);
 	}
 	
 	/**
@@ -160,4 +188,4 @@ public class Parameter<TParam> {
 	public Collection<TParam> getKeys() {
 		return reverseLookup.keySet();
 	}
-}
\ No newline at end of file
+}
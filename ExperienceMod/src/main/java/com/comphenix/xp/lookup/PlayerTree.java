@@ -1,8 +1,5 @@
 package com.comphenix.xp.lookup;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
 
 import com.comphenix.xp.Action;
@@ -61,10 +58,8 @@ public class PlayerTree extends ActionTree<PlayerQuery> implements Multipliable<
 	}
 
 	@Override
-	protected Set<Integer> getFromParameters(PlayerQuery source) {
+	protected void getFromParameters(PlayerQuery source, CandidateSet candidates) {
 
-		Set<Integer> candidates = new HashSet<Integer>(flatten.keySet());
-		
 		if (source.hasNames()) {
 			names.retain(candidates, source.getNames());
 		}
@@ -80,8 +75,6 @@ public class PlayerTree extends ActionTree<PlayerQuery> implements Multipliable<
 		if (source.hasMurder()) {
 			murder.retain(candidates, source.getMurder());
 		}
-		
-		return candidates;	
 	}
 	
 	@Override
@@ -17,10 +17,6 @@
 
 package com.comphenix.xp.lookup;
 
-
-import java.util.HashSet;
-import java.util.Set;
-
 import org.apache.commons.lang.NotImplementedException;
 import org.bukkit.potion.PotionType;
 import com.comphenix.xp.Action;
@@ -83,10 +79,8 @@ public class PotionTree extends ActionTree<PotionQuery> implements Multipliable<
 	}
 
 	@Override
-	protected Set<Integer> getFromParameters(PotionQuery source) {
+	protected void getFromParameters(PotionQuery source, CandidateSet candidates) {
 
-		Set<Integer> candidates = new HashSet<Integer>(flatten.keySet());
-		
 		// Filter by parameters
 		if (source.hasType()) {
 			type.retain(candidates, source.getType());
@@ -103,8 +97,6 @@ public class PotionTree extends ActionTree<PotionQuery> implements Multipliable<
 		if (source.hasSplash()) {
 			splash.retain(candidates, source.getSplash());
 		}
-			
-		return candidates;
 	}
 	
 	// I always end up making these ugly hacks. Damn it.
@@ -131,7 +123,7 @@ public class PotionTree extends ActionTree<PotionQuery> implements Multipliable<
 			}
 
 			@Override
-			protected Set<Integer> getFromParameters(ItemQuery source) {
+			protected void getFromParameters(ItemQuery source, CandidateSet candidates) {
 				throw new NotImplementedException();
 			}
 		};
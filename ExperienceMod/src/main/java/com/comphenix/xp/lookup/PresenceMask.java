@@ -0,0 +1,117 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+package com.comphenix.xp.lookup;
+
+/**
+ * Represents every ID (such as a material or entity type) that could possibly be matched by a search tree.
+ * <p>
+ * This is used to discard events that cannot yield a reward, without performing a full lookup.
+ * 
+ * @author Kristian
+ */
+public class PresenceMask {
+
+	/**
+	 * A mask that never matches anything.
+	 */
+	public static final PresenceMask EMPTY = new PresenceMask(new BitMask(), false, 0);
+	
+	/**
+	 * A mask that may match everything.
+	 */
+	public static final PresenceMask ANY = new PresenceMask(new BitMask(), true, 0);
+	
+	private final BitMask values;
+	private final boolean wildcard;
+	private final int ruleCount;
+	
+	private PresenceMask(BitMask values, boolean wildcard, int ruleCount) {
+		this.values = values;
+		this.wildcard = wildcard;
+		this.ruleCount = ruleCount;
+	}
+	
+	/**
+	 * Computes the presence mask of a given parameter.
+	 * @param parameter - the parameter that stores the ID of every rule.
+	 * @param identifiers - the ID of every rule in the search tree.
+	 * @param ruleCount - the number of rules in the search tree.
+	 * @return The computed presence mask.
+	 */
+	public static PresenceMask fromParameter(Parameter<? extends Number> parameter, BitMask identifiers, int ruleCount) {
+		BitMask values = new BitMask();
+		boolean wildcard = false;
+		
+		// Rules without this parameter will match any ID
+		for (int i = identifiers.nextSetBit(0); i >= 0; i = identifiers.nextSetBit(i + 1)) {
+			if (!parameter.isSpecified(i)) {
+				wildcard = true;
+				break;
+			}
+		}
+		
+		if (!wildcard) {
+			for (Number key : parameter.getKeys()) {
+				if (key != null && key.intValue() >= 0)
+					values.set(key.intValue());
+			}
+		}
+		return new PresenceMask(values, wildcard, ruleCount);
+	}
+	
+	/**
+	 * Computes the union of two presence masks.
+	 * @param a - the first mask.
+	 * @param b - the second mask.
+	 * @return A mask matching every ID in either mask.
+	 */
+	public static PresenceMask union(PresenceMask a, PresenceMask b) {
+		if (a.wildcard || b.wildcard)
+			return ANY;
+		
+		BitMask values = new BitMask();
+		
+		values.or(a.values, 0);
+		values.or(b.values, 0);
+		return new PresenceMask(values, false, a.ruleCount + b.ruleCount);
+	}
+	
+	/**
+	 * Determines if a rule could possibly match the given ID.
+	 * @param id - the ID to test.
+	 * @return TRUE if it could, FALSE if no rule will ever match this ID.
+	 */
+	public boolean mayMatch(int id) {
+		return wildcard || values.get(id);
+	}
+	
+	/**
+	 * Determines if there is a rule that matches every ID.
+	 * @return TRUE if there is, FALSE otherwise.
+	 */
+	public boolean isWildcard() {
+		return wildcard;
+	}
+	
+	/**
+	 * Retrieves the number of rules in the search tree when this mask was computed.
+	 * @return Number of rules.
+	 */
+	public int getRuleCount() {
+		return ruleCount;
+	}
+}
@@ -17,9 +17,6 @@
 
 package com.comphenix.xp.lookup;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import com.comphenix.xp.Configuration;
 
 public class PresetTree extends SearchTree<PresetQuery, Configuration> {
@@ -63,20 +60,14 @@ public class PresetTree extends SearchTree<PresetQuery, Configuration> {
 	}
 
 	@Override
-	protected Set<Integer> getFromParameters(PresetQuery source) {
+	protected void getFromParameters(PresetQuery source, CandidateSet candidates) {
 
-		// Begin with the item IDs this can correspond to
-		Set<Integer> candidates = new HashSet<Integer>(flatten.keySet());
-		
 		if (source.hasPresetNames())
 			presetNames.retain(candidates, source.getPresetNames());
 		
 		// Remove items that contain conflicting worlds
 		if (source.hasWorlds())
 			worlds.retain(candidates, source.getWorlds());
-		
-		// Any remaining items will be sorted by specificity
-		return candidates;
 	}
 
 	public Parameter<String> getPresetNames() {
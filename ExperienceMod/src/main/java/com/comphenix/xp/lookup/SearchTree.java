@@ -19,12 +19,9 @@ package com.comphenix.xp.lookup;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
@@ -54,10 +51,20 @@ public abstract class SearchTree<TKey, TValue> {
 		}
 	}
 	
+	// Candidate buffers are reused by each thread, so lookups don't allocate
+	private static final ThreadLocal<CandidateSet> candidateBuffer = new ThreadLocal<CandidateSet>() {
+		@Override
+		protected CandidateSet initialValue() {
+			return new CandidateSet();
+		}
+	};
+	
 	protected Map<Integer, SearchEntry> flatten = new HashMap<Integer, SearchEntry>();
-		
+	
+	// Every ID in the flattened map
+	protected BitMask identifiers = new BitMask();
+	
 	protected int currentID;
-	protected ValueComparer comparer = new ValueComparer(); 
 	
 	public Integer put(TKey element, TValue value) {
 		
@@ -66,6 +73,7 @@ public abstract class SearchTree<TKey, TValue> {
 		
 		// Save value
 		flatten.put(id, entry);
+		identifiers.set(id);
 		
 		// Extract parameters
 		entry.paramCount = putFromParameters(element, id);
@@ -85,6 +93,8 @@ public abstract class SearchTree<TKey, TValue> {
 			highest = Math.max(highest, id + offset);
 		}
 		
+		identifiers.or(other.identifiers, offset);
+		
 		// Make sure the parameters are updated too
 		putAllParameters(other, offset);
 		currentID = highest + 1;
@@ -142,36 +152,46 @@ public abstract class SearchTree<TKey, TValue> {
 	
 	/**
 	 * Retrieves every possible matching action in ID form.
+	 * <p>
+	 * The most recently inserted rules are ranked first.
 	 * @param element - the query to match with.
 	 * @return List of IDs.
 	 */
 	public List<Integer> getAllRankedID(TKey element) {
 		
-		Set<Integer> candidates = getFromParameters(element);
+		CandidateSet candidates = getCandidates(element);
 		List<Integer> indexes = new ArrayList<Integer>(candidates.size());
 
-		for (Integer candidate : candidates) {
-			if (candidate != null) {
-				indexes.add(candidate);
-			}
+		// Higher IDs before lower
+		for (int id = candidates.last(); id >= 0; id = candidates.previous(id)) {
+			indexes.add(id);
 		}
-		
-		// Sort list and return
-		Collections.sort(indexes, comparer);
 		return indexes;
 	}
 	
 	protected Integer getID(TKey element) {
 		
-		Set<Integer> candidates = getFromParameters(element);
+		int id = getCandidates(element).last();
 
-		// No result? Better return null.
-		if (candidates == null || candidates.size() == 0)
-			return null;
+		// Return the most recent element, or NULL if there's no result
+		return id >= 0 ? id : null;
+	}
+	
+	/**
+	 * Retrieves the candidate IDs that match the given query.
+	 * <p>
+	 * The returned set is a thread-local buffer that will be reused by the next lookup in this thread.
+	 * @param element - the query to match with.
+	 * @return The matching IDs.
+	 */
+	protected CandidateSet getCandidates(TKey element) {
 		
-		// Return the most recent element
-		return Collections.min(candidates, comparer);
-
+		// Begin with every ID
+		CandidateSet candidates = candidateBuffer.get();
+		candidates.reset(identifiers);
+		
+		getFromParameters(element, candidates);
+		return candidates;
 	}
 	
 	public boolean containsKey(TKey element) {
@@ -209,34 +229,9 @@ public abstract class SearchTree<TKey, TValue> {
 	
 	protected abstract void putAllParameters(SearchTree<TKey, TValue> other, Integer offset);
 	protected abstract Integer putFromParameters(TKey source, Integer id);
-	protected abstract Set<Integer> getFromParameters(TKey source);
+	protected abstract void getFromParameters(TKey source, CandidateSet candidates);
 	
 	private int getNextID() {
 		return currentID++;
 	}
-	
-	/**
-	 * Compares values (referenced by ID) by priority. The newest elements are put first.
-	 */
-	protected class ValueComparer implements Comparator<Integer> {
-
-		@Override
-		public int compare(Integer a, Integer b) {
-
-			// Higher before lower
-			return compareObjects(b, a, false);
-		}
-		
-		// Taken from Apache Commons 2.6  (ObjectUtils.compare)
-		public <T extends Comparable<T>> int compareObjects(T c1, T c2, boolean nullGreater) {
-            if (c1 == c2) {
-                return 0;
-            } else if (c1 == null) {
-                return (nullGreater ? 1 : -1);
-            } else if (c2 == null) {
-                return (nullGreater ? -1 : 1);
-            }
-            return c1.compareTo(c2);
-        }
-	}
 }
@@ -0,0 +1,227 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+
+package com.comphenix.xp.messages;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.bukkit.entity.Player;
+
+/**
+ * Buffers outgoing channel messages, and transmits them once per window.
+ * <p>
+ * Identical lines sent on the same channel within a window are merged into a single line 
+ * with a repeat count. The existence of each channel is only looked up once per window.
+ * 
+ * @author Kristian
+ */
+public class ChannelCoalescer {
+
+	// Buffering services, by the service they wrap
+	private Map<ChannelService, CoalescedService> services = new ConcurrentHashMap<ChannelService, CoalescedService>();
+	
+	private long window;
+	private long lastFlush;
+	
+	/**
+	 * Constructs a coalescer with the given window.
+	 * @param window - number of milliseconds to buffer messages.
+	 */
+	public ChannelCoalescer(long window) {
+		if (window < 0)
+			throw new IllegalArgumentException("Window cannot be negative.");
+		this.window = window;
+	}
+	
+	/**
+	 * Retrieves a service that buffers every message sent to the given service.
+	 * @param service - the service to wrap.
+	 * @return The buffering service.
+	 */
+	public ChannelService getService(ChannelService service) {
+		CoalescedService coalesced = services.get(service);
+		
+		if (coalesced == null) {
+			coalesced = new CoalescedService(service);
+			services.put(service, coalesced);
+		}
+		return coalesced;
+	}
+	
+	/**
+	 * Retrieves the number of milliseconds messages are buffered.
+	 * @return The window in milliseconds.
+	 */
+	public long getWindow() {
+		return window;
+	}
+	
+	/**
+	 * Transmits every buffered message, if the window has elapsed.
+	 * @param currentTime - the current time in milliseconds.
+	 */
+	public void onTick(long currentTime) {
+		if (currentTime - lastFlush >= window) {
+			flush();
+			lastFlush = currentTime;
+		}
+	}
+	
+	/**
+	 * Transmits every buffered message immediately.
+	 */
+	public void flush() {
+		for (CoalescedService service : services.values()) {
+			service.flush();
+		}
+	}
+	
+	/**
+	 * Represents a single outgoing line.
+	 */
+	private static class Broadcast {
+		private final String channelID;
+		private final String message;
+		private final Player sender;
+		private final boolean emote;
+		
+		// Number of times this line was sent
+		private int count;
+		
+		public Broadcast(String channelID, String message, Player sender, boolean emote) {
+			this.channelID = channelID;
+			this.message = message;
+			this.sender = sender;
+			this.emote = emote;
+		}
+		
+		public String getText() {
+			return count > 1 ? message + " (x" + count + ")" : message;
+		}
+		
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 31).
+		            append(channelID).
+		            append(message).
+		            append(sender).
+		            append(emote).
+		            toHashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof Broadcast))
+				return false;
+			
+			Broadcast other = (Broadcast) obj;
+			return emote == other.emote &&
+				   channelID.equals(other.channelID) &&
+				   message.equals(other.message) &&
+				   ObjectUtils.equals(sender, other.sender);
+		}
+	}
+	
+	/**
+	 * A channel service that buffers every message until it is flushed.
+	 */
+	private static class CoalescedService implements ChannelService {
+		
+		private final ChannelService service;
+		
+		// Lines to send, in order
+		private Map<Broadcast, Broadcast> pending = new LinkedHashMap<Broadcast, Broadcast>();
+		
+		// Cached channel lookups
+		private Map<String, Boolean> channels = new ConcurrentHashMap<String, Boolean>();
+		
+		public CoalescedService(ChannelService service) {
+			this.service = service;
+		}
+		
+		@Override
+		public String getServiceName() {
+			return service.getServiceName();
+		}
+
+		@Override
+		public boolean hasChannel(String channelID) {
+			Boolean result = channels.get(channelID);
+			
+			if (result == null) {
+				result = service.hasChannel(channelID);
+				channels.put(channelID, result);
+			}
+			return result;
+		}
+
+		@Override
+		public void announce(String channelID, String message) {
+			enqueue(new Broadcast(channelID, message, null, false));
+		}
+
+		@Override
+		public void emote(String channelID, String message, Player sender) {
+			enqueue(new Broadcast(channelID, message, sender, true));
+		}
+		
+		private synchronized void enqueue(Broadcast broadcast) {
+			Broadcast previous = pending.get(broadcast);
+			
+			if (previous == null) {
+				pending.put(broadcast, broadcast);
+				previous = broadcast;
+			}
+			previous.count++;
+		}
+		
+		public void flush() {
+			List<Broadcast> sending;
+			
+			// Channels may have been created or removed since
+			channels.clear();
+			
+			synchronized (this) {
+				if (pending.isEmpty())
+					return;
+				
+				sending = new ArrayList<Broadcast>(pending.values());
+				pending.clear();
+			}
+			
+			for (Broadcast broadcast : sending) {
+				try {
+					if (broadcast.emote)
+						service.emote(broadcast.channelID, broadcast.getText(), broadcast.sender);
+					else
+						service.announce(broadcast.channelID, broadcast.getText());
+					
+				} catch (IllegalArgumentException e) {
+					// The channel was removed. Don't lose the remaining lines.
+				}
+			}
+		}
+	}
+}
@@ -36,6 +36,9 @@ public class ChannelProvider extends ServiceProvider<ChannelService> {
 
 	private List<String> defaultChannels = new ArrayList<String>();
 	private MessageFormatter messageFormatter;
+	
+	// Buffers outgoing messages, if enabled
+	private ChannelCoalescer coalescer;
 
 	public ChannelProvider() {
 		super(HeroService.NAME);
@@ -45,6 +48,9 @@ public class ChannelProvider extends ServiceProvider<ChannelService> {
 		super(other);
 		setDefaultChannels(other.getDefaultChannels());
 		setMessageFormatter(other.getMessageFormatter());
+		
+		// Share the same buffer
+		this.coalescer = other.coalescer;
 	}
 	
 	public ChannelProvider(String defaultService) {
@@ -67,6 +73,55 @@ public class ChannelProvider extends ServiceProvider<ChannelService> {
 		this.messageFormatter = messageFormatter;
 	}
 	
+	/**
+	 * Retrieves the service that should be used to transmit messages.
+	 * <p>
+	 * If coalescing is enabled, this is a service that buffers every message sent to the default service.
+	 * @return The service to transmit messages with, or NULL if not found.
+	 */
+	public ChannelService getDispatchService() {
+		ChannelService service = getDefaultService();
+		ChannelCoalescer current = coalescer;
+		
+		if (current != null && service != null)
+			return current.getService(service);
+		else
+			return service;
+	}
+	
+	/**
+	 * Retrieves the number of milliseconds outgoing messages are buffered and merged.
+	 * @return Coalescing window in milliseconds, or zero if disabled.
+	 */
+	public long getCoalesceWindow() {
+		return coalescer != null ? coalescer.getWindow() : 0;
+	}
+	
+	/**
+	 * Sets the number of milliseconds outgoing messages are buffered and merged.
+	 * <p>
+	 * This affects every view of this provider created afterwards. Any buffered messages are transmitted.
+	 * @param window - coalescing window in milliseconds, or zero to disable coalescing.
+	 */
+	public void setCoalesceWindow(long window) {
+		if (window < 0)
+			throw new IllegalArgumentException("Window cannot be negative.");
+		
+		if (coalescer != null)
+			coalescer.flush();
+		coalescer = window > 0 ? new ChannelCoalescer(window) : null;
+	}
+	
+	/**
+	 * Transmits any buffered messages, if the coalescing window has elapsed.
+	 */
+	public void onTick() {
+		ChannelCoalescer current = coalescer;
+		
+		if (current != null)
+			current.onTick(System.currentTimeMillis());
+	}
+	
 	public List<String> getDefaultChannels() {
 		return defaultChannels;
 	}
@@ -30,17 +30,20 @@ public class Message {
 	private String text;
 	private List<String> channels;
 	
+	// Compiled text
+	private MessageTemplate template;
+	
 	// Default
 	public Message() {
 	}
 	
 	public Message(String text, String... channels) {
-		this.text = text;
+		setText(text);
 		this.channels = new ArrayList<String>(Arrays.asList(channels));
 	}
 	
 	public Message(String text, List<String> channels) {
-		this.text = text;
+		setText(text);
 		this.channels = channels;
 	}
 	
@@ -49,6 +52,15 @@ public class Message {
 	}
 	public void setText(String text) {
 		this.text = text;
+		this.template = MessageTemplate.compile(text);
+	}
+	
+	/**
+	 * Retrieves the compiled message text.
+	 * @return The compiled text, or NULL if the text is NULL.
+	 */
+	public MessageTemplate getTemplate() {
+		return template;
 	}
 	public List<String> getChannels() {
 		return channels;
@@ -22,16 +22,11 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.NullArgumentException;
 import org.apache.commons.lang.ObjectUtils;
-import org.apache.commons.lang.StringEscapeUtils;
-import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
-import com.comphenix.xp.parser.Utility;
 import com.comphenix.xp.rewards.ResourceHolder;
 
 public class MessageFormatter {
@@ -42,8 +37,6 @@ public class MessageFormatter {
 	private Collection<ResourceHolder> result;
 	private List<ResourceHolder> generated;
 	
-	private static Pattern parameterPattern = Pattern.compile("\\{\\w+\\}");
-	
 	// Default
 	public MessageFormatter() {
 		setCount(1);
@@ -63,77 +56,67 @@ public class MessageFormatter {
 	
 	/**
 	 * Replaces parameters in the text with their respective value.
+	 * <p>
+	 * Use {@link #formatMessage(MessageTemplate)} for messages that are sent more than once.
 	 * @param message - message to format.
 	 * @return Message with every parameter replaced with the corresponding value.
 	 */
 	public String formatMessage(String message) {
+		return formatMessage(MessageTemplate.compile(message));
+	}
+	
+	/**
+	 * Replaces parameters in the compiled message with their respective value.
+	 * @param template - compiled message to format.
+	 * @return Message with every parameter replaced with the corresponding value.
+	 */
+	public String formatMessage(MessageTemplate template) {
 		
-		if (message == null)
+		if (template == null)
 			return null;
 		
-		Map<String, ResourceHolder> lookup = getResultMapping();
+		// Guess the final length
+		StringBuilder output = new StringBuilder(template.literalLength + 16 * template.names.length);
+		output.append(template.literals[0]);
 		
-		StringBuffer output = new StringBuffer();
-	    Matcher matcher = parameterPattern.matcher(message);
-	    
-	    // Simple variables
-	    // TODO: Add more variables.
-	    String sourceText = source != null ? source.getDisplayName() : "Unknown";
-	    String countText = count != null ? count.toString() : "N/A";
-	    
-	    while (matcher.find()) {
-
-	    	String enumed = Utility.getEnumName(matcher.group());
-	    	
-	    	// Replace parameters
-	    	if (enumed.equals("PLAYER"))
-	    		matcher.appendReplacement(output, sourceText);
-	    	else if (enumed.equals("COUNT"))
-	    		matcher.appendReplacement(output, countText);
-	    	else if (lookup.containsKey(enumed)) 
-	    		matcher.appendReplacement(output, lookup.get(enumed).toString());
-	    	else 
-	    		matcher.appendReplacement(output, "{CANNOT FIND " + matcher.group() + "}");
-	    }
-
-		// Remember color
-		matcher.appendTail(output);
-		return formatUnescape(formatColor(output));
-	}
-
-	private String formatColor(StringBuffer input) {
-
-		// Treat ampersand as a color character
-		return translateAlternateColorCodes('&', input.toString());
-	}
-
-	private String formatUnescape(String input) {
-
-		return StringEscapeUtils.unescapeJava(input);
+		// Simple variables
+		// TODO: Add more variables.
+		for (int i = 0; i < template.names.length; i++) {
+			switch (template.types[i]) {
+			case PLAYER: 
+				output.append(source != null ? source.getDisplayName() : "Unknown");
+				break;
+			case COUNT:
+				output.append(count != null ? count.toString() : "N/A");
+				break;
+			default:
+				ResourceHolder resource = getResource(template.names[i]);
+				
+				if (resource != null)
+					output.append(resource.toString());
+				else
+					output.append("{CANNOT FIND ").append(template.groups[i]).append("}");
+			}
+			
+			output.append(template.literals[i + 1]);
+		}
+		
+		return output.toString();
 	}
 
-	// Don't translate color codes when the ampersand is escaped
-	private static String translateAlternateColorCodes(char altColorChar, String textToTranslate) {
-
-		boolean hasEscape = false;
-		char[] b = textToTranslate.toCharArray();
-
-		// Handle Java escaping as well
-		for (int i = 0; i < b.length - 1; i++) {
-			if (!hasEscape && b[i] == '\\') {
-				hasEscape = true;
-			} else if (!hasEscape && b[i] == altColorChar
-					&& "0123456789AaBbCcDdEeFfKkLlMmNnOoRr".indexOf(b[i + 1]) > -1) {
-				b[i] = ChatColor.COLOR_CHAR;
-				b[i + 1] = Character.toLowerCase(b[i + 1]);
-
-			} else {
-				hasEscape = false;
+	// Find the resource with the given name
+	private ResourceHolder getResource(String name) {
+		ResourceHolder found = null;
+		
+		if (result != null) {
+			for (ResourceHolder resource : result) {
+				if (name.equals(resource.getName()))
+					found = resource;
 			}
 		}
-		return new String(b);
+		return found;
 	}
-
+	
 	// Convert a list of resources into a Hash Table
 	private Map<String, ResourceHolder> getResultMapping() {
 		 Map<String, ResourceHolder> lookup = new HashMap<String, ResourceHolder>();
@@ -17,8 +17,12 @@
 
 package com.comphenix.xp.messages;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.bukkit.entity.Player;
 
@@ -30,6 +34,20 @@ public class MessagePlayerQueue implements PlayerCleanupListener {
 	
 	private Map<Player, MessageQueue> queues = new HashMap<Player, MessageQueue>();
 	
+	// Queues with pending messages, ordered by the time they can transmit
+	private PriorityQueue<MessageQueue> pending = new PriorityQueue<MessageQueue>(11, new Comparator<MessageQueue>() {
+		@Override
+		public int compare(MessageQueue a, MessageQueue b) {
+			long readyA = a.getReadyTime();
+			long readyB = b.getReadyTime();
+			
+			return readyA < readyB ? -1 : (readyA > readyB ? 1 : 0);
+		}
+	});
+	
+	// Queues to schedule again after the current tick
+	private List<MessageQueue> deferred = new ArrayList<MessageQueue>();
+	
 	private long messageDelay;
 	
 	private Debugger debugger;
@@ -72,6 +90,15 @@ public class MessagePlayerQueue implements PlayerCleanupListener {
 		
 		// Let the queue handle the rest
 		queue.enqueue(action, formatter);
+		schedule(queue);
+	}
+	
+	// Wait for the next message of the given queue
+	private void schedule(MessageQueue queue) {
+		if (!queue.scheduled && queue.hasMessages()) {
+			queue.scheduled = true;
+			pending.add(queue);
+		}
 	}
 	
 	/**
@@ -99,12 +126,40 @@ public class MessagePlayerQueue implements PlayerCleanupListener {
 	}
 
 	public void onTick() {
-		for (MessageQueue queue : queues.values()) 
-			queue.onTick();
+		
+		// Idle players cost nothing
+		if (pending.isEmpty())
+			return;
+		
+		long currentTime = System.currentTimeMillis();
+		
+		// Only process the queues that are due
+		while (!pending.isEmpty() && pending.peek().isReady(currentTime)) {
+			MessageQueue queue = pending.poll();
+			
+			queue.scheduled = false;
+			queue.onTick(currentTime);
+			
+			// The ready time has changed
+			if (queue.hasMessages()) {
+				deferred.add(queue);
+			}
+		}
+		
+		// Reschedule after the loop, so that a zero delay cannot spin forever
+		for (int i = 0; i < deferred.size(); i++) {
+			schedule(deferred.get(i));
+		}
+		deferred.clear();
 	}
 
 	@Override
 	public void removePlayerCache(Player player) {
-		queues.remove(player);
+		MessageQueue queue = queues.remove(player);
+		
+		if (queue != null && queue.scheduled) {
+			pending.remove(queue);
+			queue.scheduled = false;
+		}
 	}
 }
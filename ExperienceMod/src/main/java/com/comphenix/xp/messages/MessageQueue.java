@@ -17,26 +17,36 @@
 
 package com.comphenix.xp.messages;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang.NullArgumentException;
+import org.apache.commons.lang.ObjectUtils;
 import org.bukkit.entity.Player;
 
 import com.comphenix.xp.Action;
 import com.comphenix.xp.Debugger;
+import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.xp.CurrencyHolder;
+import com.comphenix.xp.rewards.xp.ExperienceHolder;
 
 public class MessageQueue {
 	
-	// Map of every message to send in the future
-	private Map<Action, MessageFormatter> lookup = new ConcurrentHashMap<Action, MessageFormatter>();
-	private Queue<Action> ordered = new ConcurrentLinkedQueue<Action>();
+	// Map of every message to send in the future, by rule ID and reward slots
+	private Map<RuleKey, Accumulator> lookup = new ConcurrentHashMap<RuleKey, Accumulator>();
+	private Queue<RuleKey> ordered = new ConcurrentLinkedQueue<RuleKey>();
 	
 	private long messageDelay;
 	private long lastMessageTime;
 	
+	// Whether or not this queue is waiting in a dispatch schedule
+	boolean scheduled;
+	
 	private Debugger debugger;
 	private Player player;
 	private ChannelProvider channelProvider;
@@ -73,25 +83,37 @@ public class MessageQueue {
 			return;
 		}
 		
+		// Copies of the same rule share their ID, but inherited rules may have different slots
+		RuleKey key = new RuleKey(action.getId(), action.getSlotNames());
+		Accumulator accumulator = lookup.get(key);
+		
 		// Enqueue the message
-		if (lookup.containsKey(action)) {
-			lookup.put(action, MessageFormatter.add(lookup.get(action), formatter));
+		if (accumulator != null) {
+			accumulator.add(formatter);
 		} else {
-			lookup.put(action, formatter);
-			ordered.add(action);
+			// The resources may be in a buffer that is reused by the next event
+			lookup.put(key, new Accumulator(action, copyResources(formatter)));
+			ordered.add(key);
 		}
 	}
 	
-	public void transmitt(Action action, MessageFormatter formatter) {
+	private MessageFormatter copyResources(MessageFormatter formatter) {
+		Collection<ResourceHolder> result = formatter.getResult();
+		List<ResourceHolder> generated = formatter.getGenerated();
 		
-		// Set debugger
-		action.setDebugger(debugger);
+		return formatter.createView(formatter.getSource(), 
+				result != null ? new ArrayList<ResourceHolder>(result) : null, 
+				generated != null ? new ArrayList<ResourceHolder>(generated) : null, 
+				formatter.getCount());
+	}
+	
+	public void transmitt(Action action, MessageFormatter formatter) {
 		
 		// Send as player or as a general message
 		if (hasPlayer())
-			action.emoteMessages(channelProvider, formatter, player);
+			action.emoteMessages(channelProvider, formatter, player, debugger);
 		else
-			action.announceMessages(channelProvider, formatter);
+			action.announceMessages(channelProvider, formatter, debugger);
 	}
 	
 	/**
@@ -115,7 +137,32 @@ public class MessageQueue {
 	 * @return TRUE if it can, FALSE if not.
 	 */
 	public boolean isReady() {
-		return (System.currentTimeMillis() - lastMessageTime) >= messageDelay;
+		return isReady(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Whether or not a message can be sent by this player at the given time.
+	 * @param currentTime - the current time in milliseconds.
+	 * @return TRUE if it can, FALSE if not.
+	 */
+	public boolean isReady(long currentTime) {
+		return (currentTime - lastMessageTime) >= messageDelay;
+	}
+	
+	/**
+	 * Retrieves the earliest time the next message can be sent.
+	 * @return The earliest time in milliseconds.
+	 */
+	public long getReadyTime() {
+		return lastMessageTime + messageDelay;
+	}
+	
+	/**
+	 * Whether or not there are any messages waiting to be transmitted.
+	 * @return TRUE if there are, FALSE otherwise.
+	 */
+	public boolean hasMessages() {
+		return !ordered.isEmpty();
 	}
 	
 	public ChannelProvider getChannelProvider() {
@@ -134,17 +181,206 @@ public class MessageQueue {
 	 * Performs message transmissions, if it's ready.
 	 */
 	public void onTick() {
+		onTick(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Performs message transmissions, if it's ready at the given time.
+	 * @param currentTime - the current time in milliseconds.
+	 */
+	public void onTick(long currentTime) {
 
 		// See if we have any messages to transmit
-		if (ordered.size() > 0 && isReady()) {
+		if (!ordered.isEmpty() && isReady(currentTime)) {
 			
 			// Always choose the oldest message/composite message
-			Action oldest = ordered.poll();
+			Accumulator oldest = lookup.remove(ordered.poll());
 			
 			// Transmit and clean up
-			transmitt(oldest, lookup.get(oldest));
-			lookup.remove(oldest);
-			lastMessageTime = System.currentTimeMillis();
+			transmitt(oldest.action, oldest.getFormatter());
+			lastMessageTime = currentTime;
+		}
+	}
+	
+	/**
+	 * Identifies the messages that can be summed together.
+	 * <p>
+	 * Generated rewards are summed slot by slot, so the rewards must be in the same slots.
+	 * 
+	 * @author Kristian
+	 */
+	private static class RuleKey {
+		
+		private final int id;
+		private final List<String> slots;
+		
+		public RuleKey(int id, List<String> slots) {
+			this.id = id;
+			this.slots = slots;
+		}
+		
+		@Override
+		public int hashCode() {
+			return id * 31 + slots.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof RuleKey))
+				return false;
+			
+			RuleKey other = (RuleKey) obj;
+			return id == other.id && slots.equals(other.slots);
+		}
+	}
+	
+	/**
+	 * Sums every message of a single rule until it is transmitted.
+	 * <p>
+	 * Nothing is copied until a second message arrives.
+	 * 
+	 * @author Kristian
+	 */
+	private static class Accumulator {
+		
+		private final Action action;
+		private final MessageFormatter first;
+		
+		// Sums of every message, or NULL if there is only the first message
+		private List<ResourceSum> result;
+		private List<ResourceSum> generated;
+		private int count;
+		
+		public Accumulator(Action action, MessageFormatter first) {
+			this.action = action;
+			this.first = first;
+		}
+		
+		public synchronized void add(MessageFormatter formatter) {
+			
+			if (!ObjectUtils.equals(first.getSource(), formatter.getSource()))
+				throw new IllegalArgumentException("Message formatters for different players cannot be added.");
+			
+			// Start summing
+			if (result == null) {
+				result = new ArrayList<ResourceSum>();
+				generated = new ArrayList<ResourceSum>();
+				addFormatter(first);
+			}
+			addFormatter(formatter);
+		}
+		
+		private void addFormatter(MessageFormatter formatter) {
+			
+			Integer added = formatter.getCount();
+			
+			if (added != null)
+				count += added;
+			
+			// Merge resources
+			if (formatter.getResult() != null) {
+				for (ResourceHolder resource : formatter.getResult()) {
+					addResult(resource);
+				}
+			}
+			
+			List<ResourceHolder> adding = formatter.getGenerated();
+			
+			// Merge generated, slot by slot
+			if (adding != null) {
+				for (int i = 0; i < adding.size(); i++) {
+					ResourceHolder resource = adding.get(i);
+					
+					// Elements outside the list are treated as empty
+					if (i >= generated.size())
+						generated.add(resource != null ? new ResourceSum(resource) : null);
+					else if (generated.get(i) == null)
+						generated.set(i, resource != null ? new ResourceSum(resource) : null);
+					else if (resource != null)
+						generated.get(i).add(resource);
+				}
+			}
+		}
+		
+		private void addResult(ResourceHolder resource) {
+			String name = resource.getName();
+			
+			for (ResourceSum sum : result) {
+				if (sum.getName().equals(name)) {
+					sum.add(resource);
+					return;
+				}
+			}
+			result.add(new ResourceSum(resource));
+		}
+		
+		public synchronized MessageFormatter getFormatter() {
+			if (result == null)
+				return first;
+			else
+				return first.createView(first.getSource(), toHolders(result), toHolders(generated), count);
+		}
+		
+		private static List<ResourceHolder> toHolders(List<ResourceSum> sums) {
+			List<ResourceHolder> holders = new ArrayList<ResourceHolder>(sums.size());
+			
+			for (ResourceSum sum : sums) {
+				holders.add(sum != null ? sum.getHolder() : null);
+			}
+			return holders;
+		}
+	}
+	
+	/**
+	 * A running sum of a single resource.
+	 * <p>
+	 * Experience and currency are summed in place, so only a single holder is created when the message 
+	 * is sent. Any other resource is merged with {@link ResourceHolder#add(ResourceHolder)} as before.
+	 * 
+	 * @author Kristian
+	 */
+	private static class ResourceSum {
+		
+		private ResourceHolder holder;
+		private int amount;
+		
+		public ResourceSum(ResourceHolder holder) {
+			this.holder = holder;
+			this.amount = holder.getAmount();
+		}
+		
+		public String getName() {
+			return holder.getName();
+		}
+		
+		public void add(ResourceHolder resource) {
+			
+			// Both are plain amounts of the same resource
+			if (isNumeric(holder) && resource.getClass() == holder.getClass()) {
+				amount += resource.getAmount();
+			} else {
+				holder = getHolder().add(resource);
+				amount = holder.getAmount();
+			}
+		}
+		
+		public ResourceHolder getHolder() {
+			
+			// Create the sum, if it has changed
+			if (isNumeric(holder) && amount != holder.getAmount()) {
+				if (holder.getClass() == ExperienceHolder.class)
+					holder = new ExperienceHolder(amount);
+				else
+					holder = new CurrencyHolder(amount);
+			}
+			return holder;
+		}
+		
+		private static boolean isNumeric(ResourceHolder holder) {
+			return holder.getClass() == ExperienceHolder.class || 
+				   holder.getClass() == CurrencyHolder.class;
 		}
 	}
 }
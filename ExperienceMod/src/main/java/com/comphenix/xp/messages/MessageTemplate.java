@@ -0,0 +1,167 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+
+package com.comphenix.xp.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.bukkit.ChatColor;
+
+import com.comphenix.xp.parser.Utility;
+
+/**
+ * Represents message text that has been split into literal segments and parameters.
+ * <p>
+ * Color codes and escape sequences in the literal segments are translated once, when the template is
+ * compiled. Parameter values are inserted as they are.
+ * 
+ * @author Kristian
+ */
+public class MessageTemplate {
+
+	/**
+	 * The different kinds of parameters.
+	 * 
+	 * @author Kristian
+	 */
+	enum ParameterType {
+		PLAYER,
+		COUNT,
+		RESOURCE
+	}
+	
+	private static Pattern parameterPattern = Pattern.compile("\\{\\w+\\}");
+	
+	private final String text;
+	
+	// Translated text before, between and after every parameter
+	final String[] literals;
+	
+	// Every parameter, in order
+	final ParameterType[] types;
+	final String[] names;
+	final String[] groups;
+	
+	// Total length of every literal
+	final int literalLength;
+	
+	private MessageTemplate(String text, List<String> literals, List<String> groups) {
+		this.text = text;
+		this.literals = literals.toArray(new String[0]);
+		this.groups = groups.toArray(new String[0]);
+		this.names = new String[this.groups.length];
+		this.types = new ParameterType[this.groups.length];
+		
+		int length = 0;
+		
+		for (String literal : this.literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+		
+		// Resolve every parameter
+		for (int i = 0; i < this.groups.length; i++) {
+			String enumed = Utility.getEnumName(this.groups[i]);
+			
+			if (enumed.equals("PLAYER"))
+				types[i] = ParameterType.PLAYER;
+			else if (enumed.equals("COUNT"))
+				types[i] = ParameterType.COUNT;
+			else
+				types[i] = ParameterType.RESOURCE;
+			names[i] = enumed;
+		}
+	}
+	
+	/**
+	 * Compiles the given message text.
+	 * @param text - the message text.
+	 * @return The compiled template, or NULL if the text is NULL.
+	 */
+	public static MessageTemplate compile(String text) {
+		
+		if (text == null)
+			return null;
+		
+		List<String> literals = new ArrayList<String>();
+		List<String> groups = new ArrayList<String>();
+		
+		Matcher matcher = parameterPattern.matcher(text);
+		int last = 0;
+		
+		while (matcher.find()) {
+			literals.add(translate(text.substring(last, matcher.start())));
+			groups.add(matcher.group());
+			last = matcher.end();
+		}
+		
+		literals.add(translate(text.substring(last)));
+		return new MessageTemplate(text, literals, groups);
+	}
+	
+	/**
+	 * Retrieves the original message text.
+	 * @return The message text.
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * Retrieves the number of parameters in this template.
+	 * @return Number of parameters.
+	 */
+	public int getParameterCount() {
+		return groups.length;
+	}
+	
+	private static String translate(String literal) {
+		// Treat ampersand as a color character
+		return StringEscapeUtils.unescapeJava(translateAlternateColorCodes('&', literal));
+	}
+	
+	// Don't translate color codes when the ampersand is escaped
+	private static String translateAlternateColorCodes(char altColorChar, String textToTranslate) {
+
+		boolean hasEscape = false;
+		char[] b = textToTranslate.toCharArray();
+
+		// Handle Java escaping as well
+		for (int i = 0; i < b.length - 1; i++) {
+			if (!hasEscape && b[i] == '\\') {
+				hasEscape = true;
+			} else if (!hasEscape && b[i] == altColorChar
+					&& "0123456789AaBbCcDdEeFfKkLlMmNnOoRr".indexOf(b[i + 1]) > -1) {
+				b[i] = ChatColor.COLOR_CHAR;
+				b[i + 1] = Character.toLowerCase(b[i + 1]);
+
+			} else {
+				hasEscape = false;
+			}
+		}
+		return new String(b);
+	}
+	
+	@Override
+	public String toString() {
+		return text;
+	}
+}
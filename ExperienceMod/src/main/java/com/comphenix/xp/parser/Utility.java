@@ -46,11 +46,24 @@ public class Utility {
     public static String getEnumName(String text) {
     	if (text == null)
     		return "";
+    	else if (isEnumName(text))
+    		return text;
     	
 		String filtered = text.toUpperCase();
 		return filtered.replaceAll("\\s+", "_").replaceAll("\\W", "");
 	}
     
+    // Determines if the given text is already normalized
+    private static boolean isEnumName(String text) {
+    	for (int i = 0; i < text.length(); i++) {
+    		char c = text.charAt(i);
+    		
+    		if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '_')
+    			return false;
+    	}
+    	return true;
+    }
+    
 	public static String formatBoolean(String booleanName, List<Boolean> value) {
 		// Mirror the query syntax
 		if (value == null || value.isEmpty() || value.contains(null))
@@ -75,7 +75,7 @@ public class LevelsSectionParser extends SectionParser<LevelingRate> {
 					public double applyFunction(double... args) {
 						return Math.round(args[0]);
 					}
-				}).withVariableNames("level").build();
+				}).withVariableNames("level").compile();
 				
 				// Store this expression
 				rate.put(range.getMinimum(), range.getMaximum(), func);
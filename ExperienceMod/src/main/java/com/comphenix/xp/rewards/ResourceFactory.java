@@ -2,6 +2,7 @@ package com.comphenix.xp.rewards;
 
 import java.util.Collection;
 import java.util.Random;
+import java.util.Set;
 
 import com.comphenix.xp.expressions.NamedParameter;
 import com.comphenix.xp.lookup.Multipliable;
@@ -52,4 +53,10 @@ public interface ResourceFactory extends Multipliable<ResourceFactory> {
 	 * @return A resource holder.
 	 */
 	public ResourceHolder getMaximum(Collection<NamedParameter> params, int count);
+	
+	/**
+	 * Retrieves the name of every named parameter that may be used to compute the amount of resources.
+	 * @return Set of parameter names.
+	 */
+	public Set<String> getVariableNames();
 }
@@ -0,0 +1,131 @@
+/*
+ *  ExperienceMod - Bukkit server plugin for modifying the experience system in Minecraft.
+ *  Copyright (C) 2012 Kristian S. Stangeland
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ *  the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with this program; 
+ *  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 
+ *  02111-1307 USA
+ */
+
+package com.comphenix.xp.rewards;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Represents an array-backed list of resources, indexed by the reward slot of an action.
+ * <p>
+ * A buffer belongs to a single reward event. It may be filled, checked, rewarded and passed on to
+ * the message queue without creating any additional collections, and then reused by the next event.
+ * The message queue copies the buffer if it has to delay a message. Empty slots are NULL.
+ *
+ * @author Kristian
+ */
+public class RewardBuffer extends AbstractList<ResourceHolder> implements RandomAccess {
+
+	private static final ResourceHolder[] EMPTY = new ResourceHolder[0];
+
+	private ResourceHolder[] slots;
+	private int size;
+
+	/**
+	 * Constructs an empty buffer.
+	 */
+	public RewardBuffer() {
+		this.slots = EMPTY;
+	}
+
+	/**
+	 * Constructs an empty buffer that can hold the given number of slots without growing.
+	 * @param capacity - the initial capacity.
+	 */
+	public RewardBuffer(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Capacity cannot be negative.");
+		this.slots = capacity > 0 ? new ResourceHolder[capacity] : EMPTY;
+	}
+
+	/**
+	 * Clears the buffer and resizes it to the given number of empty slots.
+	 * @param size - the new number of slots.
+	 */
+	public void reset(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("Size cannot be negative.");
+
+		ensureCapacity(size);
+
+		// Don't keep any old resources alive
+		Arrays.fill(slots, 0, Math.max(size, this.size), null);
+		this.size = size;
+		modCount++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > slots.length) {
+			slots = Arrays.copyOf(slots, Math.max(capacity, slots.length * 2));
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	@Override
+	public ResourceHolder get(int index) {
+		checkIndex(index);
+		return slots[index];
+	}
+
+	@Override
+	public ResourceHolder set(int index, ResourceHolder element) {
+		checkIndex(index);
+
+		ResourceHolder previous = slots[index];
+		slots[index] = element;
+		return previous;
+	}
+
+	@Override
+	public void add(int index, ResourceHolder element) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		ensureCapacity(size + 1);
+		System.arraycopy(slots, index, slots, index + 1, size - index);
+		slots[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public ResourceHolder remove(int index) {
+		checkIndex(index);
+
+		ResourceHolder previous = slots[index];
+		System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+		slots[--size] = null;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		reset(0);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
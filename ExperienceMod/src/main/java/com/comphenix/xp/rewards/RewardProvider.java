@@ -18,6 +18,7 @@
 package com.comphenix.xp.rewards;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.lang.NullArgumentException;
 
@@ -39,6 +40,9 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 	private transient HashMap<RewardTypes, RewardService> enumLookup;
 	private Configuration configuration;
 	
+	// Configuration specific services, or NULL if they must be created again
+	private transient volatile ResolvedServices resolved;
+	
 	public RewardProvider() {
 		// Default constructor
 		super("EXPERIENCE");
@@ -67,14 +71,24 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 			return getByName(defaultServiceName);
 		
 		// Add configuration here too
-		return getConfigSpecific(enumLookup.get(rewardType));
+		if (configuration != null)
+			return getResolved().types[rewardType.ordinal()];
+		else
+			return enumLookup.get(rewardType);
 	}
 	
 	@Override
 	public RewardService getByName(String rewardName) {
+		if (rewardName == null)
+			throw new NullArgumentException("rewardName");
+		else if (configuration == null)
+			return super.getByName(rewardName);
 		
 		// Add configuration
-		return getConfigSpecific(super.getByName(rewardName));
+		if (rewardName.equalsIgnoreCase(defaultServiceName))
+			return getResolved().names.get(getDefaultName());
+		else
+			return getResolved().names.get(rewardName);
 	}
 	
 	@Override
@@ -92,7 +106,10 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 		}
 		
 		// Register with name
-		return super.register(reward);
+		RewardService previous = super.register(reward);
+		
+		resolved = null;
+		return previous;
 	}
 	
 	/**
@@ -106,13 +123,15 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 		if (rewardType == RewardTypes.CUSTOM)
 			throw new IllegalArgumentException(ERROR_CUSTOM_UNSUPPORTED);
 		if (rewardType == RewardTypes.DEFAULT)
-			return super.unregister(defaultServiceName);
+			return unregister(getDefaultName());
 		
 		RewardService removed = enumLookup.remove(rewardType);
 		
 		// Make sure to remove it from the name list too
 		if (removed != null)
 			super.unregister(removed);
+		
+		resolved = null;
 		return removed;
 	}
 	
@@ -121,8 +140,21 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 
 		RewardService removed = super.unregister(rewardName);
 		
-		if (!removed.getRewardType().isSpecialMarker())
+		if (removed != null && !removed.getRewardType().isSpecialMarker())
 			enumLookup.remove(removed.getRewardType());
+		
+		resolved = null;
+		return removed;
+	}
+	
+	@Override
+	public RewardService unregister(RewardService reward) {
+		RewardService removed = super.unregister(reward);
+		
+		if (removed != null && enumLookup.get(removed.getRewardType()) == removed)
+			enumLookup.remove(removed.getRewardType());
+		
+		resolved = null;
 		return removed;
 	}
 	
@@ -141,14 +173,29 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 	}
 	
 	// Make sure the reward manager has the correct configuration associated with it
-	private RewardService getConfigSpecific(RewardService reward) {
+	private ResolvedServices getResolved() {
+		ResolvedServices current = resolved;
 		
-		if (reward == null)
-			return null;
-		else if (configuration != null)
-			return reward.clone(configuration);
-		else 
-			return reward;
+		// Clone every service once for the current configuration
+		if (current == null) {
+			current = new ResolvedServices();
+			
+			for (Map.Entry<String, RewardService> entry : nameLookup.entrySet()) {
+				current.names.put(entry.getKey(), entry.getValue().clone(configuration));
+			}
+			
+			for (Map.Entry<RewardTypes, RewardService> entry : enumLookup.entrySet()) {
+				RewardService service = current.names.get(entry.getValue().getServiceName());
+				
+				// Should not happen, but just in case
+				if (service == null)
+					service = entry.getValue().clone(configuration);
+				current.types[entry.getKey().ordinal()] = service;
+			}
+			
+			resolved = current;
+		}
+		return current;
 	}
 	
 	/**
@@ -189,5 +236,16 @@ public class RewardProvider extends ServiceProvider<RewardService> {
 	 */
 	public void setConfiguration(Configuration configuration) {
 		this.configuration = configuration;
+		this.resolved = null;
+	}
+	
+	/**
+	 * Every registered service, cloned with the settings of a given configuration.
+	 * 
+	 * @author Kristian
+	 */
+	private static class ResolvedServices {
+		private final RewardService[] types = new RewardService[RewardTypes.values().length];
+		private final Map<String, RewardService> names = new HashMap<String, RewardService>();
 	}
 }
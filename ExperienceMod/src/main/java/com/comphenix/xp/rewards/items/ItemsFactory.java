@@ -2,8 +2,10 @@ package com.comphenix.xp.rewards.items;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.lang.NullArgumentException;
 import org.apache.commons.lang.StringUtils;
@@ -53,6 +55,14 @@ public class ItemsFactory implements ResourceFactory {
 	}
 	
 	private double getMaximum(VariableFunction range) {
+		// Static bounds cover every parameter value, so only use them when there are no parameters
+		if (range.getVariableNames().isEmpty()) {
+			double maximum = range.getMaximum();
+			
+			if (!Double.isInfinite(maximum) && !Double.isNaN(maximum))
+				return maximum;
+		}
+		
 		try {
 			// Estimate the maximum
 			return range.apply(ConstantRandom.MAXIMUM, null);
@@ -129,6 +139,16 @@ public class ItemsFactory implements ResourceFactory {
 		return getResource(params, ConstantRandom.MAXIMUM, count);
 	}
 	
+	@Override
+	public Set<String> getVariableNames() {
+		Set<String> names = new HashSet<String>();
+		
+		for (Entry entry : entries) {
+			names.addAll(entry.getRange().getVariableNames());
+		}
+		return names;
+	}
+	
 	@Override
 	public String toString() {
 		return StringUtils.join(entries, ", ");
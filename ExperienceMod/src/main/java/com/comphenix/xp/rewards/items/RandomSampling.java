@@ -2,9 +2,12 @@ package com.comphenix.xp.rewards.items;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.NullArgumentException;
 
+import com.comphenix.xp.extra.FastRandom;
+
 /**
  * Utility methods for randomly sampling elements from a list.
  * 
@@ -12,20 +15,84 @@ import org.apache.commons.lang.NullArgumentException;
  */
 public class RandomSampling {
 
+	/**
+	 * The generator of the current thread, and the seed generation it was created in.
+	 */
+	private static class ThreadRandom {
+		private final FastRandom random;
+		private int generation;
+		
+		public ThreadRandom(FastRandom random, int generation) {
+			this.random = random;
+			this.generation = generation;
+		}
+	}
+	
+	// Source of seeds for every new generator
+	private static final AtomicLong seedSource = new AtomicLong(System.nanoTime());
+	
+	// Incremented every time the seed is changed
+	private static volatile int generation;
+	
 	// Thread local random variable
-    private static final ThreadLocal<Random> safeRandom = new ThreadLocal<Random>() {
-        @Override 
-        protected Random initialValue() {
-            return new Random();
-        }
+	private static final ThreadLocal<ThreadRandom> safeRandom = new ThreadLocal<ThreadRandom>() {
+		@Override 
+		protected ThreadRandom initialValue() {
+			return new ThreadRandom(createRandom(), generation);
+		}
 	};
 	
 	/**
 	 * Retrieves a thread-local random number generator.
+	 * <p>
+	 * The generator is not synchronized, and must not be shared with other threads.
 	 * @return Thread-local random number generator.
 	 */
 	public static Random getThreadRandom() {
-		return safeRandom.get();
+		ThreadRandom current = safeRandom.get();
+		int latest = generation;
+		
+		// Restart the sequence if the seed has changed
+		if (current.generation != latest) {
+			current.random.setSeed(nextSeed());
+			current.generation = latest;
+		}
+		return current.random;
+	}
+	
+	/**
+	 * Constructs a new unsynchronized random number generator.
+	 * <p>
+	 * In deterministic mode, the sequence of generators returned by this method is determined by the seed.
+	 * @return A new random number generator.
+	 */
+	public static FastRandom createRandom() {
+		return new FastRandom(nextSeed());
+	}
+	
+	/**
+	 * Makes every random number generator deterministic, starting from the given seed.
+	 * <p>
+	 * Existing thread-local generators will be reseeded the next time they are retrieved, 
+	 * in the order they are retrieved. This is mostly useful for testing.
+	 * @param seed - the new seed.
+	 */
+	public static synchronized void setSeed(long seed) {
+		seedSource.set(seed);
+		generation++;
+	}
+	
+	/**
+	 * Restore the default mode, where every random number generator is seeded by the system clock.
+	 */
+	public static synchronized void clearSeed() {
+		seedSource.set(System.nanoTime());
+		generation++;
+	}
+	
+	private static long nextSeed() {
+		// Seeds are well distributed, even if the source isn't
+		return FastRandom.mix(seedSource.getAndIncrement());
 	}
 	
 	/**
@@ -61,6 +128,6 @@ public class RandomSampling {
 		if (list == null || list.size() == 0)
 			return defaultValue;
 		else
-			return list.get(safeRandom.get().nextInt(list.size()));
+			return list.get(getThreadRandom().nextInt(list.size()));
 	}
 }
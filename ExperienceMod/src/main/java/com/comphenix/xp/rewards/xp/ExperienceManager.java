@@ -18,7 +18,6 @@
 package com.comphenix.xp.rewards.xp;
 
 import java.lang.ref.WeakReference;
-import java.util.Arrays;
 
 import org.bukkit.entity.Player;
 
@@ -32,24 +31,22 @@ import org.bukkit.entity.Player;
  * has enchanted something.
  * 
  * Modified by Comphenix.
+ * <p>
+ * Level and experience conversions use the closed-form formulas for MC 1.3 and later, and are safe to 
+ * call from any thread. Every player operation is also available as a static method, so callers don't 
+ * need to create a manager per event.
  */
 public class ExperienceManager {
-	// this is to stop the lookup tables growing without control
-	private static int hardMaxLevel = 100000;
-
-	private static int xpRequiredForNextLevel[];
-	private static int xpTotalToReachLevel[];
+	// this is to stop the levels growing without control
+	private static volatile int hardMaxLevel = 100000;
 
+	// Total experience at the start of each leveling formula
+	private static final int LEVEL_16_TOTAL = 272;
+	private static final int LEVEL_31_TOTAL = 887;
+	
 	private final WeakReference<Player> player;
 	private final String playerName;
 
-	static {
-		// 25 is an arbitrary value for the initial table size - the actual
-		// value isn't critically
-		// important since the tables are resized as needed.
-		initLookupTables(25);
-	}
-
 	/**
 	 * Create a new ExperienceManager for the given player.
 	 * 
@@ -71,56 +68,6 @@ public class ExperienceManager {
 		ExperienceManager.hardMaxLevel = hardMaxLevel;
 	}
 
-	/**
-	 * Initialize the XP lookup tables. Basing this on observations noted in
-	 * https://bukkit.atlassian.net/browse/BUKKIT-47
-	 * 
-	 * 7 XP to get to level 1, 17 to level 2, 31 to level 3... At each level,
-	 * the increment to get to the next level increases alternately by 3 and 4
-	 * 
-	 * @param maxLevel The highest level handled by the lookup tables
-	 */
-	private static void initLookupTables(int maxLevel) {
-		xpRequiredForNextLevel = new int[maxLevel];
-		xpTotalToReachLevel = new int[maxLevel];
-
-		xpTotalToReachLevel[0] = 0;
-
-		// Valid for MC 1.3 and later
-		int incr = 17;
-		for (int i = 1; i < xpTotalToReachLevel.length; i++) {
-			xpRequiredForNextLevel[i - 1] = incr;
-			xpTotalToReachLevel[i] = xpTotalToReachLevel[i - 1] + incr;
-			if (i >= 31) {
-				incr += 7;
-			} else if (i >= 16) {
-				incr += 3;
-			}
-		}
-		xpRequiredForNextLevel[xpRequiredForNextLevel.length - 1] = incr;
-	}
-
-	/**
-	 * Calculate the level that the given XP quantity corresponds to, without
-	 * using the lookup tables. This is needed if getLevelForExp() is called
-	 * with an XP quantity beyond the range of the existing lookup tables.
-	 * 
-	 * @param exp
-	 * @return
-	 */
-	private static int calculateLevelForExp(int exp) {
-		int level = 0;
-		int curExp = 7; // level 1
-		int incr = 10;
-		
-		while (curExp <= exp) {
-			curExp += incr;
-			level++;
-			incr += (level % 2 == 0) ? 3 : 4;
-		}
-		return level;
-	}
-
 	/**
 	 * Get the Player associated with this ExperienceManager.
 	 * 
@@ -144,7 +91,7 @@ public class ExperienceManager {
 	 * @param amt Amount of XP, may be negative
 	 */
 	public void changeExp(int amt) {
-		changeExp((double) amt);
+		changeExp(getPlayer(), (double) amt);
 	}
 	
 	/**
@@ -155,7 +102,17 @@ public class ExperienceManager {
 	 * @param amt Amount of XP, may be negative
 	 */
 	public void changeExp(double amt) {
-		setExp(getCurrentFractionalXP(), amt);
+		changeExp(getPlayer(), amt);
+	}
+	
+	/**
+	 * Adjust the given player's XP by the given amount in an intelligent fashion.
+	 * 
+	 * @param player The player to modify.
+	 * @param amt Amount of XP, may be negative
+	 */
+	public static void changeExp(Player player, double amt) {
+		setExp(player, getCurrentFractionalXP(player), amt);
 	}
 
 	/**
@@ -164,7 +121,7 @@ public class ExperienceManager {
 	 * @param amt Amount of XP, should not be negative
 	 */
 	public void setExp(int amt) {
-		setExp(0, amt);
+		setExp(getPlayer(), 0, amt);
 	}
 
 	/**
@@ -173,16 +130,15 @@ public class ExperienceManager {
 	 * @param amt Amount of XP, should not be negative
 	 */
 	public void setExp(double amt) {
-		setExp(0, amt);
+		setExp(getPlayer(), 0, amt);
 	}
 	
-	private void setExp(double base, double amt) {
+	private static void setExp(Player player, double base, double amt) {
 		int xp = (int) (base + amt);
 		
 		if (xp < 0)
 			xp = 0;
 
-		Player player = getPlayer();
 		int curLvl = player.getLevel();
 		int newLvl = getLevelForExp(xp);
 		
@@ -195,7 +151,7 @@ public class ExperienceManager {
 			player.setTotalExperience(player.getTotalExperience() + xp - (int)base);
 		}
 
-		double pct = (base - getXpForLevel(newLvl) + amt) / (double) (xpRequiredForNextLevel[newLvl]);
+		double pct = (base - getXpForLevel(newLvl) + amt) / (double) getXpNeededToLevelUp(newLvl);
 		player.setExp((float) pct);
 	}
 
@@ -205,22 +161,29 @@ public class ExperienceManager {
 	 * @return the player's total XP
 	 */
 	public int getCurrentExp() {
-		Player player = getPlayer();
-		
+		return getCurrentExp(getPlayer());
+	}
+	
+	/**
+	 * Get the given player's current XP total.
+	 * 
+	 * @param player The player to check.
+	 * @return the player's total XP
+	 */
+	public static int getCurrentExp(Player player) {
 		int lvl = player.getLevel();
-		int cur = getXpForLevel(lvl) + (int) Math.round(xpRequiredForNextLevel[lvl] * player.getExp());
+		int cur = getXpForLevel(lvl) + (int) Math.round(getXpNeededToLevelUp(lvl) * player.getExp());
 		return cur;
 	}
 	
 	/**
 	 * Get the player's current fractional XP.
+	 * @param player The player to check.
 	 * @return The player's total XP with fractions.
 	 */
-	private double getCurrentFractionalXP() {
-		Player player = getPlayer();
-		
+	private static double getCurrentFractionalXP(Player player) {
 		int lvl = player.getLevel();
-		double cur = getXpForLevel(lvl) + (double) (xpRequiredForNextLevel[lvl] * player.getExp());
+		double cur = getXpForLevel(lvl) + (double) (getXpNeededToLevelUp(lvl) * player.getExp());
 		return cur;
 	}
 
@@ -241,7 +204,18 @@ public class ExperienceManager {
 	 * @return true if the player has enough XP, false otherwise
 	 */
 	public boolean hasExp(double amt) {
-		return getCurrentFractionalXP() >= amt;
+		return hasExp(getPlayer(), amt);
+	}
+	
+	/**
+	 * Checks if the given player has the given amount of fractional XP.
+	 * 
+	 * @param player The player to check.
+	 * @param amt The amount to check for.
+	 * @return true if the player has enough XP, false otherwise
+	 */
+	public static boolean hasExp(Player player, double amt) {
+		return getCurrentFractionalXP(player) >= amt;
 	}
 	
 	/**
@@ -250,20 +224,33 @@ public class ExperienceManager {
 	 * @param exp The amount to check for.
 	 * @return The level that a player with this amount total XP would be.
 	 */
-	public int getLevelForExp(int exp) {
+	public static int getLevelForExp(int exp) {
 		if (exp <= 0)
 			return 0;
-		if (exp > xpTotalToReachLevel[xpTotalToReachLevel.length - 1]) {
-			// need to extend the lookup tables
-			int newMax = calculateLevelForExp(exp) * 2;
-			if (newMax > hardMaxLevel) {
-				throw new IllegalArgumentException("Level for exp " + exp + " > hard max level "
-						+ hardMaxLevel);
-			}
-			initLookupTables(newMax);
+		
+		double estimate;
+		
+		// Invert the total experience formulas
+		if (exp < LEVEL_16_TOTAL)
+			return exp / 17;
+		else if (exp < LEVEL_31_TOTAL)
+			estimate = (59 + Math.sqrt(24.0 * exp - 5159)) / 6;
+		else
+			estimate = (303 + Math.sqrt(56.0 * exp - 32511)) / 14;
+		
+		int level = (int) estimate;
+		
+		// Correct any rounding errors
+		while (level > 0 && getTotalExp(level) > exp)
+			level--;
+		while (getTotalExp(level + 1) <= exp)
+			level++;
+		
+		if (level > hardMaxLevel) {
+			throw new IllegalArgumentException("Level for exp " + exp + " > hard max level "
+					+ hardMaxLevel);
 		}
-		int pos = Arrays.binarySearch(xpTotalToReachLevel, exp);
-		return pos < 0 ? -pos - 2 : pos;
+		return level;
 	}
 
 	/**
@@ -271,13 +258,17 @@ public class ExperienceManager {
 	 * @param level - level to check.
 	 * @return The amount of experience at this level in the level bar.
 	 */
-	public int getXpNeededToLevelUp(int level) {
+	public static int getXpNeededToLevelUp(int level) {
 		if (level < 0)
 			throw new IllegalArgumentException("Level cannot be negative.");
 		
-		// Initialize lookup tables
-		getXpForLevel(level);
-		return xpRequiredForNextLevel[level];
+		// Valid for MC 1.3 and later
+		if (level >= 31)
+			return 7 * level - 148;
+		else if (level >= 16)
+			return 3 * level - 28;
+		else
+			return 17;
 	}
 	
 	/**
@@ -286,15 +277,24 @@ public class ExperienceManager {
 	 * @param level The level to check for.
 	 * @return The amount of XP needed for the level.
 	 */
-	public int getXpForLevel(int level) {
+	public static int getXpForLevel(int level) {
 		if (level > hardMaxLevel) {
 			throw new IllegalArgumentException("Level " + level + " > hard max level "
 					+ hardMaxLevel);
 		}
-
-		if (level >= xpTotalToReachLevel.length) {
-			initLookupTables(level * 2);
-		}
-		return xpTotalToReachLevel[level];
+		if (level < 0)
+			throw new IllegalArgumentException("Level cannot be negative.");
+		
+		return (int) Math.min(getTotalExp(level), Integer.MAX_VALUE);
+	}
+	
+	// Total experience needed to reach the given level
+	private static long getTotalExp(long level) {
+		if (level >= 31)
+			return (7 * level * level - 303 * level + 4440) / 2;
+		else if (level >= 16)
+			return (3 * level * level - 59 * level + 720) / 2;
+		else
+			return 17 * level;
 	}
-}
\ No newline at end of file
+}
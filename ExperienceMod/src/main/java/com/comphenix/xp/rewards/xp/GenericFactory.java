@@ -2,6 +2,7 @@ package com.comphenix.xp.rewards.xp;
 
 import java.util.Collection;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.lang.NullArgumentException;
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -45,14 +46,40 @@ public abstract class GenericFactory implements ResourceFactory {
 	
 	@Override
 	public ResourceHolder getMinimum(Collection<NamedParameter> params, int count) {
+		// Static bounds cover every parameter value, so only use them when there are no parameters
+		if (isParameterFree()) {
+			double minimum = getRange().getMinimum();
+			
+			if (isBounded(minimum))
+				return constructFactory((int) (minimum * count));
+		}
 		return getResource(params, ConstantRandom.MINIMUM, count);
 	}
 
 	@Override
 	public ResourceHolder getMaximum(Collection<NamedParameter> params, int count) {
+		if (isParameterFree()) {
+			double maximum = getRange().getMaximum();
+			
+			if (isBounded(maximum))
+				return constructFactory((int) (maximum * count));
+		}
 		return getResource(params, ConstantRandom.MAXIMUM, count);
 	}
+	
+	private boolean isParameterFree() {
+		return getRange().getVariableNames().isEmpty();
+	}
+	
+	private boolean isBounded(double value) {
+		return !Double.isInfinite(value) && !Double.isNaN(value);
+	}
 
+	@Override
+	public Set<String> getVariableNames() {
+		return range.getVariableNames();
+	}
+	
 	public VariableFunction getRange() {
 		return range;
 	}
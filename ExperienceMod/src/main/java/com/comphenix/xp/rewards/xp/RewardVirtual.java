@@ -62,11 +62,9 @@ public class RewardVirtual implements RewardService {
 		if (!isExperience(resource))
 			throw new IllegalArgumentException("Must be a experience resource.");
 
-		ExperienceManager manager = new ExperienceManager(player);
-		
 		// See if we'd end up with negative experience
 		if (resource.getAmount() < 0) {
-			return manager.hasExp(-resource.getAmount() * getLevelingFactor(levelingRate, player, manager));
+			return ExperienceManager.hasExp(player, -resource.getAmount() * getLevelingFactor(levelingRate, player));
 		} else {
 			return true;
 		}
@@ -80,11 +78,9 @@ public class RewardVirtual implements RewardService {
 		if (!isExperience(resource))
 			throw new IllegalArgumentException("Must be a experience resource.");
 
-		ExperienceManager manager = new ExperienceManager(player);
-		
 		// Rely on the brilliance of others
 		if (resource.getAmount() != 0) {
-			manager.changeExp(resource.getAmount() * getLevelingFactor(levelingRate, player, manager));
+			ExperienceManager.changeExp(player, resource.getAmount() * getLevelingFactor(levelingRate, player));
 		}
 	}
 
@@ -115,9 +111,19 @@ public class RewardVirtual implements RewardService {
 	 * @return Leveling factor.
 	 */
 	public static double getLevelingFactor(LevelingRate rate, Player player, ExperienceManager manager) {
+		return getLevelingFactor(rate, player);
+	}
+	
+	/**
+	 * Retrieve the factor f that multiplied by the current experience yields the correct leveling rate.
+	 * @param rate - leveling rate to use.
+	 * @param player - the player and their level.
+	 * @return Leveling factor.
+	 */
+	public static double getLevelingFactor(LevelingRate rate, Player player) {
 		// Retrieve the desired amount of experience required to level up
 		Integer desiredLevelUp = rate.get(player.getLevel());
-		Integer defaultLevelUp = manager.getXpNeededToLevelUp(player.getLevel());
+		Integer defaultLevelUp = ExperienceManager.getXpNeededToLevelUp(player.getLevel());
 		
 		// Make experience drops correspond to the desired level rate
 		if (desiredLevelUp == null)
@@ -132,6 +132,49 @@ public class BultinFunction extends CustomFunction {
 		}
 	}
 
+	@Override
+	public double[] getBounds(double[] minimum, double[] maximum) {
+		
+		switch (standard) {
+		// Non-decreasing functions
+		case ASIN:
+		case ATAN:
+		case CBRT:
+		case CEIL:
+		case EXP:
+		case EXPM1:
+		case FLOOR:
+		case LOG:
+		case SINH:
+		case SQRT:
+		case TANH:
+			return new double[] { applyFunction(minimum[0]), applyFunction(maximum[0]) };
+		case ROUND:
+			// Math.round() clamps to the range of a long
+			if (Math.abs(minimum[0]) >= Long.MAX_VALUE || Math.abs(maximum[0]) >= Long.MAX_VALUE)
+				return null;
+			return new double[] { applyFunction(minimum[0]), applyFunction(maximum[0]) };
+		case ACOS:
+			return new double[] { Math.acos(maximum[0]), Math.acos(minimum[0]) };
+		case ABS:
+			if (minimum[0] >= 0)
+				return new double[] { minimum[0], maximum[0] };
+			else if (maximum[0] <= 0)
+				return new double[] { -maximum[0], -minimum[0] };
+			else
+				return new double[] { 0, Math.max(-minimum[0], maximum[0]) };
+		case MAX:
+			return new double[] { Math.max(minimum[0], minimum[1]), Math.max(maximum[0], maximum[1]) };
+		case MIN:
+			return new double[] { Math.min(minimum[0], minimum[1]), Math.min(maximum[0], maximum[1]) };
+		case SIN:
+		case COS:
+			return new double[] { -1, 1 };
+		default:
+			return null;
+		}
+	}
+	
     private static double lerp(double start, double stop, double amount) {
         return start + (stop - start) * amount;
     }
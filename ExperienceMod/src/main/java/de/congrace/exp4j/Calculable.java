@@ -24,6 +24,34 @@ public interface Calculable {
 	 */
 	public double calculate(double... variableValues);
 	
+	/**
+	 * calculate the result of the expression using the variables and random number generator in the given context
+	 * <p>
+	 * This doesn't modify the calculable itself, so different threads may evaluate the same expression
+	 * concurrently, as long as each thread uses its own context.
+	 * 
+	 * @param context
+	 *            the evaluation context, created by {@link #createContext()}
+	 * @return the result of the calculation
+	 */
+	public double calculate(EvaluationContext context);
+	
+	/**
+	 * create a new evaluation context for this expression
+	 * <p>
+	 * Every variable is initialized to the value given to the {@link ExpressionBuilder}, or zero.
+	 * 
+	 * @return the new context
+	 */
+	public EvaluationContext createContext();
+	
+	/**
+	 * Retrieves the slot index of the given variable in an evaluation context.
+	 * @param name - name of the variable.
+	 * @return The slot index, or -1 if the variable has not been declared.
+	 */
+	public int getVariableIndex(String name);
+	
 	/**
 	 * return the expression in reverse polish postfix notation
 	 * 
@@ -47,4 +75,24 @@ public interface Calculable {
 	 * @return TRUE if it does, FALSE otherwise.
 	 */
 	public boolean containsVariable(String name);
+	
+	/**
+	 * Retrieves the lowest value this expression may return, for any variable value.
+	 * @return The lowest value, or negative infinity if unknown.
+	 */
+	public double getMinimum();
+	
+	/**
+	 * Retrieves the highest value this expression may return, for any variable value.
+	 * @return The highest value, or positive infinity if unknown.
+	 */
+	public double getMaximum();
+	
+	/**
+	 * Retrieves the arguments of the given function, if this expression is a single call to that function 
+	 * with constant arguments.
+	 * @param function - the function to look for.
+	 * @return The constant arguments, or NULL if this expression is anything else.
+	 */
+	public double[] getConstantArguments(CustomFunction function);
 }
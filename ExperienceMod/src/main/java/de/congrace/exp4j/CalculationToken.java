@@ -11,4 +11,8 @@ abstract class CalculationToken extends Token {
 
 	abstract void mutateStackForCalculation(Stack<Double> stack, Map<String, Double> variableValues);
 
+	void mutateStackForCalculation(Stack<Double> stack, Map<String, Double> variableValues, EvaluationContext context) {
+		mutateStackForCalculation(stack, variableValues);
+	}
+
 }
\ No newline at end of file
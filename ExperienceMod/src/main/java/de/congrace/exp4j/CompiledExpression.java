@@ -0,0 +1,274 @@
+package de.congrace.exp4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Calculable} that evaluates a tree of specialized nodes instead of interpreting a token stream.
+ * <p>
+ * Variables are resolved to slot indices when the expression is compiled, and every subtree that only
+ * depends on constants is replaced by its value. The result must always be identical to the equivalent 
+ * {@link RPNExpression}.
+ * <p>
+ * The compiled tree is immutable. Evaluating it with {@link #calculate(EvaluationContext)} is thread safe, 
+ * as long as each thread uses its own context.
+ *
+ * @author Kristian
+ */
+class CompiledExpression implements Calculable {
+
+	final ExpressionNode root;
+
+	final String expression;
+
+	// Slot index of every declared variable
+	final Map<String, Integer> slots;
+
+	// Variables mentioned by the expression
+	final Set<String> referenced;
+
+	// Size of every node buffer
+	final int[] bufferSizes;
+
+	// Variable values used when no context is given
+	final double[] defaults;
+
+	private CompiledExpression(ExpressionNode root, String expression, Map<String, Integer> slots,
+							   Set<String> referenced, int[] bufferSizes, double[] defaults) {
+		this.root = root;
+		this.expression = expression;
+		this.slots = slots;
+		this.referenced = referenced;
+		this.bufferSizes = bufferSizes;
+		this.defaults = defaults;
+	}
+
+	/**
+	 * Compile the given postfix expression.
+	 * @param rpn - the postfix expression to compile.
+	 * @param standardOperators - operators that can be replaced by specialized nodes.
+	 * @return The compiled expression.
+	 * @throws UnparsableExpressionException If the operators and operands don't match.
+	 */
+	static CompiledExpression compile(RPNExpression rpn, Map<String, CustomOperator> standardOperators)
+			throws UnparsableExpressionException {
+
+		Map<String, Integer> slots = new LinkedHashMap<String, Integer>();
+		Set<String> referenced = new HashSet<String>();
+		List<Integer> bufferSizes = new ArrayList<Integer>();
+		double[] values = new double[rpn.variables.size()];
+
+		// Keep the declaration order
+		for (Map.Entry<String, Double> entry : rpn.variables.entrySet()) {
+			int slot = slots.size();
+
+			slots.put(entry.getKey(), slot);
+			values[slot] = entry.getValue() != null ? entry.getValue() : 0;
+		}
+
+		List<ExpressionNode> stack = new ArrayList<ExpressionNode>();
+
+		for (Token token : rpn.tokens) {
+			if (token instanceof NumberToken) {
+				stack.add(new ExpressionNode.Constant(((NumberToken) token).getDoubleValue()));
+
+			} else if (token instanceof VariableToken) {
+				String name = token.getValue();
+
+				referenced.add(name);
+				stack.add(new ExpressionNode.Variable(slots.get(name)));
+
+			} else if (token instanceof OperatorToken) {
+				CustomOperator operator = ((OperatorToken) token).operation;
+				ExpressionNode[] operands = pop(stack, operator.operandCount, rpn.expression);
+
+				if (standardOperators.get(operator.symbol) == operator)
+					stack.add(fold(compileStandard(operator, operands, bufferSizes), operands, true, bufferSizes));
+				else
+					stack.add(fold(new ExpressionNode.Operator(operator, operands, allocate(bufferSizes, operands.length)), 
+							operands, true, bufferSizes));
+
+			} else if (token instanceof FunctionToken) {
+				CustomFunction function = ((FunctionToken) token).function;
+				ExpressionNode[] arguments = pop(stack, function.argc, rpn.expression);
+
+				stack.add(fold(new ExpressionNode.Function(function, arguments, allocate(bufferSizes, arguments.length)), 
+						arguments, function.isDeterministic(), bufferSizes));
+
+			} else {
+				throw new UnparsableExpressionException("Unexpected token '" + token.getValue() + "' in " + rpn.expression);
+			}
+		}
+
+		if (stack.size() != 1)
+			throw new UnparsableExpressionException("Unbalanced expression: " + rpn.expression);
+
+		return new CompiledExpression(stack.get(0), rpn.expression, slots,
+				Collections.unmodifiableSet(referenced), toArray(bufferSizes), values);
+	}
+
+	// Reserve a new node buffer
+	private static int allocate(List<Integer> bufferSizes, int size) {
+		bufferSizes.add(size);
+		return bufferSizes.size() - 1;
+	}
+
+	private static int[] toArray(List<Integer> values) {
+		int[] result = new int[values.size()];
+
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.get(i);
+		}
+		return result;
+	}
+
+	private static ExpressionNode[] pop(List<ExpressionNode> stack, int count, String expression)
+			throws UnparsableExpressionException {
+
+		if (stack.size() < count)
+			throw new UnparsableExpressionException("Missing operands in " + expression);
+
+		ExpressionNode[] result = new ExpressionNode[count];
+
+		// The last operand is on top
+		for (int i = count - 1; i >= 0; i--) {
+			result[i] = stack.remove(stack.size() - 1);
+		}
+		return result;
+	}
+
+	/**
+	 * Replace the given node by its value, if it always returns the same value.
+	 * @param node - the node to fold.
+	 * @param children - the children of the node.
+	 * @param deterministic - whether or not the node itself is deterministic.
+	 * @param bufferSizes - the size of every node buffer so far.
+	 * @return The folded node, or the original node.
+	 */
+	private static ExpressionNode fold(ExpressionNode node, ExpressionNode[] children, boolean deterministic, 
+									   List<Integer> bufferSizes) {
+		if (!deterministic)
+			return node;
+
+		for (ExpressionNode child : children) {
+			if (!child.isConstant())
+				return node;
+		}
+
+		// There are no variables to read
+		return new ExpressionNode.Constant(node.evaluate(new EvaluationContext(new double[0], toArray(bufferSizes))));
+	}
+
+	private static ExpressionNode compileStandard(CustomOperator operator, ExpressionNode[] operands, 
+												  List<Integer> bufferSizes) {
+
+		if (operands.length == 1) {
+			if (operator.symbol.equals("'"))
+				return new ExpressionNode.Negate(operands[0]);
+
+		} else {
+			ExpressionNode left = operands[0];
+			ExpressionNode right = operands[1];
+
+			switch (operator.symbol.charAt(0)) {
+			case '+': return new ExpressionNode.Add(left, right);
+			case '-': return new ExpressionNode.Subtract(left, right);
+			case '*': return new ExpressionNode.Multiply(left, right);
+			case '/': return new ExpressionNode.Divide(left, right);
+			case '%': return new ExpressionNode.Modulo(left, right);
+			case '^': return new ExpressionNode.Power(left, right);
+			}
+		}
+
+		// Fall back on the operator itself
+		return new ExpressionNode.Operator(operator, operands, allocate(bufferSizes, operands.length));
+	}
+
+	public double calculate(double... variableValues) throws IllegalArgumentException {
+		if (slots.size() == 0 && variableValues != null) {
+			throw new IllegalArgumentException("there are no variables to set values");
+		} else if (variableValues != null && variableValues.length != slots.size()) {
+			throw new IllegalArgumentException("The are an unequal number of variables and arguments");
+		}
+		EvaluationContext context = createContext();
+
+		if (variableValues != null) {
+			System.arraycopy(variableValues, 0, context.variables, 0, variableValues.length);
+		}
+		return root.evaluate(context);
+	}
+
+	public double calculate() {
+		return calculate((double[]) null);
+	}
+
+	@Override
+	public double calculate(EvaluationContext context) {
+		return root.evaluate(context);
+	}
+
+	@Override
+	public EvaluationContext createContext() {
+		return new EvaluationContext(defaults.clone(), bufferSizes);
+	}
+
+	@Override
+	public int getVariableIndex(String name) {
+		Integer slot = slots.get(name);
+
+		return slot != null ? slot : -1;
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	public void setVariable(String name, double value) {
+		Integer slot = slots.get(name);
+
+		// Undeclared variables cannot be referenced by the tree
+		if (slot != null) {
+			defaults[slot] = value;
+		}
+	}
+
+	@Override
+	public boolean containsVariable(String name) {
+		return referenced.contains(name);
+	}
+
+	@Override
+	public double getMinimum() {
+		return root.minimum;
+	}
+
+	@Override
+	public double getMaximum() {
+		return root.maximum;
+	}
+
+	@Override
+	public double[] getConstantArguments(CustomFunction function) {
+		if (!(root instanceof ExpressionNode.Function))
+			return null;
+
+		ExpressionNode.Function call = (ExpressionNode.Function) root;
+		double[] arguments = new double[call.arguments.length];
+
+		if (call.function != function)
+			return null;
+
+		for (int i = 0; i < arguments.length; i++) {
+			if (call.arguments[i].isConstant())
+				arguments[i] = call.arguments[i].evaluate(null);
+			else
+				return null;
+		}
+		return arguments;
+	}
+}
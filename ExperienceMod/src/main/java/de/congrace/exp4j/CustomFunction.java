@@ -55,6 +55,47 @@ public abstract class CustomFunction {
 
 	public abstract double applyFunction(double... args);
 
+	/**
+	 * apply this function within the given evaluation context
+	 * <p>
+	 * Functions that depend on mutable state, such as a random number generator, should override this method 
+	 * and read the state from the context.
+	 * 
+	 * @param context
+	 *            the current evaluation context
+	 * @param args
+	 *            the function arguments
+	 * @return the result of the function
+	 */
+	public double applyFunction(EvaluationContext context, double... args) {
+		return applyFunction(args);
+	}
+
+	/**
+	 * Determines if this function always returns the same value for the same arguments.
+	 * <p>
+	 * Calls to deterministic functions with constant arguments are replaced by their result when 
+	 * an expression is compiled.
+	 * 
+	 * @return TRUE if it does, FALSE otherwise.
+	 */
+	public boolean isDeterministic() {
+		return true;
+	}
+
+	/**
+	 * Computes the lowest and highest value this function may return, given the range of each argument.
+	 * 
+	 * @param minimum
+	 *            the lowest value of each argument
+	 * @param maximum
+	 *            the highest value of each argument
+	 * @return the lowest and highest value in an array, or NULL if unknown
+	 */
+	public double[] getBounds(double[] minimum, double[] maximum) {
+		return null;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
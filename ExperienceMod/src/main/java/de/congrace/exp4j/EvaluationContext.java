@@ -0,0 +1,82 @@
+package de.congrace.exp4j;
+
+import java.util.Random;
+
+/**
+ * Holds the mutable state of a single evaluation of a {@link Calculable}.
+ * <p>
+ * The same calculable may be evaluated concurrently by different threads, as long as each thread uses
+ * its own context. A context may be reused for any number of evaluations, but only by one thread at a time.
+ *
+ * @author Kristian
+ */
+public class EvaluationContext {
+
+	// Current value of every variable, indexed by slot
+	final double[] variables;
+
+	// Operand and argument buffers of the compiled nodes
+	final double[][] buffers;
+
+	// Random number generator used by non-deterministic functions
+	private Random random;
+
+	/**
+	 * Construct a context for an expression with the given number of variables.
+	 * @param variableCount - the number of variables.
+	 */
+	public EvaluationContext(int variableCount) {
+		this(new double[variableCount], new int[0]);
+	}
+
+	EvaluationContext(double[] variables, int[] bufferSizes) {
+		this.variables = variables;
+		this.buffers = new double[bufferSizes.length][];
+
+		for (int i = 0; i < bufferSizes.length; i++) {
+			buffers[i] = new double[bufferSizes[i]];
+		}
+	}
+
+	/**
+	 * Retrieves the number of variable slots in this context.
+	 * @return Number of variables.
+	 */
+	public int getVariableCount() {
+		return variables.length;
+	}
+
+	/**
+	 * Retrieves the value of a variable.
+	 * @param slot - the index of the variable, as given by {@link Calculable#getVariableIndex(String)}.
+	 * @return The current value.
+	 */
+	public double getVariable(int slot) {
+		return variables[slot];
+	}
+
+	/**
+	 * Sets the value of a variable.
+	 * @param slot - the index of the variable, as given by {@link Calculable#getVariableIndex(String)}.
+	 * @param value - the new value.
+	 */
+	public void setVariable(int slot, double value) {
+		variables[slot] = value;
+	}
+
+	/**
+	 * Retrieves the random number generator used by non-deterministic functions.
+	 * @return The random number generator, or NULL if the function should pick one.
+	 */
+	public Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * Sets the random number generator used by non-deterministic functions.
+	 * @param random - the new random number generator, or NULL to let the function pick one.
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+}
@@ -28,6 +28,9 @@ public class ExpressionBuilder {
 
 	private final Map<String, CustomOperator> builtInOperators;
 
+	// The unmodified built-in operators
+	private final Map<String, CustomOperator> standardOperators;
+
 	private Map<String, CustomOperator> customOperators = new HashMap<String, CustomOperator>();
 
 	private final List<Character> validOperatorSymbols;
@@ -47,6 +50,7 @@ public class ExpressionBuilder {
 		highUnaryPrecedence = System.getProperty(PROPERTY_UNARY_HIGH_PRECEDENCE) == null || !System.getProperty(PROPERTY_UNARY_HIGH_PRECEDENCE).equals("false");
 		customFunctions = getBuiltinFunctions();
 		builtInOperators = getBuiltinOperators();
+		standardOperators = new HashMap<String, CustomOperator>(builtInOperators);
 		validOperatorSymbols = getValidOperators();
 	}
 
@@ -136,6 +140,26 @@ public class ExpressionBuilder {
 	 *             if the expression could not be parsed
 	 */
 	public Calculable build() throws UnknownFunctionException, UnparsableExpressionException {
+		return toRPNExpression();
+	}
+
+	/**
+	 * build a new {@link Calculable} from the expression that evaluates a compiled tree of nodes
+	 * <p>
+	 * The result is identical to the {@link Calculable} returned by {@link #build()}, but variables are stored 
+	 * in an array and the evaluation doesn't allocate any memory.
+	 * 
+	 * @return the compiled {@link Calculable}
+	 * @throws UnknownFunctionException
+	 *             when an unrecognized function name is used in the expression
+	 * @throws UnparsableExpressionException
+	 *             if the expression could not be parsed
+	 */
+	public Calculable compile() throws UnknownFunctionException, UnparsableExpressionException {
+		return CompiledExpression.compile(toRPNExpression(), standardOperators);
+	}
+
+	private RPNExpression toRPNExpression() throws UnknownFunctionException, UnparsableExpressionException {
 		for (CustomOperator op : customOperators.values()) {
 			for (int i = 0; i < op.symbol.length(); i++) {
 				if (!validOperatorSymbols.contains(op.symbol.charAt(i))) {
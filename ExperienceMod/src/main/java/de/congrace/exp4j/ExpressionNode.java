@@ -0,0 +1,278 @@
+package de.congrace.exp4j;
+
+/**
+ * A node in a compiled expression tree.
+ * <p>
+ * Variables are read directly from a slot array, so evaluating a tree doesn't allocate any memory.
+ * The shape of the tree is fixed once it has been built, and every mutable value is stored in the 
+ * {@link EvaluationContext}. A tree may therefore be evaluated by multiple threads at once.
+ * <p>
+ * Every node also records the lowest and highest value it may return, computed from its children
+ * when the node is constructed.
+ *
+ * @author Kristian
+ */
+abstract class ExpressionNode {
+
+	// Lowest and highest value this node may return
+	double minimum = Double.NEGATIVE_INFINITY;
+	double maximum = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Set the lowest and highest value this node may return.
+	 * <p>
+	 * Invalid bounds are ignored, leaving the node unbounded.
+	 * @param minimum - the lowest value.
+	 * @param maximum - the highest value.
+	 */
+	void setBounds(double minimum, double maximum) {
+		// NaN means we cannot tell
+		if (minimum <= maximum) {
+			this.minimum = minimum;
+			this.maximum = maximum;
+		}
+	}
+
+	/**
+	 * Determines if this node always returns the same value.
+	 * @return TRUE if it does, FALSE otherwise.
+	 */
+	boolean isConstant() {
+		return false;
+	}
+
+	/**
+	 * Evaluate this node and every child node.
+	 * @param context - the current value of every variable and the node buffers.
+	 * @return The computed value.
+	 */
+	abstract double evaluate(EvaluationContext context);
+
+	/**
+	 * A numeric constant.
+	 */
+	static final class Constant extends ExpressionNode {
+		final double value;
+
+		Constant(double value) {
+			this.value = value;
+			setBounds(value, value);
+		}
+
+		@Override
+		boolean isConstant() {
+			return true;
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return value;
+		}
+	}
+
+	/**
+	 * A variable stored in a given slot.
+	 */
+	static final class Variable extends ExpressionNode {
+		final int slot;
+
+		Variable(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return context.variables[slot];
+		}
+	}
+
+	/**
+	 * The standard unary minus.
+	 */
+	static final class Negate extends ExpressionNode {
+		final ExpressionNode operand;
+
+		Negate(ExpressionNode operand) {
+			this.operand = operand;
+			setBounds(-operand.maximum, -operand.minimum);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return -operand.evaluate(context);
+		}
+	}
+
+	/**
+	 * Any of the standard binary operators.
+	 */
+	static abstract class Binary extends ExpressionNode {
+		final ExpressionNode left;
+		final ExpressionNode right;
+
+		Binary(ExpressionNode left, ExpressionNode right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		// Use the lowest and highest of every candidate
+		void setExtremes(double a, double b, double c, double d) {
+			setBounds(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+		}
+	}
+
+	static final class Add extends Binary {
+		Add(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+			setBounds(left.minimum + right.minimum, left.maximum + right.maximum);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return left.evaluate(context) + right.evaluate(context);
+		}
+	}
+
+	static final class Subtract extends Binary {
+		Subtract(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+			setBounds(left.minimum - right.maximum, left.maximum - right.minimum);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return left.evaluate(context) - right.evaluate(context);
+		}
+	}
+
+	static final class Multiply extends Binary {
+		Multiply(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+			setExtremes(left.minimum * right.minimum, left.minimum * right.maximum,
+						left.maximum * right.minimum, left.maximum * right.maximum);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return left.evaluate(context) * right.evaluate(context);
+		}
+	}
+
+	static final class Divide extends Binary {
+		Divide(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+
+			// The divisor must not include zero
+			if (right.minimum > 0 || right.maximum < 0) {
+				setExtremes(left.minimum / right.minimum, left.minimum / right.maximum,
+							left.maximum / right.minimum, left.maximum / right.maximum);
+			}
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return left.evaluate(context) / right.evaluate(context);
+		}
+	}
+
+	static final class Modulo extends Binary {
+		Modulo(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+
+			// The result is smaller than the divisor, and has the same sign as the dividend
+			if (right.minimum > 0 || right.maximum < 0) {
+				double divisor = Math.max(Math.abs(right.minimum), Math.abs(right.maximum));
+
+				if (left.minimum >= 0)
+					setBounds(0, Math.min(left.maximum, divisor));
+				else if (left.maximum <= 0)
+					setBounds(Math.max(left.minimum, -divisor), 0);
+				else
+					setBounds(-divisor, divisor);
+			}
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return left.evaluate(context) % right.evaluate(context);
+		}
+	}
+
+	static final class Power extends Binary {
+		Power(ExpressionNode left, ExpressionNode right) {
+			super(left, right);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			return Math.pow(left.evaluate(context), right.evaluate(context));
+		}
+	}
+
+	/**
+	 * A custom operator.
+	 */
+	static final class Operator extends ExpressionNode {
+		final CustomOperator operator;
+		final ExpressionNode[] operands;
+
+		// Index of the operand buffer in the context
+		final int buffer;
+
+		Operator(CustomOperator operator, ExpressionNode[] operands, int buffer) {
+			this.operator = operator;
+			this.operands = operands;
+			this.buffer = buffer;
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			double[] values = context.buffers[buffer];
+
+			for (int i = 0; i < operands.length; i++) {
+				values[i] = operands[i].evaluate(context);
+			}
+			return operator.applyOperation(values);
+		}
+	}
+
+	/**
+	 * A built-in or custom function.
+	 */
+	static final class Function extends ExpressionNode {
+		final CustomFunction function;
+		final ExpressionNode[] arguments;
+
+		// Index of the argument buffer in the context
+		final int buffer;
+
+		Function(CustomFunction function, ExpressionNode[] arguments, int buffer) {
+			this.function = function;
+			this.arguments = arguments;
+			this.buffer = buffer;
+
+			double[] minimum = new double[arguments.length];
+			double[] maximum = new double[arguments.length];
+
+			for (int i = 0; i < arguments.length; i++) {
+				minimum[i] = arguments[i].minimum;
+				maximum[i] = arguments[i].maximum;
+			}
+
+			double[] bounds = function.getBounds(minimum, maximum);
+
+			if (bounds != null)
+				setBounds(bounds[0], bounds[1]);
+		}
+
+		@Override
+		double evaluate(EvaluationContext context) {
+			double[] values = context.buffers[buffer];
+
+			for (int i = 0; i < arguments.length; i++) {
+				values[i] = arguments[i].evaluate(context);
+			}
+			return function.applyFunction(context, values);
+		}
+	}
+}
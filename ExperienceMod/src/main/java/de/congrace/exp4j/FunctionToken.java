@@ -49,6 +49,15 @@ class FunctionToken extends CalculationToken {
 		stack.push(this.function.applyFunction(ArrayUtil.reverse(args)));
 	}
 
+	@Override
+	void mutateStackForCalculation(Stack<Double> stack, Map<String, Double> variableValues, EvaluationContext context) {
+		double[] args = new double[function.argc];
+		for (int i = 0; i < function.argc; i++) {
+			args[i] = stack.pop();
+		}
+		stack.push(this.function.applyFunction(context, ArrayUtil.reverse(args)));
+	}
+
 	@Override
 	void mutateStackForInfixTranslation(Stack<Token> operatorStack, StringBuilder output) {
 		operatorStack.push(this);
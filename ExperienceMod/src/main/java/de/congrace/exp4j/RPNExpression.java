@@ -1,5 +1,6 @@
 package de.congrace.exp4j;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -55,7 +56,47 @@ class RPNExpression implements Calculable {
 	}
 
 	public double calculate() {
-		return calculate(null);
+		return calculate((double[]) null);
+	}
+
+	@Override
+	public double calculate(EvaluationContext context) {
+		// Use a private copy of the variables
+		final Map<String, Double> values = new LinkedHashMap<String, Double>(variables);
+		int i = 0;
+		for (Map.Entry<String, Double> entry : values.entrySet()) {
+			if (i >= context.variables.length) {
+				break;
+			}
+			entry.setValue(context.variables[i++]);
+		}
+		final Stack<Double> stack = new Stack<Double>();
+		for (final Token t : tokens) {
+			((CalculationToken) t).mutateStackForCalculation(stack, values, context);
+		}
+		return stack.pop();
+	}
+
+	@Override
+	public EvaluationContext createContext() {
+		EvaluationContext context = new EvaluationContext(variables.size());
+		int i = 0;
+		for (Double value : variables.values()) {
+			context.variables[i++] = value != null ? value : 0;
+		}
+		return context;
+	}
+
+	@Override
+	public int getVariableIndex(String name) {
+		int i = 0;
+		for (String variable : variables.keySet()) {
+			if (variable.equals(name)) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
 	}
 
 	@Override
@@ -70,4 +111,36 @@ class RPNExpression implements Calculable {
 		
 		return false;
 	}
+
+	@Override
+	public double getMinimum() {
+		// The interpreter doesn't analyze the expression
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public double getMaximum() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public double[] getConstantArguments(CustomFunction function) {
+		int last = tokens.size() - 1;
+		
+		if (last < 0 || !(tokens.get(last) instanceof FunctionToken) || 
+				((FunctionToken) tokens.get(last)).function != function || last != function.argc) {
+			return null;
+		}
+		
+		double[] arguments = new double[last];
+		
+		// Every other token must be a number
+		for (int i = 0; i < last; i++) {
+			if (tokens.get(i) instanceof NumberToken)
+				arguments[i] = ((NumberToken) tokens.get(i)).getDoubleValue();
+			else
+				return null;
+		}
+		return arguments;
+	}
 }
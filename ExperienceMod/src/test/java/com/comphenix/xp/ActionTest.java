@@ -2,12 +2,24 @@ package com.comphenix.xp;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Test;
 
+import com.comphenix.xp.expressions.VariableFunction;
+import com.comphenix.xp.parser.ParsingException;
+import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
+import com.comphenix.xp.rewards.RewardProvider;
 import com.comphenix.xp.rewards.RewardTypes;
+import com.comphenix.xp.rewards.xp.CurrencyFactory;
 import com.comphenix.xp.rewards.xp.ExperienceFactory;
+import com.comphenix.xp.rewards.xp.ExperienceHolder;
 
 public class ActionTest {
 
@@ -25,4 +37,103 @@ public class ActionTest {
 		map.put(test.multiply(1), 10);
 		assertEquals(1, map.size());
 	}
+	
+	@Test
+	public void testVariableNames() throws ParsingException {
+		String[] names = { "EXPERIENCE", "CURRENCY" };
+		Action action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		
+		// Plain ranges don't need any parameters
+		assertTrue(action.getVariableNames().isEmpty());
+		
+		action.addReward(RewardTypes.ECONOMY.name(), 
+				new CurrencyFactory(VariableFunction.fromExpression("CURRENCY * 0.1", names)));
+		assertEquals(new HashSet<String>(Arrays.asList("CURRENCY")), action.getVariableNames());
+	}
+	
+	@Test
+	public void testRewardNames() {
+		Action action = new Action("custom service", new ExperienceFactory(5));
+		
+		action.addReward("experience", new ExperienceFactory(10));
+		
+		// Names are normalized, and built-in types come first
+		assertEquals(Arrays.asList("EXPERIENCE", "CUSTOM_SERVICE"), action.getRewardNames());
+		assertSame(action.getReward("Experience"), action.getReward(RewardTypes.EXPERIENCE));
+		assertNotNull(action.getReward("CUSTOM_SERVICE"));
+		
+		action.removeReward("EXPERIENCE");
+		assertNull(action.getReward(RewardTypes.EXPERIENCE));
+	}
+	
+	@Test
+	public void testGenerateRewards() {
+		Action action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		RewardProvider provider = createProvider();
+		
+		action.addReward(RewardTypes.VIRTUAL.name(), new ExperienceFactory(10));
+		action.addReward(RewardTypes.ECONOMY.name(), null);
+		
+		// One resource per slot, in slot order, where empty slots are NULL
+		List<ResourceHolder> generated = action.generateRewards(null, provider, new Random(), 2);
+		
+		assertEquals(3, generated.size());
+		assertEquals(new ExperienceHolder(10), generated.get(0));
+		assertEquals(new ExperienceHolder(20), generated.get(1));
+		assertNull(generated.get(2));
+		
+		// Nothing is generated for zero rewards
+		assertTrue(action.generateRewards(null, provider, new Random(), 0).isEmpty());
+	}
+	
+	@Test
+	public void testRewardMerging() {
+		Action action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		RewardProvider provider = createProvider();
+		
+		action.addReward(RewardTypes.VIRTUAL.name(), new ExperienceFactory(10));
+		
+		// Both slots generate experience, so they should be combined
+		List<ResourceHolder> generated = action.generateRewards(null, provider, new Random());
+		Collection<ResourceHolder> result = action.rewardAnyone(provider, null, generated, null);
+		
+		assertEquals(Arrays.asList(new ExperienceHolder(15)), result);
+		
+		// The generated list must be left as is
+		assertEquals(new ExperienceHolder(5), generated.get(0));
+		assertEquals(new ExperienceHolder(10), generated.get(1));
+	}
+	
+	@Test
+	public void testRewardBuffers() {
+		Action first = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		Action second = new Action(RewardTypes.VIRTUAL.name(), new ExperienceFactory(10));
+		RewardProvider provider = createProvider();
+		
+		RewardBuffer generated = new RewardBuffer();
+		RewardBuffer result = new RewardBuffer();
+		
+		first.addReward(RewardTypes.ECONOMY.name(), null);
+		
+		// The same buffers are filled by every event
+		assertSame(generated, first.generateRewards(null, provider, new Random(), 1, generated));
+		assertSame(result, first.rewardAnyone(provider, null, generated, null, result));
+		assertEquals(Arrays.asList(new ExperienceHolder(5), null), generated);
+		assertEquals(Arrays.asList(new ExperienceHolder(5)), result);
+		
+		// Nothing may be left over from the previous event
+		second.generateRewards(null, provider, new Random(), 1, generated);
+		second.rewardAnyone(provider, null, generated, null, result);
+		assertEquals(Arrays.asList(new ExperienceHolder(10)), generated);
+		assertEquals(Arrays.asList(new ExperienceHolder(10)), result);
+	}
+	
+	private RewardProvider createProvider() {
+		RewardProvider provider = new RewardProvider();
+		
+		provider.register(new MockRewardable(RewardTypes.EXPERIENCE));
+		provider.register(new MockRewardable(RewardTypes.VIRTUAL));
+		provider.register(new MockRewardable(RewardTypes.ECONOMY));
+		return provider;
+	}
 }
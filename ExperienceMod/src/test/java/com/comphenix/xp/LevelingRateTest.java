@@ -33,4 +33,20 @@ public class LevelingRateTest {
 		assertEquals(levels.get(8), null);
 		assertEquals(levels.get(11), null);
 	}
+	
+	@Test
+	public void testBeyondTable() {
+		LevelingRate levels = new LevelingRate();
+		int beyond = LevelingRate.MAX_TABLE_LEVEL + 10;
+		
+		levels.put(0, beyond, 7);
+		
+		assertEquals(levels.get(0), new Integer(7));
+		assertEquals(levels.get(beyond), new Integer(7));
+		assertEquals(levels.get(beyond + 1), null);
+		
+		// Changes must be visible after the table has been computed
+		levels.put(5, 5, 3);
+		assertEquals(levels.get(5), new Integer(3));
+	}
 }
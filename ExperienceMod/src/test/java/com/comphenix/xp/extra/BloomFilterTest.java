@@ -0,0 +1,65 @@
+package com.comphenix.xp.extra;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	private static final int CAPACITY = 10000;
+	private static final double RATE = 0.01;
+	
+	@Test
+	public void testFalsePositives() {
+		BloomFilter filter = new BloomFilter(CAPACITY, RATE);
+		
+		for (long i = 0; i < CAPACITY; i++) {
+			filter.add(i * 31);
+		}
+		
+		// Never any false negatives
+		for (long i = 0; i < CAPACITY; i++) {
+			assertTrue(filter.mightContain(i * 31));
+		}
+		
+		int positives = 0;
+		int samples = 100000;
+		
+		for (long i = 0; i < samples; i++) {
+			if (filter.mightContain(-1 - i))
+				positives++;
+		}
+		
+		// Allow for some variance
+		assertTrue(filter.isFull());
+		assertTrue("Rate: " + positives / (double) samples, positives < samples * RATE * 2);
+		assertEquals(RATE, filter.getExpectedFalsePositiveRate(), RATE);
+	}
+	
+	@Test
+	public void testSerialization() throws IOException {
+		BloomFilter filter = new BloomFilter(100, RATE);
+		
+		for (long i = 0; i < 50; i++) {
+			filter.add(i);
+		}
+		
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		filter.writeTo(new DataOutputStream(buffer));
+		
+		BloomFilter copy = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+		
+		assertEquals(filter.getInsertions(), copy.getInsertions());
+		assertEquals(filter.getFillRatio(), copy.getFillRatio(), 0);
+		
+		for (long i = 0; i < 1000; i++) {
+			assertEquals(filter.mightContain(i), copy.mightContain(i));
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.comphenix.xp.extra;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FastRandomTest {
+
+	@Test
+	public void testSeed() {
+		FastRandom first = new FastRandom(42);
+		FastRandom second = new FastRandom(42);
+		
+		for (int i = 0; i < 100; i++) {
+			assertEquals(first.nextLong(), second.nextLong());
+		}
+		
+		// Reseeding must restart the sequence
+		first.setSeed(42);
+		second.setSeed(42);
+		assertEquals(first.nextDouble(), second.nextDouble(), 0);
+	}
+	
+	@Test
+	public void testRange() {
+		FastRandom random = new FastRandom(1);
+		
+		for (int i = 0; i < 10000; i++) {
+			double value = random.nextDouble();
+			int sample = random.nextInt(7);
+			
+			assertTrue(value >= 0 && value < 1);
+			assertTrue(sample >= 0 && sample < 7);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.comphenix.xp.history;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.bukkit.Location;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PlacedBlockFilterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testScaling() {
+		PlacedBlockFilter filter = new PlacedBlockFilter(1000, 0.01);
+		
+		// Fill far beyond the capacity of the first stage
+		for (int i = 0; i < 7000; i++) {
+			filter.add(getLocation(i, 64, i * 7));
+		}
+		assertEquals(3, filter.getStageCount());
+		
+		for (int i = 0; i < 7000; i++) {
+			assertTrue(filter.mightContain(getLocation(i, 64, i * 7)));
+		}
+		
+		int positives = 0;
+		int samples = 20000;
+		
+		for (int i = 0; i < samples; i++) {
+			if (filter.mightContain(getLocation(i, 10, -i)))
+				positives++;
+		}
+		
+		// Each stage contributes less than its own rate
+		assertTrue("Rate: " + positives / (double) samples, positives < samples * 0.01 * 3);
+	}
+	
+	@Test
+	public void testJournal() throws IOException {
+		File file = new File(folder.getRoot(), "history.filter");
+		PlacedBlockFilter filter = PlacedBlockFilter.open(file);
+		
+		assertFalse(filter.mightContain(getLocation(1, 2, 3)));
+		filter.add(getLocation(1, 2, 3));
+		
+		// Simulate a crash by not closing the filter
+		PlacedBlockFilter recovered = PlacedBlockFilter.open(file);
+		
+		assertTrue(recovered.mightContain(getLocation(1, 2, 3)));
+		recovered.add(getLocation(4, 5, 6));
+		recovered.close();
+		
+		PlacedBlockFilter reopened = PlacedBlockFilter.open(file);
+		
+		assertTrue(reopened.mightContain(getLocation(1, 2, 3)));
+		assertTrue(reopened.mightContain(getLocation(4, 5, 6)));
+		assertFalse(reopened.mightContain(getLocation(7, 8, 9)));
+		reopened.close();
+	}
+	
+	@Test
+	public void testRecovery() throws IOException {
+		File file = new File(folder.getRoot(), "history.filter");
+		PlacedBlockFilter filter = PlacedBlockFilter.open(file);
+		
+		filter.add(getLocation(1, 2, 3));
+		filter.close();
+		
+		// Killed after the old filter was deleted, but before the new one was renamed
+		assertTrue(file.renameTo(new File(file.getPath() + ".tmp")));
+		
+		PlacedBlockFilter recovered = PlacedBlockFilter.open(file);
+		
+		assertTrue(recovered.mightContain(getLocation(1, 2, 3)));
+		recovered.add(getLocation(4, 5, 6));
+		
+		// Killed while a snapshot was being written in the background
+		assertTrue(new File(file.getPath() + ".journal").renameTo(new File(file.getPath() + ".journal.old")));
+		
+		PlacedBlockFilter reopened = PlacedBlockFilter.open(file);
+		
+		assertTrue(reopened.mightContain(getLocation(1, 2, 3)));
+		assertTrue(reopened.mightContain(getLocation(4, 5, 6)));
+		reopened.close();
+		recovered.close();
+	}
+	
+	@Test
+	public void testCompaction() throws IOException {
+		File file = new File(folder.getRoot(), "history.filter");
+		PlacedBlockFilter filter = PlacedBlockFilter.open(file);
+		
+		// Enough to compact the journal at least once
+		for (int i = 0; i < 100000; i++) {
+			filter.add(getLocation(i, 64, -i));
+		}
+		filter.close();
+		assertFalse(new File(file.getPath() + ".journal.old").exists());
+		
+		PlacedBlockFilter reopened = PlacedBlockFilter.open(file);
+		
+		for (int i = 0; i < 100000; i++) {
+			assertTrue(reopened.mightContain(getLocation(i, 64, -i)));
+		}
+		reopened.close();
+	}
+	
+	private static Location getLocation(int x, int y, int z) {
+		return new Location(null, x, y, z);
+	}
+}
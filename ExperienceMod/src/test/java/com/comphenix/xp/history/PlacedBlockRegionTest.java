@@ -0,0 +1,94 @@
+package com.comphenix.xp.history;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PlacedBlockRegionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = new File(folder.getRoot(), "r.0.0.dat");
+		int index = PlacedBlockRegion.getChunkIndex(33, -2);
+
+		PlacedBlockRegion region = PlacedBlockRegion.open(file);
+		long[][] sections = region.readChunk(index);
+
+		// A new region is empty
+		for (long[] section : sections) {
+			assertNull(section);
+		}
+
+		sections[3] = new long[PlacedBlockRegion.SECTION_WORDS];
+		sections[3][7] = 0x8000000000000001L;
+		sections[15] = new long[PlacedBlockRegion.SECTION_WORDS];
+		sections[15][63] = -1;
+
+		region.writeChunk(index, sections);
+		region.close();
+
+		// Must survive a restart
+		PlacedBlockRegion reopened = PlacedBlockRegion.open(file);
+		long[][] loaded = reopened.readChunk(index);
+
+		assertNull(loaded[0]);
+		assertArrayEquals(sections[3], loaded[3]);
+		assertArrayEquals(sections[15], loaded[15]);
+
+		// Neighbouring chunks are unaffected
+		assertNull(reopened.readChunk(index + 1)[3]);
+		reopened.close();
+	}
+
+	@Test
+	public void testGrowOnDemand() throws IOException {
+		File file = new File(folder.getRoot(), "r.1.1.dat");
+		PlacedBlockRegion region = PlacedBlockRegion.open(file);
+
+		long[][] sections = new long[PlacedBlockRegion.SECTION_COUNT][];
+		sections[0] = new long[PlacedBlockRegion.SECTION_WORDS];
+		sections[1] = new long[PlacedBlockRegion.SECTION_WORDS];
+		sections[0][0] = 1;
+
+		// Empty sections are never allocated
+		region.writeChunk(0, sections);
+		assertEquals(1, region.getSlotCount());
+		long size = file.length();
+
+		// Rewriting a section reuses its slot
+		sections[0][0] = 2;
+		region.writeChunk(0, sections);
+		assertEquals(1, region.getSlotCount());
+		assertEquals(size, file.length());
+
+		// Clearing a section keeps its slot
+		sections[0] = null;
+		region.writeChunk(0, sections);
+		assertEquals(1, region.getSlotCount());
+		assertArrayEquals(new long[PlacedBlockRegion.SECTION_WORDS], region.readChunk(0)[0]);
+
+		// Only the written sections take up space
+		sections = new long[PlacedBlockRegion.SECTION_COUNT][];
+		sections[8] = filled(5);
+		region.writeChunk(1023, sections);
+		
+		assertEquals(2, region.getSlotCount());
+		assertTrue(file.length() < 128 * 1024);
+		assertArrayEquals(filled(5), region.readChunk(1023)[8]);
+		region.close();
+	}
+
+	private static long[] filled(long value) {
+		long[] section = new long[PlacedBlockRegion.SECTION_WORDS];
+		section[0] = value;
+		return section;
+	}
+}
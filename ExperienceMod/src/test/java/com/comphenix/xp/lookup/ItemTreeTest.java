@@ -133,6 +133,106 @@ public class ItemTreeTest {
 		assertEquals(universalValue, tree.get(ItemQuery.fromExact(Material.WOOL.getId(), brownColor)));
 	}
 	
+	@Test
+	public void testRankedIDs() {
+		ItemTree first = new ItemTree(1);
+		ItemTree second = new ItemTree(1);
+		ItemTree result = new ItemTree(1);
+		String def = "EXPERIENCE";
+		
+		Action universalValue = new Action(def, new ExperienceFactory(0));
+		Action naturalValue = new Action(def, new ExperienceFactory(1));
+		Action placedValue = new Action(def, new ExperienceFactory(2));
+		
+		first.put(ItemQuery.fromAny(), universalValue);
+		second.put(ItemQuery.fromAny(Material.STONE.getId(), null, false), naturalValue);
+		second.put(ItemQuery.fromAny(Material.STONE.getId(), null, true), placedValue);
+		
+		result.putAll(first);
+		result.putAll(second);
+		
+		// The most recent rule is ranked first
+		assertEquals(Arrays.asList(1, 0), 
+				result.getAllRankedID(ItemQuery.fromExact(Material.STONE.getId(), 0, false)));
+		assertEquals(Arrays.asList(2, 0), 
+				result.getAllRankedID(ItemQuery.fromExact(Material.STONE.getId(), 0, true)));
+		assertEquals(Arrays.asList(0), 
+				result.getAllRankedID(ItemQuery.fromExact(Material.WOOD.getId(), 0, true)));
+		
+		assertTrue(result.getPlayerCreated().isSpecified(2));
+		assertFalse(result.getPlayerCreated().isSpecified(0));
+		assertEquals(placedValue, result.get(ItemQuery.fromExact(Material.STONE.getId(), 0, true)));
+	}
+	
+	@Test
+	public void testPlayerCreatedResult() {
+		ItemTree tree = new ItemTree(1);
+		String def = "EXPERIENCE";
+		
+		Action universalValue = new Action(def, new ExperienceFactory(0));
+		Action placedValue = new Action(def, new ExperienceFactory(2));
+		
+		tree.put(ItemQuery.fromAny(), universalValue);
+		tree.put(ItemQuery.fromAny(Material.STONE.getId(), null, true), placedValue);
+		
+		ItemTree.PlayerCreatedResult stone = tree.getPlayerCreatedResult(ItemQuery.fromExact(Material.STONE.getId(), 0));
+		ItemTree.PlayerCreatedResult wood = tree.getPlayerCreatedResult(ItemQuery.fromExact(Material.WOOD.getId(), 0));
+		
+		// Only stone depends on the block history
+		assertTrue(stone.isHistoryRequired());
+		assertEquals(universalValue, stone.getNatural());
+		assertEquals(placedValue, stone.getPlaced());
+		
+		assertFalse(wood.isHistoryRequired());
+		assertEquals(universalValue, wood.get(true));
+	}
+	
+	@Test
+	public void testInheritance() {
+		ItemTree tree = new ItemTree(1);
+		
+		Action universalValue = new Action("ECONOMY", new ExperienceFactory(3));
+		Action stoneValue = new Action("EXPERIENCE", new ExperienceFactory(1));
+		
+		stoneValue.setInheritance(true);
+		stoneValue.setInheritMultiplier(1);
+		
+		tree.put(ItemQuery.fromAny(), universalValue);
+		tree.put(ItemQuery.fromAny(Material.STONE), stoneValue);
+		
+		ItemQuery stone = ItemQuery.fromExact(Material.STONE.getId(), 0);
+		Action result = tree.get(stone);
+		
+		// Both rewards should be included, and the resolved chain reused
+		assertNotNull(result.getReward("ECONOMY"));
+		assertNotNull(result.getReward("EXPERIENCE"));
+		assertSame(result, tree.get(stone));
+		assertEquals(universalValue, tree.get(ItemQuery.fromExact(Material.WOOD.getId(), 0)));
+		
+		// Adding rules must invalidate any previous result
+		Action overrideValue = new Action("EXPERIENCE", new ExperienceFactory(5));
+		tree.put(ItemQuery.fromAny(Material.STONE), overrideValue);
+		
+		assertEquals(overrideValue, tree.get(stone));
+	}
+	
+	@Test
+	public void testPresence() {
+		ItemTree tree = new ItemTree(1);
+		String def = "EXPERIENCE";
+		
+		tree.put(ItemQuery.fromAny(Material.DIAMOND_ORE), new Action(def, new ExperienceFactory(5)));
+		
+		assertTrue(tree.getItemPresence().mayMatch(Material.DIAMOND_ORE.getId()));
+		assertFalse(tree.getItemPresence().mayMatch(Material.DIRT.getId()));
+		
+		// A rule without an item ID matches everything
+		tree.put(ItemQuery.fromAny(), new Action(def, new ExperienceFactory(1)));
+		
+		assertTrue(tree.getItemPresence().isWildcard());
+		assertTrue(tree.getItemPresence().mayMatch(Material.DIRT.getId()));
+	}
+	
 	@Test
 	public void testItemSpeed() {
 		
@@ -0,0 +1,33 @@
+package com.comphenix.xp.messages;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ChannelCoalescerTest {
+
+	@Test
+	public void testMerging() {
+
+		MockServer server = new MockServer();
+		ChannelCoalescer coalescer = new ChannelCoalescer(1000);
+		ChannelService service = coalescer.getService(new StandardService(server));
+		
+		assertTrue(service.hasChannel("global"));
+		assertFalse(service.hasChannel("abcd"));
+		
+		service.announce("global", "Hello world!");
+		service.announce("global", "Hello world!");
+		service.announce("global", "Goodbye");
+		
+		// Nothing is sent before the window has elapsed
+		assertEquals(0, server.getBroadcastCount());
+		
+		coalescer.onTick(1000);
+		assertEquals(2, server.getBroadcastCount());
+		
+		// The buffer is empty
+		coalescer.onTick(2000);
+		assertEquals(2, server.getBroadcastCount());
+	}
+}
@@ -26,5 +26,22 @@ public class MessageFormatterTest {
 		
 		assertEquals(expected, colored);
 	}
+	
+	@Test
+	public void testTemplate() {
+		
+		MockPlayer testPlayer = new MockPlayer();
+		testPlayer.setDisplayName("$test&7");
+		
+		MessageTemplate template = MessageTemplate.compile("{player} x{count}: {experience} {missing}\\n");
+		MessageFormatter formatter = new MessageFormatter(
+				testPlayer, 
+				Lists.newArrayList((ResourceHolder) new ExperienceHolder(2)),
+				null, 3);
+		
+		// Parameter values are inserted verbatim
+		assertEquals(4, template.getParameterCount());
+		assertEquals("$test&7 x3: 2 experience {CANNOT FIND {missing}}\n", formatter.formatMessage(template));
+	}
 
 }
@@ -0,0 +1,128 @@
+package com.comphenix.xp.messages;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import com.comphenix.xp.Action;
+import com.comphenix.xp.MockDebugger;
+import com.comphenix.xp.rewards.ResourceHolder;
+import com.comphenix.xp.rewards.RewardBuffer;
+import com.comphenix.xp.rewards.RewardProvider;
+import com.comphenix.xp.rewards.RewardTypes;
+import com.comphenix.xp.rewards.xp.CurrencyFactory;
+import com.comphenix.xp.rewards.xp.ExperienceFactory;
+
+public class MessageQueueTest {
+	
+	@Test
+	public void testInheritedRules() {
+		
+		MessageQueue queue = new MessageQueue(1000, null, null, new MockDebugger());
+		
+		Action parent = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		Action child = new Action(RewardTypes.ECONOMY.name(), new CurrencyFactory(10));
+		
+		child.setId(1);
+		
+		// The resolved rule keeps the ID of the child, but has an additional slot in front
+		Action resolved = child.inheritAction(parent);
+		
+		assertEquals(child.getId(), resolved.getId());
+		assertFalse(child.getSlotNames().equals(resolved.getSlotNames()));
+		
+		queue.enqueue(child, createFormatter(child));
+		queue.enqueue(resolved, createFormatter(resolved));
+		queue.enqueue(child, createFormatter(child));
+		
+		// Copies of the same rule are summed, but rules with different slots are not
+		queue.onTick(1000);
+		assertTrue(queue.hasMessages());
+		
+		queue.onTick(2000);
+		assertFalse(queue.hasMessages());
+	}
+	
+	@Test
+	public void testReusedBuffers() {
+		
+		List<String> sent = new ArrayList<String>();
+		MessageQueue queue = new MessageQueue(1000, null, createRecorder(sent), new MockDebugger());
+		Action action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		
+		action.setMessages(Arrays.asList(new Message("{experience}", "global")));
+		
+		RewardBuffer generated = new RewardBuffer();
+		RewardBuffer result = new RewardBuffer();
+		
+		action.generateRewards(null, new RewardProvider(), new Random(), 1, generated);
+		result.add(generated.get(0));
+		queue.enqueue(action, new MessageFormatter(null, result, generated));
+		
+		// The next event reuses the buffers before the message is sent
+		generated.reset(0);
+		result.reset(0);
+		
+		queue.onTick(1000);
+		assertEquals(Arrays.asList("5 experience"), sent);
+	}
+	
+	@Test
+	public void testSummedMessages() {
+		
+		List<String> sent = new ArrayList<String>();
+		MessageQueue queue = new MessageQueue(1000, null, createRecorder(sent), new MockDebugger());
+		Action action = new Action(RewardTypes.EXPERIENCE.name(), new ExperienceFactory(5));
+		
+		action.setMessages(Arrays.asList(new Message("{experience}", "global")));
+		
+		for (int i = 0; i < 3; i++) {
+			queue.enqueue(action, createFormatter(action));
+		}
+		
+		// Every message of the same rule is sent as one
+		queue.onTick(1000);
+		queue.onTick(2000);
+		assertEquals(Arrays.asList("15 experience"), sent);
+	}
+	
+	private ChannelProvider createRecorder(final List<String> sent) {
+		
+		ChannelProvider channels = new ChannelProvider("RECORDER");
+		
+		channels.register(new ChannelService() {
+			@Override
+			public String getServiceName() {
+				return "RECORDER";
+			}
+			
+			@Override
+			public boolean hasChannel(String channelID) {
+				return true;
+			}
+			
+			@Override
+			public void announce(String channelID, String message) {
+				sent.add(message);
+			}
+			
+			@Override
+			public void emote(String channelID, String message, Player sender) {
+				sent.add(message);
+			}
+		});
+		return channels;
+	}
+	
+	private MessageFormatter createFormatter(Action action) {
+		List<ResourceHolder> generated = action.generateRewards(null, new RewardProvider(), new Random());
+		
+		return new MessageFormatter(null, generated, generated);
+	}
+}
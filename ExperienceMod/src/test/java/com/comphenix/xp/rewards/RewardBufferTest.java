@@ -0,0 +1,59 @@
+package com.comphenix.xp.rewards;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.comphenix.xp.rewards.xp.ExperienceHolder;
+
+public class RewardBufferTest {
+
+	@Test
+	public void testReset() {
+		RewardBuffer buffer = new RewardBuffer(2);
+		ResourceHolder first = new ExperienceHolder(1);
+		ResourceHolder second = new ExperienceHolder(2);
+		
+		buffer.reset(3);
+		assertEquals(Arrays.asList(null, null, null), buffer);
+		
+		buffer.set(0, first);
+		buffer.set(2, second);
+		assertEquals(Arrays.asList(first, null, second), buffer);
+		
+		// Old slots must be cleared
+		buffer.reset(1);
+		buffer.add(second);
+		assertEquals(Arrays.asList(null, second), buffer);
+		
+		buffer.reset(3);
+		assertEquals(Arrays.asList(null, null, null), buffer);
+	}
+	
+	@Test
+	public void testListOperations() {
+		RewardBuffer buffer = new RewardBuffer();
+		ResourceHolder first = new ExperienceHolder(1);
+		ResourceHolder second = new ExperienceHolder(2);
+		
+		buffer.add(second);
+		buffer.add(0, first);
+		assertEquals(Arrays.asList(first, second), buffer);
+		
+		assertSame(first, buffer.remove(0));
+		assertEquals(Arrays.asList(second), buffer);
+		
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		RewardBuffer buffer = new RewardBuffer();
+		
+		buffer.reset(2);
+		buffer.get(2);
+	}
+}
@@ -2,8 +2,15 @@ package com.comphenix.xp.rewards.xp;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import org.junit.Test;
 
+import com.comphenix.xp.SampleRange;
+import com.comphenix.xp.expressions.NamedParameter;
+import com.comphenix.xp.expressions.VariableFunction;
+import com.comphenix.xp.parser.ParsingException;
 import com.comphenix.xp.rewards.ResourceFactory;
 
 public class ExperienceFactoryTest {
@@ -16,4 +23,31 @@ public class ExperienceFactoryTest {
 		
 		assertEquals(initial, same);
 	}
+	
+	@Test
+	public void testBounds() throws ParsingException {
+		
+		String[] names = { "LEVEL" };
+		ResourceFactory capped = new ExperienceFactory(VariableFunction.fromExpression("min(LEVEL * 5, 100)", names));
+		ResourceFactory constant = new ExperienceFactory(VariableFunction.fromExpression("min(10 * 5, 100)", names));
+		ResourceFactory range = new ExperienceFactory(VariableFunction.fromRange(new SampleRange(0.7, 5.3)));
+		
+		// The bounds must depend on the given parameters
+		assertEquals(20, capped.getMaximum(createLevel(4), 1).getAmount());
+		assertEquals(100, capped.getMaximum(createLevel(30), 1).getAmount());
+		assertEquals(50, constant.getMaximum(createLevel(4), 1).getAmount());
+		
+		// Fractional ranges are rounded inwards
+		assertEquals(1, range.getMinimum(null, 1).getAmount());
+		assertEquals(5, range.getMaximum(null, 1).getAmount());
+	}
+	
+	private Collection<NamedParameter> createLevel(final double level) {
+		return Arrays.asList((NamedParameter) new NamedParameter("LEVEL") {
+			@Override
+			public Double call() throws Exception {
+				return level;
+			}
+		});
+	}
 }
@@ -0,0 +1,32 @@
+package com.comphenix.xp.rewards.xp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ExperienceManagerTest {
+
+	@Test
+	public void testLevels() {
+		int total = 0;
+		
+		// Compare with the level by level increments of MC 1.3
+		for (int level = 0; level < 1000; level++) {
+			int needed = ExperienceManager.getXpNeededToLevelUp(level);
+			
+			assertEquals(total, ExperienceManager.getXpForLevel(level));
+			assertEquals(level, ExperienceManager.getLevelForExp(total));
+			assertEquals(level, ExperienceManager.getLevelForExp(total + needed - 1));
+			
+			total += needed;
+		}
+	}
+	
+	@Test
+	public void testKnownValues() {
+		assertEquals(17, ExperienceManager.getXpNeededToLevelUp(0));
+		assertEquals(272, ExperienceManager.getXpForLevel(16));
+		assertEquals(887, ExperienceManager.getXpForLevel(31));
+		assertEquals(0, ExperienceManager.getLevelForExp(-5));
+	}
+}
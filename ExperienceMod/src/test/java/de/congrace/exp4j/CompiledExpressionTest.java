@@ -0,0 +1,179 @@
+package de.congrace.exp4j;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+
+	private static final int REPEAT_COUNT = 1000;
+
+	// Every expression is evaluated by both the interpreter and the compiled tree
+	private static final String[] EXPRESSIONS = {
+		"1",
+		"-x",
+		"x + y * z",
+		"(x + y) * z",
+		"x - y - z",
+		"x / y / z",
+		"x % 3 + y ^ 2",
+		"-x ^ 2",
+		"2 ^ 3 ^ 2",
+		"abs(x - y) * sqrt(abs(z))",
+		"lerp(x, y, 0.25) + norm(x, y, z)",
+		"max(x, min(y, z)) - round(x * 10) / 10",
+		"floor(x) + ceil(y) + exp(z / 100)",
+		"double(x) + y",
+		"x >< y",
+		"pow(x, 2) + 3 * (y - -z)",
+		"2 * 3 + x / (4 - 2)",
+		"sqrt(16) * x + max(1, 2) ^ 3",
+	};
+
+	@Test
+	public void testDifferential() throws Exception {
+		Random rnd = new Random(1234);
+
+		for (String expression : EXPRESSIONS) {
+			Calculable reference = createBuilder(expression).build();
+			Calculable compiled = createBuilder(expression).compile();
+
+			assertEquals(reference.getExpression(), compiled.getExpression());
+
+			for (int i = 0; i < REPEAT_COUNT; i++) {
+				double x = rnd.nextDouble() * 200 - 100;
+				double y = rnd.nextDouble() * 200 - 100;
+				double z = rnd.nextDouble() * 200 - 100;
+
+				assertEquals(expression, reference.calculate(x, y, z), compiled.calculate(x, y, z), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testVariables() throws Exception {
+		Calculable compiled = createBuilder("x * 2 + z").compile();
+
+		assertTrue(compiled.containsVariable("x"));
+		assertFalse(compiled.containsVariable("y"));
+
+		compiled.setVariable("x", 3);
+		compiled.setVariable("z", 1);
+		assertEquals(7, compiled.calculate(), 0);
+	}
+
+	@Test
+	public void testContexts() throws Exception {
+		// Reads the generator of the current context
+		CustomFunction noise = new CustomFunction("noise", 1) {
+			@Override
+			public double applyFunction(double... args) {
+				throw new IllegalStateException("Context required.");
+			}
+			
+			@Override
+			public double applyFunction(EvaluationContext context, double... args) {
+				return args[0] * context.getRandom().nextDouble();
+			}
+			
+			@Override
+			public boolean isDeterministic() {
+				return false;
+			}
+		};
+		
+		String expression = "noise(x) + y * z";
+		Calculable reference = createBuilder(expression).withCustomFunction(noise).build();
+		Calculable compiled = createBuilder(expression).withCustomFunction(noise).compile();
+		
+		EvaluationContext first = compiled.createContext();
+		EvaluationContext second = compiled.createContext();
+		EvaluationContext expected = reference.createContext();
+		
+		first.setRandom(new Random(1));
+		second.setRandom(new Random(2));
+		expected.setRandom(new Random(1));
+		
+		for (int i = 0; i < 3; i++) {
+			first.setVariable(compiled.getVariableIndex("x"), i);
+			second.setVariable(compiled.getVariableIndex("z"), i);
+			expected.setVariable(reference.getVariableIndex("x"), i);
+			
+			// Contexts must not affect each other
+			assertEquals(0, compiled.calculate(second), 0);
+			assertEquals(reference.calculate(expected), compiled.calculate(first), 0);
+		}
+	}
+	
+	@Test
+	public void testFolding() throws Exception {
+		Calculable constant = createBuilder("2 * 3 + max(1, 4) / 2").compile();
+		
+		assertEquals(8, constant.getMinimum(), 0);
+		assertEquals(8, constant.getMaximum(), 0);
+		assertEquals(8, constant.calculate(), 0);
+		
+		// Non-deterministic functions are never folded
+		CustomFunction random = new CustomFunction("random", 2) {
+			@Override
+			public double applyFunction(double... args) {
+				return args[0] + Math.random() * (args[1] - args[0]);
+			}
+			
+			@Override
+			public boolean isDeterministic() {
+				return false;
+			}
+		};
+		Calculable sample = createBuilder("random(1, 2 + 3)").withCustomFunction(random).compile();
+		
+		assertArrayEquals(new double[] { 1, 5 }, sample.getConstantArguments(random), 0);
+		assertNull(createBuilder("random(x, 5)").withCustomFunction(random).compile().getConstantArguments(random));
+	}
+	
+	@Test
+	public void testBounds() throws Exception {
+		Calculable positive = createBuilder("abs(x) + 1").compile();
+		Calculable modulo = createBuilder("-(x % 3)").compile();
+		Calculable division = createBuilder("1 / x").compile();
+		
+		assertEquals(1, positive.getMinimum(), 0);
+		assertEquals(Double.POSITIVE_INFINITY, positive.getMaximum(), 0);
+		assertEquals(-3, modulo.getMinimum(), 0);
+		assertEquals(3, modulo.getMaximum(), 0);
+		assertEquals(Double.NEGATIVE_INFINITY, division.getMinimum(), 0);
+		
+		// Rounding an unbounded value must not produce a finite bound
+		Calculable unbounded = createBuilder("round(x / 2)").compile();
+		Calculable bounded = createBuilder("round(abs(x) % 10)").compile();
+		
+		assertEquals(Double.NEGATIVE_INFINITY, unbounded.getMinimum(), 0);
+		assertEquals(Double.POSITIVE_INFINITY, unbounded.getMaximum(), 0);
+		assertEquals(0, bounded.getMinimum(), 0);
+		assertEquals(10, bounded.getMaximum(), 0);
+	}
+	
+	@Test(expected = UnparsableExpressionException.class)
+	public void testUnbalanced() throws Exception {
+		createBuilder("sin(x, y)").compile();
+	}
+
+	private ExpressionBuilder createBuilder(String expression) throws InvalidCustomFunctionException {
+		return new ExpressionBuilder(expression).
+				withVariableNames("x", "y", "z").
+				withCustomFunction(new CustomFunction("double") {
+					@Override
+					public double applyFunction(double... args) {
+						return args[0] * 2;
+					}
+				}).
+				withOperation(new CustomOperator("><", true, 3) {
+					@Override
+					protected double applyOperation(double[] values) {
+						return values[0] > values[1] ? values[0] - values[1] : values[1] - values[0];
+					}
+				});
+	}
+}